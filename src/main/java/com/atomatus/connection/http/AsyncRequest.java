@@ -0,0 +1,129 @@
+package com.atomatus.connection.http;
+
+import com.atomatus.connection.http.exception.URLConnectionException;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Asynchronous request handle, completed with a fully read {@link Response}.
+ * <p>
+ *     Cancelling or reaching the deadline completes it exceptionally
+ *     and disconnects the request connection in flight, releasing its socket.
+ * </p>
+ */
+final class AsyncRequest extends CompletableFuture<Response> {
+
+	/**
+	 * Asynchronous request work.
+	 */
+	interface Work {
+		Response apply(AsyncRequest handle) throws URLConnectionException;
+	}
+
+	private final long deadlineNanos;
+	private volatile HttpURLConnection con;
+	private volatile ScheduledFuture<?> timer;
+
+	/**
+	 * Create request handle.
+	 * @param timeout max time to complete request, zero or negative means without deadline.
+	 * @param unit timeout unit.
+	 */
+	AsyncRequest(long timeout, TimeUnit unit) {
+		if(timeout > 0) {
+			long nanos = unit.toNanos(timeout);
+			this.deadlineNanos = System.nanoTime() + nanos;
+			this.timer = HttpExecutor.scheduler().schedule(() ->
+					completeExceptionally(new URLConnectionException(new TimeoutException(
+							"Request deadline of " + unit.toMillis(timeout) + "ms exceeded!"))),
+					nanos, TimeUnit.NANOSECONDS);
+		} else {
+			this.deadlineNanos = 0L;
+		}
+	}
+
+	/**
+	 * Bind connection opened for this request, limiting its timeouts to remaining deadline.
+	 * @param con opened connection.
+	 * @throws URLConnectionException throws when request was already cancelled or timed out.
+	 */
+	void attach(HttpURLConnection con) throws URLConnectionException {
+		this.con = con;
+		if(isDone()) {
+			con.disconnect();
+			throw new URLConnectionException("Request cancelled!");
+		}
+
+		if(deadlineNanos != 0L) {
+			long remaining = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+			int limit = (int) Math.max(1L, Math.min(Integer.MAX_VALUE, remaining));
+			if(con.getConnectTimeout() == 0 || con.getConnectTimeout() > limit) con.setConnectTimeout(limit);
+			if(con.getReadTimeout() == 0 || con.getReadTimeout() > limit) con.setReadTimeout(limit);
+		}
+	}
+
+	/**
+	 * Run request work, reading response content before completing.
+	 * @param work request work.
+	 */
+	void run(Work work) {
+		if(isDone()) {
+			return;
+		}
+
+		try {
+			Response response = work.apply(this);
+			response.getContentBytes();
+			if(!complete(response)) {
+				response.close();
+			}
+		} catch (URLConnectionException e) {
+			completeExceptionally(e);
+		} catch (Throwable e) {
+			completeExceptionally(new URLConnectionException(e));
+		}
+	}
+
+	private void abort() {
+		ScheduledFuture<?> t = timer;
+		if(t != null) {
+			t.cancel(false);
+		}
+
+		HttpURLConnection c = con;
+		if(c != null && isCompletedExceptionally()) {
+			c.disconnect();
+		}
+	}
+
+	@Override
+	public boolean complete(Response value) {
+		try {
+			return super.complete(value);
+		} finally {
+			abort();
+		}
+	}
+
+	@Override
+	public boolean completeExceptionally(Throwable ex) {
+		try {
+			return super.completeExceptionally(ex);
+		} finally {
+			abort();
+		}
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		try {
+			return super.cancel(mayInterruptIfRunning);
+		} finally {
+			abort();
+		}
+	}
+}
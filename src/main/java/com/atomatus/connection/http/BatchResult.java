@@ -0,0 +1,58 @@
+package com.atomatus.connection.http;
+
+import com.atomatus.connection.http.exception.URLConnectionException;
+
+import java.net.URL;
+
+/**
+ * Result of a request done by batch, see {@link HttpConnection#getAll(java.util.Collection, int, Parameter...)}.
+ * @author Carlos Matos {@literal @chcmatos}
+ */
+public final class BatchResult {
+
+	private final URL url;
+	private final Response response;
+	private final URLConnectionException error;
+
+	BatchResult(URL url, Response response, URLConnectionException error) {
+		this.url = url;
+		this.response = response;
+		this.error = error;
+	}
+
+	/**
+	 * Requested url.
+	 * @return requested url.
+	 */
+	public URL getUrl() {
+		return url;
+	}
+
+	/**
+	 * Check whether request failed by connection error (without response).
+	 * @return true, request failed.
+	 */
+	public boolean isFailed() {
+		return error != null;
+	}
+
+	/**
+	 * Request response, content already read.
+	 * @return request response.
+	 * @throws URLConnectionException throws connection error when request failed.
+	 */
+	public Response getResponse() throws URLConnectionException {
+		if(error != null) {
+			throw error;
+		}
+		return response;
+	}
+
+	/**
+	 * Request connection error.
+	 * @return connection error, or null when response was received.
+	 */
+	public URLConnectionException getError() {
+		return error;
+	}
+}
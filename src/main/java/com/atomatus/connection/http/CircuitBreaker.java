@@ -0,0 +1,309 @@
+package com.atomatus.connection.http;
+
+import com.atomatus.connection.http.exception.CircuitOpenException;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <strong>Circuit breaker</strong>
+ * <p>
+ *     Per host (scheme, host and port) circuit breaker, see {@link HttpConnection#setCircuitBreaker(CircuitBreaker)}.
+ *     Outcomes of last requests on host are kept in a sliding window, once its failure rate (connection errors
+ *     or failure status codes) reaches the threshold, circuit opens and requests to host fail fast by
+ *     {@link CircuitOpenException}, without waiting connect or read timeouts, or are served stale by cache
+ *     (see {@link HttpConnection#setStaleIfError(long, TimeUnit)}).
+ * </p>
+ * <p>
+ *     After open duration, circuit is half-open and a single request (probe) is sent,
+ *     closing circuit when succeeded or opening it again when failed.
+ * </p>
+ * <code>
+ *     CircuitBreaker breaker = CircuitBreaker.builder()<br>
+ *     &emsp;.failureRate(.5d)<br>
+ *     &emsp;.window(20, 10)<br>
+ *     &emsp;.openDuration(30, TimeUnit.SECONDS)<br>
+ *     &emsp;.build();
+ * </code>
+ * @author Carlos Matos {@literal @chcmatos}
+ */
+public final class CircuitBreaker {
+
+	private static final HttpConnection.StatusCode[] DEFAULT_FAIL_ON;
+
+	static {
+		DEFAULT_FAIL_ON = new HttpConnection.StatusCode[] {
+				HttpConnection.StatusCode.HTTP_INTERNAL_ERROR,
+				HttpConnection.StatusCode.HTTP_BAD_GATEWAY,
+				HttpConnection.StatusCode.HTTP_UNAVAILABLE,
+				HttpConnection.StatusCode.HTTP_GATEWAY_TIMEOUT
+		};
+	}
+
+	/**
+	 * Circuit state of host.
+	 */
+	public enum State {
+		/**
+		 * Requests are sent, outcomes recorded.
+		 */
+		CLOSED,
+
+		/**
+		 * Requests fail fast, without being sent.
+		 */
+		OPEN,
+
+		/**
+		 * A single request (probe) is sent, closing or opening circuit again.
+		 */
+		HALF_OPEN
+	}
+
+	/**
+	 * Circuit breaker builder.
+	 */
+	public static final class Builder {
+
+		private double failureRate;
+		private int windowSize;
+		private int minimumCalls;
+		private long openDurationInMillis;
+		private HttpConnection.StatusCode[] failOn;
+
+		private Builder() {
+			this.failureRate = .5d;
+			this.windowSize = 20;
+			this.minimumCalls = 10;
+			this.openDurationInMillis = 30_000L;
+			this.failOn = DEFAULT_FAIL_ON;
+		}
+
+		/**
+		 * Failure rate threshold opening circuit.
+		 * @param threshold failure rate, from 0 (exclusive) to 1 (e.g. 0.5 = 50%).
+		 * @return current builder.
+		 */
+		public Builder failureRate(double threshold) {
+			if(threshold <= 0d || threshold > 1d) throw new IllegalArgumentException("Invalid failure rate threshold!");
+			this.failureRate = threshold;
+			return this;
+		}
+
+		/**
+		 * Sliding window of last requests outcomes by host.
+		 * @param size count of last requests outcomes kept.
+		 * @param minimumCalls minimum requests recorded before failure rate is evaluated.
+		 * @return current builder.
+		 */
+		public Builder window(int size, int minimumCalls) {
+			if(size < 1 || minimumCalls < 1 || minimumCalls > size) throw new IllegalArgumentException("Invalid window!");
+			this.windowSize = size;
+			this.minimumCalls = minimumCalls;
+			return this;
+		}
+
+		/**
+		 * Time circuit remains open before send a probe request.
+		 * @param duration open duration.
+		 * @param unit duration unit.
+		 * @return current builder.
+		 */
+		public Builder openDuration(long duration, TimeUnit unit) {
+			if(duration <= 0) throw new IllegalArgumentException("Open duration must be greater than 0!");
+			this.openDurationInMillis = unit.toMillis(duration);
+			return this;
+		}
+
+		/**
+		 * Status codes recorded as failure, replacing defaults (500, 502, 503 and 504),
+		 * connection errors are always recorded as failure.
+		 * @param codes failure status codes.
+		 * @return current builder.
+		 */
+		public Builder failOn(HttpConnection.StatusCode... codes) {
+			this.failOn = Objects.requireNonNull(codes).clone();
+			return this;
+		}
+
+		/**
+		 * Build circuit breaker.
+		 * @return circuit breaker.
+		 */
+		public CircuitBreaker build() {
+			return new CircuitBreaker(this);
+		}
+	}
+
+	/**
+	 * Circuit of a host, outcomes sliding window and state.
+	 */
+	final class Circuit {
+
+		private final String authority;
+		private final boolean[] failures;
+		private int index;
+		private int count;
+		private int failureCount;
+		private State state;
+		private long openUntil;
+		private boolean probing;
+		private long probeUntil;
+
+		private Circuit(String authority) {
+			this.authority = authority;
+			this.failures = new boolean[windowSize];
+			this.state = State.CLOSED;
+		}
+
+		private synchronized boolean tryAcquire(long now) {
+			switch (state) {
+				case CLOSED:
+					return true;
+				case OPEN:
+					if(now - openUntil < 0L) {
+						return false;
+					}
+					state = State.HALF_OPEN;
+					probing = false;
+					//half-open, fall through.
+				default:
+					//probe not reported (abandoned) is replaced after open duration.
+					if(probing && now - probeUntil < 0L) {
+						return false;
+					}
+					probing = true;
+					probeUntil = now + openDurationInNanos;
+					return true;
+			}
+		}
+
+		/**
+		 * Record request outcome.
+		 * @param code response status code, null when request failed by connection error.
+		 */
+		synchronized void record(HttpConnection.StatusCode code) {
+			boolean failure = isFailure(code);
+			if(state == State.HALF_OPEN) {
+				probing = false;
+				if(failure) open();
+				else reset();
+			} else if(state == State.CLOSED) {
+				if(count == failures.length) {
+					if(failures[index]) failureCount--;
+				} else {
+					count++;
+				}
+				if(failures[index] = failure) failureCount++;
+				index = (index + 1) % failures.length;
+				if(count >= minimumCalls && failureCount >= failureRate * count) {
+					open();
+				}
+			}
+		}
+
+		/**
+		 * Request released without outcome recorded, allowing a next probe when half-open.
+		 */
+		synchronized void abandon() {
+			if(state == State.HALF_OPEN) {
+				probing = false;
+			}
+		}
+
+		private void open() {
+			state = State.OPEN;
+			openUntil = System.nanoTime() + openDurationInNanos;
+		}
+
+		private void reset() {
+			state = State.CLOSED;
+			index = count = failureCount = 0;
+			Arrays.fill(failures, false);
+		}
+
+		private synchronized State state() {
+			return state == State.OPEN && System.nanoTime() - openUntil >= 0L ? State.HALF_OPEN : state;
+		}
+	}
+
+	private final double failureRate;
+	private final int windowSize;
+	private final int minimumCalls;
+	private final long openDurationInNanos;
+	private final HttpConnection.StatusCode[] failOn;
+	private final ConcurrentMap<String, Circuit> circuits;
+
+	private CircuitBreaker(Builder builder) {
+		this.failureRate = builder.failureRate;
+		this.windowSize = builder.windowSize;
+		this.minimumCalls = builder.minimumCalls;
+		this.openDurationInNanos = TimeUnit.MILLISECONDS.toNanos(builder.openDurationInMillis);
+		this.failOn = builder.failOn;
+		this.circuits = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Create a circuit breaker builder.
+	 * @return new builder.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Circuit breaker with default values: opens when 50% of last 20 requests (at least 10) failed
+	 * by connection error or status code 500, 502, 503 and 504, remaining open for 30 seconds.
+	 * @return new circuit breaker.
+	 */
+	public static CircuitBreaker defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Circuit state of target url host.
+	 * @param url target url.
+	 * @return circuit state.
+	 */
+	public State getState(URL url) {
+		Circuit circuit = circuits.get(HttpHost.authorityOf(url));
+		return circuit == null ? State.CLOSED : circuit.state();
+	}
+
+	/**
+	 * Acquire circuit of target url host to send a request.
+	 * @param url request url.
+	 * @return host circuit, request outcome must be recorded on it.
+	 * @throws CircuitOpenException throws when circuit is open.
+	 */
+	Circuit acquire(URL url) throws CircuitOpenException {
+		String authority = HttpHost.authorityOf(url);
+		Circuit circuit = circuits.get(authority);
+		if(circuit == null) {
+			circuit = circuits.computeIfAbsent(authority, Circuit::new);
+		}
+
+		if(!circuit.tryAcquire(System.nanoTime())) {
+			throw new CircuitOpenException("Circuit breaker of \"" + circuit.authority +
+					"\" is open, request rejected without being sent!");
+		}
+		return circuit;
+	}
+
+	private boolean isFailure(HttpConnection.StatusCode code) {
+		if(code == null) {
+			return true;
+		}
+
+		for(HttpConnection.StatusCode c : failOn) {
+			if(c.getCode() == code.getCode()) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,107 @@
+package com.atomatus.connection.http;
+
+import com.atomatus.connection.http.exception.URLConnectionException;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+
+/**
+ * Batch of requests in flight, at most max concurrency requests at a time,
+ * iterated in completion order.
+ * <p>
+ *     Results completed but not yet iterated still count as outstanding, so a slow
+ *     consumer holds back next requests instead of buffering all responses.
+ * </p>
+ */
+final class HttpBatch implements Iterator<BatchResult> {
+
+	private final Iterator<URL> pending;
+	private final int maxConcurrency;
+	private final Function<URL, CompletableFuture<Response>> request;
+	private final BlockingQueue<BatchResult> completed;
+	private final List<CompletableFuture<Response>> inFlight;
+	private int outstanding;
+
+	/**
+	 * Create batch.
+	 * @param urls urls to request.
+	 * @param maxConcurrency max requests in flight.
+	 * @param request asynchronous request function.
+	 */
+	HttpBatch(Iterable<URL> urls, int maxConcurrency, Function<URL, CompletableFuture<Response>> request) {
+		if(maxConcurrency <= 0) {
+			throw new IllegalArgumentException("Max concurrency must be greater than 0!");
+		}
+		this.pending = urls.iterator();
+		this.maxConcurrency = maxConcurrency;
+		this.request = request;
+		this.completed = new LinkedBlockingQueue<>();
+		this.inFlight = new ArrayList<>(maxConcurrency);
+		this.fill();
+	}
+
+	private void fill() {
+		//completed (not iterated) results still count as outstanding.
+		while (outstanding < maxConcurrency && pending.hasNext()) {
+			URL url = pending.next();
+			CompletableFuture<Response> future = request.apply(url);
+			inFlight.add(future);
+			outstanding++;
+			future.whenComplete((response, ex) -> completed.offer(new BatchResult(url, response,
+					ex == null ? null : toConnectionException(ex))));
+		}
+	}
+
+	private static URLConnectionException toConnectionException(Throwable ex) {
+		Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+		return cause instanceof URLConnectionException ?
+				(URLConnectionException) cause : new URLConnectionException(cause);
+	}
+
+	@Override
+	public boolean hasNext() {
+		return outstanding > 0;
+	}
+
+	@Override
+	public BatchResult next() {
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		BatchResult result;
+		try {
+			result = completed.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cancel();
+			throw new IllegalStateException("Interrupted while waiting batch responses!", e);
+		}
+
+		outstanding--;
+		inFlight.removeIf(CompletableFuture::isDone);
+		fill();
+		return result;
+	}
+
+	/**
+	 * Cancel requests in flight, disconnecting them, and discard pending ones.
+	 */
+	void cancel() {
+		inFlight.forEach(f -> f.cancel(true));
+		inFlight.clear();
+		completed.clear();
+		outstanding = 0;
+		while (pending.hasNext()) {
+			pending.next();
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package com.atomatus.connection.http;
+
+import com.atomatus.util.cache.CacheData;
+
+import java.net.HttpURLConnection;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cached response validators ({@code ETag}, {@code Last-Modified}) and freshness
+ * resolved from response {@code Cache-Control} (or {@code Expires}) headers.
+ * <p>
+ *     Kept as metadata of cached response content, when content is no longer
+ *     fresh (or its validators are missing) it is revalidated by a conditional request
+ *     ({@code If-None-Match}, {@code If-Modified-Since}).
+ * </p>
+ */
+final class HttpCacheValidator {
+
+	private static final String SEPARATOR;
+
+	static {
+		SEPARATOR = "\n";
+	}
+
+	private final String etag;
+	private final String lastModified;
+	private final long freshUntil;
+	private final boolean storable;
+
+	private HttpCacheValidator(String etag, String lastModified, long freshUntil, boolean storable) {
+		this.etag = etag == null || etag.isEmpty() ? null : etag;
+		this.lastModified = lastModified == null || lastModified.isEmpty() ? null : lastModified;
+		this.freshUntil = freshUntil;
+		this.storable = storable;
+	}
+
+	//region factory
+	/**
+	 * Resolve validators and freshness from response headers.
+	 * @param con response connection.
+	 * @param defaultMaxAgeInMillis freshness when response does not define it.
+	 * @return response validators.
+	 */
+	static HttpCacheValidator of(HttpURLConnection con, long defaultMaxAgeInMillis) {
+		long now = System.currentTimeMillis();
+		long maxAge = -1L;
+		boolean storable = true;
+
+		String cacheControl = con.getHeaderField("Cache-Control");
+		if(cacheControl != null) {
+			for(String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+				directive = directive.trim();
+				if(directive.equals("no-store")) {
+					storable = false;
+				} else if(directive.equals("no-cache")) {
+					maxAge = 0L;
+				} else if(directive.startsWith("max-age=") && maxAge != 0L) {
+					try {
+						maxAge = TimeUnit.SECONDS.toMillis(Long.parseLong(
+								directive.substring(8).replace("\"", "").trim()));
+					} catch (NumberFormatException ignored) { }
+				}
+			}
+		}
+
+		if(maxAge < 0L) {
+			long expires = con.getHeaderFieldDate("Expires", 0L);
+			if(expires > 0L) {
+				long date = con.getDate();
+				maxAge = Math.max(0L, expires - (date > 0L ? date : now));
+			} else {
+				maxAge = defaultMaxAgeInMillis;
+			}
+		} else {
+			//response age spent on intermediary caches.
+			maxAge = Math.max(0L, maxAge - TimeUnit.SECONDS.toMillis(
+					Math.max(0, con.getHeaderFieldInt("Age", 0))));
+		}
+
+		return new HttpCacheValidator(con.getHeaderField("ETag"),
+				con.getHeaderField("Last-Modified"), now + maxAge, storable);
+	}
+
+	/**
+	 * Recover validators kept as metadata of cached content.
+	 * @param data cached content.
+	 * @return validators, or null when not found (content must be revalidated).
+	 */
+	static HttpCacheValidator of(CacheData data) {
+		String meta = data.meta();
+		if(meta != null) {
+			try {
+				String[] values = meta.split(SEPARATOR, -1);
+				if(values.length == 3) {
+					return new HttpCacheValidator(values[1], values[2], Long.parseLong(values[0]), true);
+				}
+			} catch (NumberFormatException ignored) { }
+		}
+		return null;
+	}
+	//endregion
+
+	//region state
+	/**
+	 * Merge validators of a not modified (304) response, keeping
+	 * previous ones when response does not resend them.
+	 * @param previous validators sent on conditional request.
+	 * @return merged validators.
+	 */
+	HttpCacheValidator merge(HttpCacheValidator previous) {
+		return previous == null ? this : new HttpCacheValidator(
+				etag != null ? etag : previous.etag,
+				lastModified != null ? lastModified : previous.lastModified,
+				freshUntil, storable);
+	}
+
+	/**
+	 * Check whether response may be cached (not "no-store").
+	 * @return true, may be cached.
+	 */
+	boolean isStorable() {
+		return storable;
+	}
+
+	/**
+	 * Check whether cached content is still fresh, without revalidation.
+	 * @return true, still fresh.
+	 */
+	boolean isFresh() {
+		return System.currentTimeMillis() < freshUntil;
+	}
+
+	/**
+	 * Check whether cached content may be served stale when request fails (stale-if-error).
+	 * @param staleIfErrorInMillis time after freshness content may be served on error.
+	 * @return true, may be served on error.
+	 */
+	boolean isUsableOnError(long staleIfErrorInMillis) {
+		return staleIfErrorInMillis > 0L && System.currentTimeMillis() - freshUntil < staleIfErrorInMillis;
+	}
+
+	/**
+	 * Check whether contains validators to do a conditional request.
+	 * @return true, contains validators.
+	 */
+	boolean hasValidators() {
+		return etag != null || lastModified != null;
+	}
+
+	/**
+	 * Cache lifetime of content, freshness plus retention window when
+	 * contains validators, so content may be revalidated after it.
+	 * @param retentionInMillis time kept on cache for revalidation.
+	 * @return lifetime in millis, zero or negative means not cacheable.
+	 */
+	long lifetime(long retentionInMillis) {
+		long freshness = freshUntil - System.currentTimeMillis();
+		return hasValidators() ? Math.max(0L, freshness) + retentionInMillis : freshness;
+	}
+	//endregion
+
+	//region usage
+	/**
+	 * Add conditional headers on request, before connect it.
+	 * @param con request connection.
+	 */
+	void apply(HttpURLConnection con) {
+		if(etag != null) {
+			con.setRequestProperty("If-None-Match", etag);
+		}
+		if(lastModified != null) {
+			con.setRequestProperty("If-Modified-Since", lastModified);
+		}
+	}
+
+	/**
+	 * Validators as metadata of cached content (see {@link CacheData.Builder#meta(String)}).
+	 * @return validators metadata.
+	 */
+	String meta() {
+		return freshUntil + SEPARATOR +
+				(etag == null ? "" : etag) + SEPARATOR +
+				(lastModified == null ? "" : lastModified);
+	}
+	//endregion
+}
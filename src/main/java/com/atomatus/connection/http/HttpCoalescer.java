@@ -0,0 +1,101 @@
+package com.atomatus.connection.http;
+
+import com.atomatus.connection.http.exception.URLConnectionException;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesce identical requests in flight: first caller (leader) do the request and read
+ * its content, concurrent callers with the same key (followers) wait for it,
+ * each one receiving its own response view of the shared content.
+ * Leader request cancelled or timed out is taken over by a follower.
+ */
+final class HttpCoalescer {
+
+	private static final ConcurrentMap<String, CompletableFuture<Response.Snapshot>> inFlight;
+
+	static {
+		inFlight = new ConcurrentHashMap<>();
+	}
+
+	private HttpCoalescer() { }
+
+	/**
+	 * Do request or wait for identical request in flight.
+	 * <p>
+	 *     Followers wait while their own request is not cancelled or timed out, when leader
+	 *     request is cancelled or times out, followers are not failed, one of them takes over
+	 *     as new leader.
+	 * </p>
+	 * @param key request key (method, url and relevant headers).
+	 * @param handle asynchronous request handle of caller, or null when synchronous.
+	 * @param request request work, executed only by leader.
+	 * @return independent response view of request content.
+	 * @throws URLConnectionException throws when request (done by leader) fails,
+	 * or caller request is cancelled or timed out while waiting.
+	 */
+	static Response coalesce(String key, AsyncRequest handle,
+							 ResponseParameter.Function<Response> request) throws URLConnectionException {
+		for(;;) {
+			CompletableFuture<Response.Snapshot> created = new CompletableFuture<>();
+			CompletableFuture<Response.Snapshot> current = inFlight.putIfAbsent(key, created);
+
+			if(current == null) {
+				//leader, removed before completed, so followers taking over never find it.
+				try (Response response = request.apply()) {
+					Response.Snapshot snapshot = response.snapshot();
+					inFlight.remove(key, created);
+					created.complete(snapshot);
+					return snapshot.view();
+				} catch (URLConnectionException | RuntimeException e) {
+					inFlight.remove(key, created);
+					if(handle != null && handle.isDone()) {
+						created.complete(null);//cancelled or timed out, followers take over.
+					} else {
+						created.completeExceptionally(e);
+					}
+					throw e;
+				} finally {
+					inFlight.remove(key, created);
+				}
+			}
+
+			//follower
+			Response.Snapshot snapshot = await(current, handle);
+			if(snapshot != null) {
+				return snapshot.view();
+			}
+		}
+	}
+
+	private static Response.Snapshot await(CompletableFuture<Response.Snapshot> current,
+										   AsyncRequest handle) throws URLConnectionException {
+		try {
+			if(handle != null) {
+				try {
+					CompletableFuture.anyOf(current, handle).get();
+				} catch (ExecutionException | CancellationException ignored) {
+					//completed exceptionally, checked below.
+				}
+
+				if(!current.isDone()) {
+					throw new URLConnectionException("Request cancelled or timed out while waiting for coalesced request!");
+				}
+			}
+			return current.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new URLConnectionException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			//same message of leader failure, chained as cause.
+			URLConnectionException ex = new URLConnectionException(cause.getMessage());
+			ex.initCause(cause);
+			throw ex;
+		}
+	}
+}
@@ -1,24 +1,37 @@
 package com.atomatus.connection.http;
 
 import com.atomatus.connection.http.Parameter.ParameterType;
+import com.atomatus.connection.http.exception.CircuitOpenException;
 import com.atomatus.connection.http.exception.SecureContextCredentialsException;
 import com.atomatus.connection.http.exception.URLConnectionException;
 import com.atomatus.util.*;
 import com.atomatus.util.Base64;
+import com.atomatus.util.cache.CacheCodec;
 import com.atomatus.util.cache.CacheControl;
 import com.atomatus.util.serializer.Serializer;
 import org.apache.commons.compress.compressors.brotli.BrotliCompressorInputStream;
 
 import javax.net.ssl.HttpsURLConnection;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.*;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.security.KeyStore;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
@@ -49,9 +62,11 @@ public class HttpConnection {
 
 	private static final int BUFFER_LENGTH;
 	private static final int DEFAULT_CACHE_MAX_AGE_IN_SEC;
+	private static final int DEFAULT_CACHE_STREAM_LIMIT;
 	private static final int CACHE_ID;
 	private static final float DEFAULT_ACCEPT_QUALITY;
 	private static final float DEFAULT_ACCEPT_QUALITY_OFFSET;
+	private static final Map<List<Object>, CacheControl> configuredCaches;
 
 	private static CookieManager cookieManager;
 
@@ -63,7 +78,7 @@ public class HttpConnection {
 
 	private Charset charset;
 	private String acceptType, acceptLanguage, acceptEncoding, contentType, userAgent;
-	private boolean isUseCookieBetweenRequest, isKeepAlive, useProxy, useCache, useSecureContext;
+	private boolean isUseCookieBetweenRequest, isKeepAlive, useProxy, useCache, useCachePlaintext, useSecureContext, useCoalescing;
 	private Auth auth, authProxy;
 	private int connectionTimeOut;
 	private int readTimeOut;
@@ -71,9 +86,22 @@ public class HttpConnection {
 	private long cacheMaxAge;
 	private TimeUnit cacheTimeUnit;
 	private CacheMode cacheMode;
+	private File cacheDirectory;
+	private CacheCodec cacheCodec;
+	private int cacheCompressionThreshold;
+	private int cacheStreamLimit;
+	private int maxRequestsPerHost;
+	private long hostQueueTimeoutInMillis;
+	private long hedgeDelayInMillis;
+	private RetryPolicy retryPolicy;
+	private CircuitBreaker circuitBreaker;
+	private long staleIfErrorInMillis;
+	private HttpListener listener;
 	private StatusCode[] acceptRespCode;
 	private SecureProtocols protocol;
 	private SecureContextCredentials secureContextCredentials;
+	private Executor executor;
+	private String[] headers;
 
 	/**
 	 * Http connection authorization mode.
@@ -263,6 +291,16 @@ public class HttpConnection {
 		 * HTTP Status-Code 415: Unsupported Media Type.
 		 */
 		HTTP_UNSUPPORTED_TYPE(415),
+
+		/**
+		 * HTTP Status-Code 416: Range Not Satisfiable.
+		 */
+		HTTP_RANGE_NOT_SATISFIABLE(416),
+
+		/**
+		 * HTTP Status-Code 429: Too Many Requests.
+		 */
+		HTTP_TOO_MANY_REQUESTS(429),
 		//endregion
 
 		//region 5XX: server error
@@ -735,7 +773,12 @@ public class HttpConnection {
 		/**
 		 * Keep cache data stored releasing memory space.
 		 */
-		STORED
+		STORED,
+
+		/**
+		 * Keep hot cache data in memory and cold ones stored.
+		 */
+		TIERED
 	}
 
 	/**
@@ -815,13 +858,16 @@ public class HttpConnection {
 		INVALID_INDEX = -1;
 		BUFFER_LENGTH = 2048;
 		DEFAULT_CACHE_MAX_AGE_IN_SEC = 3600;
+		DEFAULT_CACHE_STREAM_LIMIT = 4 * 1024 * 1024;
 		CACHE_ID = UUID.randomUUID().hashCode();
 		DEFAULT_ACCEPT_QUALITY = .9f;
 		DEFAULT_ACCEPT_QUALITY_OFFSET = .1f;
+		configuredCaches = new java.util.concurrent.ConcurrentHashMap<>();
 	}
 
 	{
 		connectionTimeOut = readTimeOut = 5000;
+		cacheStreamLimit = DEFAULT_CACHE_STREAM_LIMIT;
 		proxyLock = new Object();
 		cookieLock = new Object();
 	}
@@ -835,11 +881,111 @@ public class HttpConnection {
 		this.acceptRespCode = toArray(StatusCode.list2XX());
 	}
 
+	private HttpConnection(HttpConnection other) {
+		synchronized (other.cookieLock) {
+			this.cookies = other.cookies == null ? null : new ArrayList<>(other.cookies);
+		}
+		this.charset = other.charset;
+		this.acceptType = other.acceptType;
+		this.acceptLanguage = other.acceptLanguage;
+		this.acceptEncoding = other.acceptEncoding;
+		this.contentType = other.contentType;
+		this.userAgent = other.userAgent;
+		this.isUseCookieBetweenRequest = other.isUseCookieBetweenRequest;
+		this.isKeepAlive = other.isKeepAlive;
+		this.useProxy = other.useProxy;
+		this.useCache = other.useCache;
+		this.useCachePlaintext = other.useCachePlaintext;
+		this.useSecureContext = other.useSecureContext;
+		this.useCoalescing = other.useCoalescing;
+		this.auth = other.auth;
+		this.authProxy = other.authProxy;
+		this.connectionTimeOut = other.connectionTimeOut;
+		this.readTimeOut = other.readTimeOut;
+		this.cacheId = other.cacheId;
+		this.cacheMaxAge = other.cacheMaxAge;
+		this.cacheTimeUnit = other.cacheTimeUnit;
+		this.cacheMode = other.cacheMode;
+		this.cacheDirectory = other.cacheDirectory;
+		this.cacheCodec = other.cacheCodec;
+		this.cacheCompressionThreshold = other.cacheCompressionThreshold;
+		this.cacheStreamLimit = other.cacheStreamLimit;
+		this.maxRequestsPerHost = other.maxRequestsPerHost;
+		this.hostQueueTimeoutInMillis = other.hostQueueTimeoutInMillis;
+		this.hedgeDelayInMillis = other.hedgeDelayInMillis;
+		this.retryPolicy = other.retryPolicy;
+		this.circuitBreaker = other.circuitBreaker;
+		this.staleIfErrorInMillis = other.staleIfErrorInMillis;
+		this.listener = other.listener;
+		this.acceptRespCode = other.acceptRespCode.clone();
+		this.protocol = other.protocol;
+		this.secureContextCredentials = other.secureContextCredentials;
+		this.executor = other.executor;
+	}
+
+	//region freeze
+	/**
+	 * <p>Freeze current configuration into an immutable copy, safe to be shared by concurrent requests
+	 * (e.g. one client by application), instead of create a new instance by request.</p>
+	 * <p>Request header block (user agent, accept types, languages, encodings and charsets, content type
+	 * and connection) is computed once, and any setter of frozen copy throws {@link UnsupportedOperationException}.
+	 * Current instance remains mutable, acting as builder of frozen copies.</p>
+	 * <code>
+	 *     HttpConnection client = new HttpConnection()<br>
+	 *     &emsp;.setContentType(ContentType.JSON)<br>
+	 *     &emsp;.setKeepAlive(true)<br>
+	 *     &emsp;.freeze();
+	 * </code>
+	 * @return frozen http connection.
+	 */
+	public HttpConnection freeze() {
+		if(headers != null) {
+			return this;
+		}
+		HttpConnection frozen = new HttpConnection(this);
+		frozen.headers = frozen.getHeaders();
+		return frozen;
+	}
+
+	/**
+	 * Check whether configuration is frozen (immutable), see {@link #freeze()}.
+	 * @return true, frozen configuration.
+	 */
+	public boolean isFrozen() {
+		return headers != null;
+	}
+
+	private void requireMutable() {
+		if(headers != null) {
+			throw new UnsupportedOperationException("Http connection is frozen (immutable), " +
+					"configure it before freeze!");
+		}
+	}
+
+	/**
+	 * Request header block, computed once when frozen.
+	 * @return header names and values, paired.
+	 */
+	private String[] getHeaders() {
+		String[] headers = this.headers;
+		return headers != null ? headers : new String[] {
+				"User-Agent", getUserAgentOrDefault(),
+				"Accept-Encoding", getAcceptEncodingOrDefault(),
+				"Accept", getAcceptTypeOrDefault(),
+				"Accept-Language", getAcceptLanguageOrDefault(),
+				"Accept-Charset", getAcceptCharsetOrDefault(),
+				"Content-Type", this.contentType + "; charset=" + this.charset.name(),
+				"Connection", isKeepAlive ? "keep-alive" : "close"
+		};
+	}
+	//endregion
+
 	/**
 	 * Enable proxy usage.
 	 * @return current instance.
 	 */
 	public HttpConnection useProxy() {
+		this.requireMutable();
 		this.useProxy = true;
 		return this;
 	}
@@ -851,15 +997,18 @@ public class HttpConnection {
 	 */
 	@Deprecated
 	public HttpConnection useBasicAuth() {
+		this.requireMutable();
 		return this;
 	}
 
 	/**
 	 * Enable cache for requests (GET method)
-	 * with default max age ({@link #DEFAULT_CACHE_MAX_AGE_IN_SEC}).
+	 * with default max age ({@link #DEFAULT_CACHE_MAX_AGE_IN_SEC}).<br>
+	 * <i>Cached responses are tagged by URL host, see {@link CacheControl#invalidate(String)}.</i>
 	 * @return current instance.
 	 */
 	public HttpConnection useCache() {
+		this.requireMutable();
 		this.useCache = true;
 		if(cacheMode == null) cacheMode = CacheMode.MEMORY;
 		if(cacheId == 0) cacheId = CACHE_ID;
@@ -867,11 +1016,38 @@ public class HttpConnection {
 				this.setCacheMaxAge(DEFAULT_CACHE_MAX_AGE_IN_SEC, TimeUnit.SECONDS);
 	}
 
+	/**
+	 * <p>Enable cache for requests (GET method) keeping content as plaintext (non encrypted),
+	 * skipping encryption cost, decided by cached response (shared cache mode is not changed),
+	 * see {@link com.atomatus.util.cache.CacheData.Builder#plain()}.</p>
+	 * <i>Warning: use only for non sensitive responses.</i>
+	 * @return current instance.
+	 */
+	public HttpConnection useCachePlaintext() {
+		this.requireMutable();
+		this.useCachePlaintext = true;
+		return this.useCache();
+	}
+
+	/**
+	 * <p>Enable coalescing of identical requests (GET method) in flight: while a request
+	 * is in flight, concurrent requests with same url and headers (from any http connection)
+	 * wait for its response instead of doing a new one.</p>
+	 * <p>Each caller receives its own response, sharing the content already read (read only).</p>
+	 * @return current instance.
+	 */
+	public HttpConnection useCoalescing() {
+		this.requireMutable();
+		this.useCoalescing = true;
+		return this;
+	}
+
 	/**
 	 * Enable secure context connection (SSL/TLS).
 	 * @return current instance
 	 */
 	public HttpConnection useSecureContext() {
+		this.requireMutable();
 		this.useSecureContext = true;
 		if(protocol == null) protocol = SecureProtocols.TLS;
 		if(secureContextCredentials == null) secureContextCredentials = SecureContextCredentials.builder().build();
@@ -884,6 +1060,7 @@ public class HttpConnection {
 	 * @return current instance.
 	 */
 	public HttpConnection setSecureProtocol(SecureProtocols protocol) {
+		this.requireMutable();
 		this.protocol = Objects.requireNonNull(protocol);
 		return this;
 	}
@@ -895,6 +1072,7 @@ public class HttpConnection {
 	 * @return current instance.
 	 */
 	public HttpConnection setSecureCredentials(String keystoreFile, String password) {
+		this.requireMutable();
 		this.secureContextCredentials = SecureContextCredentials.builder()
 				.addClientKeyStore(keystoreFile)
 				.addClientPassword(password)
@@ -908,6 +1086,7 @@ public class HttpConnection {
 	 * @return current instance.
 	 */
 	public HttpConnection setSecureCredentials(String keystoreFile) {
+		this.requireMutable();
 		return setSecureCredentials(keystoreFile, null);
 	}
 
@@ -918,6 +1097,7 @@ public class HttpConnection {
 	 * @return current instance.
 	 */
 	public HttpConnection setSecureCredentials(KeyStore keystore, String password) {
+		this.requireMutable();
 		this.secureContextCredentials = SecureContextCredentials.builder()
 				.addClientKeyStore(keystore)
 				.addClientPassword(password)
@@ -933,6 +1113,7 @@ public class HttpConnection {
 	 * @return current instance.
 	 */
 	public HttpConnection setSecureCredentials(KeyStore keystore, KeyStore trustStore, String password) {
+		this.requireMutable();
 		this.secureContextCredentials = SecureContextCredentials.builder()
 				.addClientKeyStore(keystore)
 				.addClientPassword(password)
@@ -947,6 +1128,7 @@ public class HttpConnection {
 	 * @return current instance.
 	 */
 	public HttpConnection setSecureCredentials(KeyStore keystore) {
+		this.requireMutable();
 		return setSecureCredentials(keystore, null);
 	}
 
@@ -959,6 +1141,7 @@ public class HttpConnection {
 	 */
 	@Deprecated
 	public HttpConnection setCredentials(String username, String password) {
+		this.requireMutable();
 		return this.setAuth(Auth.basic(username, password));
 	}
 
@@ -968,6 +1151,7 @@ public class HttpConnection {
 	 * @return current instance.
 	 */
 	public HttpConnection setAuth(Auth auth) {
+		this.requireMutable();
 		this.auth = Objects.requireNonNull(auth);
 		return this;
 	}
@@ -979,6 +1163,7 @@ public class HttpConnection {
 	 * @return current instance.
 	 */
 	public HttpConnection setAuthBasic(String username, String password) {
+		this.requireMutable();
 		return this.setAuth(Auth.basic(username, password));
 	}
 
@@ -988,6 +1173,7 @@ public class HttpConnection {
 	 * @return current instance.
 	 */
 	public HttpConnection setAuthBearer(String token) {
+		this.requireMutable();
 		return this.setAuth(Auth.bearer(token));
 	}
 
@@ -997,6 +1183,7 @@ public class HttpConnection {
 	 * @return current instance.
 	 */
 	public HttpConnection setAuthProxy(Auth auth) {
+		this.requireMutable();
 		this.authProxy = Objects.requireNonNull(auth);
 		this.useProxy = true;
 		return this;
@@ -1009,6 +1196,7 @@ public class HttpConnection {
 	 * @return current instance.
 	 */
 	public HttpConnection setAuthProxyBasic(String username, String password) {
+		this.requireMutable();
 		return this.setAuthProxy(Auth.basic(username, password));
 	}
 
@@ -1018,6 +1206,7 @@ public class HttpConnection {
 	 * @return current instance.
 	 */
 	public HttpConnection setAuthProxyBearer(String token) {
+		this.requireMutable();
 		return this.setAuthProxy(Auth.bearer(token));
 	}
 
@@ -1030,13 +1219,17 @@ public class HttpConnection {
 	 * @throws IllegalArgumentException throws if cache id is equals 0 (zero).
 	 */
 	public HttpConnection setCacheId(int cacheId) {
+		this.requireMutable();
 		if(cacheId == 0) throw new IllegalArgumentException("Cache id can not be equals 0 (zero)!");
 		this.cacheId = cacheId;
 		return this;
 	}
 
 	/**
-	 * Set cache max age by target request.
+	 * <p>Set cache max age by target request.</p>
+	 * <p>Used when response does not define its freshness ({@code Cache-Control: max-age}, {@code Expires}),
+	 * and as time a response with validators ({@code ETag}, {@code Last-Modified}) is kept on cache
+	 * after it, to be revalidated by a conditional request ({@code 304 Not Modified} extends it).</p>
 	 * @param cacheMaxAge cache max age.
 	 * @param cacheTimeUnit cache max age time unit.
 	 * @return current instance.
@@ -1044,6 +1237,7 @@ public class HttpConnection {
 	 * @throws NullPointerException throws when cache time unit is null.
 	 */
 	public HttpConnection setCacheMaxAge(long cacheMaxAge, TimeUnit cacheTimeUnit) {
+		this.requireMutable();
 		if(cacheMaxAge <= 0) throw new IllegalArgumentException("Max age can not be equals or less then 0!");
 		if(cacheTimeUnit == null) throw new NullPointerException();
 		this.cacheMaxAge = cacheMaxAge;
@@ -1058,10 +1252,79 @@ public class HttpConnection {
 	 * @throws NullPointerException throws when cache mode is null.
 	 */
 	public HttpConnection setCacheMode(CacheMode mode) {
+		this.requireMutable();
 		this.cacheMode = Objects.requireNonNull(mode);
 		return this;
 	}
 
+	/**
+	 * <p>Set cache directory, keeping cached responses between application restarts, stored or tiered mode only.</p>
+	 * <i>Only responses cached as plaintext ({@link #useCachePlaintext()}) survive restarts,
+	 * see {@link CacheControl#directory(File)}.<br>
+	 * Connections with different cache directory or compression use distinct caches.</i>
+	 * @param directory cache directory.
+	 * @return current instance.
+	 * @throws NullPointerException throws when directory is null.
+	 */
+	public HttpConnection setCacheDirectory(File directory) {
+		this.requireMutable();
+		this.cacheDirectory = Objects.requireNonNull(directory);
+		return this;
+	}
+
+	/**
+	 * <p>Set codec to compress cached responses whose content length reaches threshold,
+	 * see {@link CacheControl#compression(CacheCodec, int)}.</p>
+	 * <i>Connections with different cache directory or compression use distinct caches.</i>
+	 * @param codec compression codec, or null to disable compression.
+	 * @param thresholdInBytes min content length (in bytes) to compress.
+	 * @return current instance.
+	 */
+	public HttpConnection setCacheCompression(CacheCodec codec, int thresholdInBytes) {
+		this.requireMutable();
+		this.cacheCodec = codec;
+		this.cacheCompressionThreshold = thresholdInBytes;
+		return this;
+	}
+
+	/**
+	 * <p>Set max content length (in bytes) of a response read by stream
+	 * ({@link Response#getContentStream()}, {@link Response#transferTo(OutputStream)})
+	 * still copied to cache while read, larger contents are only streamed.</p>
+	 * <i>Default: 4 MB.</i>
+	 * @param lengthInBytes max content length cached by stream, zero to never cache streamed contents.
+	 * @return current instance.
+	 */
+	public HttpConnection setCacheStreamLimit(int lengthInBytes) {
+		this.requireMutable();
+		if(lengthInBytes < 0) throw new IllegalArgumentException("Cache stream limit can not be negative!");
+		this.cacheStreamLimit = lengthInBytes;
+		return this;
+	}
+
+	/**
+	 * <p>Set executor running asynchronous requests (see {@link #getContentAsync(URL, Parameter...)}).</p>
+	 * <p>When not set, a shared executor bounded to 64 requests in flight is used,
+	 * see {@link #newExecutor(int)}.</p>
+	 * @param executor asynchronous requests executor, or null to use shared executor.
+	 * @return current instance.
+	 */
+	public HttpConnection setExecutor(Executor executor) {
+		this.requireMutable();
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * Create an executor bounded to max requests in flight, running each request on a virtual thread
+	 * when runtime supports them (java 21+), otherwise on a pool of daemon threads.
+	 * @param maxConcurrency max requests in flight.
+	 * @return new bounded executor.
+	 */
+	public static ExecutorService newExecutor(int maxConcurrency) {
+		return HttpExecutor.bounded(maxConcurrency);
+	}
+
 	/**
 	 * List all cookies.
 	 * @return all cookies stored.
@@ -1084,6 +1347,7 @@ public class HttpConnection {
 	 * @return current http connection reference.
 	 */
 	public HttpConnection setCharset(Charset charset) {
+		this.requireMutable();
 		this.charset = Objects.requireNonNull(charset);
 		return this;
 	}
@@ -1094,6 +1358,7 @@ public class HttpConnection {
 	 * @return current http connection reference.
 	 */
 	public HttpConnection setUserAgent(String userAgent) {
+		this.requireMutable();
 		this.userAgent = StringUtils.requireNonNullOrWhitespace(userAgent);
 		return this;
 	}
@@ -1127,6 +1392,7 @@ public class HttpConnection {
 	 * @return current http connection reference.
 	 */
 	public HttpConnection setContentType(String contentType) {
+		this.requireMutable();
 		this.contentType = StringUtils.requireNonNullOrWhitespace(contentType);
 		return this;
 	}
@@ -1137,6 +1403,7 @@ public class HttpConnection {
 	 * @return current http connection reference.
 	 */
 	public HttpConnection setContentType(ContentType contentType) {
+		this.requireMutable();
 		this.contentType = contentType.getValue();
 		return this;
 	}
@@ -1147,6 +1414,7 @@ public class HttpConnection {
 	 * @return current http connection reference.
 	 */
 	public HttpConnection setAcceptType(String... acceptType) {
+		this.requireMutable();
 		this.acceptType = contentQualityMerge(DEFAULT_ACCEPT_QUALITY, Arrays.stream(acceptType));
 		return this;
 	}
@@ -1157,6 +1425,7 @@ public class HttpConnection {
 	 * @return current http connection reference.
 	 */
 	public HttpConnection setAcceptType(ContentType... aceptType) {
+		this.requireMutable();
 		this.acceptType = null;
 		return addAcceptType(DEFAULT_ACCEPT_QUALITY, aceptType)
 				.addAcceptType(DEFAULT_ACCEPT_QUALITY - DEFAULT_ACCEPT_QUALITY_OFFSET);
@@ -1169,6 +1438,7 @@ public class HttpConnection {
 	 * @return current http connection reference.
 	 */
 	public HttpConnection addAcceptType(float quality, ContentType... acceptType) {
+		this.requireMutable();
 		this.acceptType = Optional.ofNullable(this.acceptType).map(e -> e + ", ").orElse("") +
 				contentQualityMerge(quality, Arrays.stream(acceptType).map(ContentType::getValue));
 		return this;
@@ -1191,6 +1461,7 @@ public class HttpConnection {
 	 * @return current http connection reference.
 	 */
 	public HttpConnection setAcceptLanguage(Locale... locale) {
+		this.requireMutable();
 		acceptLanguage = null;
 		return addAcceptLanguage(DEFAULT_ACCEPT_QUALITY, locale);
 	}
@@ -1202,6 +1473,7 @@ public class HttpConnection {
 	 * @return current http connection reference.
 	 */
 	public HttpConnection addAcceptLanguage(float quality, Locale... locale) {
+		this.requireMutable();
 		this.acceptLanguage = Optional.ofNullable(this.acceptLanguage).map(e -> e + ", ").orElse("") +
 				contentQualityMerge(quality, Arrays.stream(locale).map(Locale::toLanguageTag)).toLowerCase();
 		return this;
@@ -1237,6 +1509,7 @@ public class HttpConnection {
 	 * @return current http connection reference.
 	 */
 	public HttpConnection setAcceptEncoding(AcceptEncoding... acceptEncoding) {
+		this.requireMutable();
 		this.acceptEncoding = null;
 		return addAcceptEncoding(DEFAULT_ACCEPT_QUALITY, acceptEncoding);
 	}
@@ -1248,6 +1521,7 @@ public class HttpConnection {
 	 * @return current http connection reference.
 	 */
 	public HttpConnection addAcceptEncoding(float quality, AcceptEncoding... acceptEncoding) {
+		this.requireMutable();
 		this.acceptEncoding = Optional.ofNullable(this.acceptEncoding).map(e -> e + ", ").orElse("") +
 				contentQualityMerge(quality, Arrays.stream(acceptEncoding).map(AcceptEncoding::getValue)).toLowerCase();
 		return this;
@@ -1276,6 +1550,7 @@ public class HttpConnection {
 	 * @return current http connection reference.
 	 */
 	public HttpConnection setCharsetForName(String charsetName) {
+		this.requireMutable();
 		this.charset = Charset.forName(charsetName);
 		return this;
 	}
@@ -1286,6 +1561,7 @@ public class HttpConnection {
 	 * @return current http connection reference.
 	 */
 	public HttpConnection changeConnectionTimeOut(int connectionTimeOut) {
+		this.requireMutable();
 		this.connectionTimeOut = connectionTimeOut;
 		return this;
 	}
@@ -1296,6 +1572,7 @@ public class HttpConnection {
 	 * @return current http connection reference.
 	 */
 	public HttpConnection changeReadTimeOut(int readTimeOut) {
+		this.requireMutable();
 		this.readTimeOut = readTimeOut;
 		return this;
 	}
@@ -1308,12 +1585,115 @@ public class HttpConnection {
 		return this.isKeepAlive;
 	}
 
+	/**
+	 * <p>Limit requests in flight by host (scheme, host and port), one limit shared by all
+	 * limited http connections to host, resized to the last limit set. Requests above limit
+	 * wait in queue (fair) until queue timeout.</p>
+	 * @param maxInFlight max requests in flight by host, zero to unlimited.
+	 * @param queueTimeout max time waiting in queue, when exceeded request fails.
+	 * @param unit queue timeout unit.
+	 * @return current instance.
+	 */
+	public HttpConnection setMaxRequestsPerHost(int maxInFlight, long queueTimeout, TimeUnit unit) {
+		this.requireMutable();
+		if(maxInFlight < 0) throw new IllegalArgumentException("Max requests in flight can not be negative!");
+		this.maxRequestsPerHost = maxInFlight;
+		this.hostQueueTimeoutInMillis = Objects.requireNonNull(unit).toMillis(queueTimeout);
+		return this;
+	}
+
+	/**
+	 * <p>Set retry policy of idempotent requests (GET, PUT, DELETE), retried when fails by
+	 * connection error or retryable status code, see {@link RetryPolicy}.</p>
+	 * @param retryPolicy retry policy, or null to disable retries.
+	 * @return current instance.
+	 */
+	public HttpConnection setRetryPolicy(RetryPolicy retryPolicy) {
+		this.requireMutable();
+		this.retryPolicy = retryPolicy;
+		return this;
+	}
+
+	/**
+	 * <p>Set circuit breaker of requests by host: once failure rate of last requests on host
+	 * reaches threshold, requests to host fail fast by {@link CircuitOpenException}, without waiting
+	 * connect or read timeouts, or are served stale by cache (see {@link #setStaleIfError(long, TimeUnit)}),
+	 * see {@link CircuitBreaker}.</p>
+	 * @param circuitBreaker circuit breaker, shared by connections using it, or null to disable it.
+	 * @return current instance.
+	 */
+	public HttpConnection setCircuitBreaker(CircuitBreaker circuitBreaker) {
+		this.requireMutable();
+		this.circuitBreaker = circuitBreaker;
+		return this;
+	}
+
+	/**
+	 * <p>Enable stale-if-error of cached responses (GET method, see {@link #useCache()}): cached content
+	 * is kept after its freshness during window, and served (see {@link Response#isStale()}) when its
+	 * revalidation request fails by connection error, server error (5XX) or circuit breaker open
+	 * (see {@link #setCircuitBreaker(CircuitBreaker)}).</p>
+	 * @param staleIfError window after freshness where cached content may be served on error, zero to disable it.
+	 * @param unit window unit.
+	 * @return current instance.
+	 */
+	public HttpConnection setStaleIfError(long staleIfError, TimeUnit unit) {
+		this.requireMutable();
+		if(staleIfError < 0) throw new IllegalArgumentException("Stale-if-error window can not be negative!");
+		this.staleIfErrorInMillis = Objects.requireNonNull(unit).toMillis(staleIfError);
+		return this;
+	}
+
+	/**
+	 * <p>Set instrumentation listener, notified of each request exchange completed (connect, time to
+	 * first byte and body read phases latency, bytes sent and received) and responses served by cache,
+	 * see {@link HttpMetrics}.</p>
+	 * @param listener listener, or null to disable instrumentation.
+	 * @return current instance.
+	 */
+	public HttpConnection setListener(HttpListener listener) {
+		this.requireMutable();
+		this.listener = listener;
+		return this;
+	}
+
+	/**
+	 * <p>Enable hedged requests (GET method): when response is not received after delay,
+	 * a duplicate request is sent, first successful response is used and the other one cancelled.</p>
+	 * <p>Hedged responses are fully read before returned, use a delay near to response time
+	 * high percentile (e.g. p95) to limit duplicated requests. Request is sent on caller thread,
+	 * duplicate one on executor (see {@link #setExecutor(Executor)}) when a thread takes it
+	 * before request completes, otherwise it is not sent.</p>
+	 * @param delay delay before send duplicate request, zero to disable hedging.
+	 * @param unit delay unit.
+	 * @return current instance.
+	 */
+	public HttpConnection setHedging(long delay, TimeUnit unit) {
+		this.requireMutable();
+		if(delay < 0) throw new IllegalArgumentException("Hedging delay can not be negative!");
+		this.hedgeDelayInMillis = Objects.requireNonNull(unit).toMillis(delay);
+		return this;
+	}
+
+	/**
+	 * Recover statistics of requests done on host of target url
+	 * (connections opened, released for keep-alive, discarded, queued and rejected).
+	 * @param url target url.
+	 * @return host statistics.
+	 */
+	public static HttpHostStats getHostStats(URL url) {
+		return HttpHost.of(Objects.requireNonNull(url)).stats();
+	}
+
 	/**
 	 * Set keep alive (session).
+	 * <i>When enabled, response connection is released (content drained and closed) to keep-alive cache,
+	 * reusable by next requests on same host, instead of disconnected.</i>
 	 * @param isKeepAlive true for keep alive.
 	 * @return current http connection reference.
 	 */
 	public HttpConnection setKeepAlive(boolean isKeepAlive) {
+		this.requireMutable();
 		this.isKeepAlive = isKeepAlive;
 		return this;
 	}
@@ -1333,6 +1713,7 @@ public class HttpConnection {
 	 * @return current http connection reference.
 	 */
 	public HttpConnection setUseCookieBetweenRequest(boolean isUseCookieBetweenRequest) {
+		this.requireMutable();
 		this.isUseCookieBetweenRequest = isUseCookieBetweenRequest;
 		return this;
 	}
@@ -1343,6 +1724,7 @@ public class HttpConnection {
 	 * @return current http connection reference.
 	 */
 	public HttpConnection setAcceptHttpResponseCode(StatusCode code) {
+		this.requireMutable();
 		if(!containsHttpResponseCode(code)) {
 			StatusCode[] aux = acceptRespCode;
 			acceptRespCode = new StatusCode[acceptRespCode.length + 1];
@@ -1466,13 +1848,10 @@ public class HttpConnection {
 
 		try {
 			configSecureContext(con);
-			con.setRequestProperty("User-Agent", getUserAgentOrDefault());
-			con.setRequestProperty("Accept-Encoding", getAcceptEncodingOrDefault());
-			con.setRequestProperty("Accept", getAcceptTypeOrDefault());
-			con.setRequestProperty("Accept-Language", getAcceptLanguageOrDefault());
-			con.setRequestProperty("Accept-Charset", getAcceptCharsetOrDefault());
-			con.setRequestProperty("Content-Type", this.contentType + "; charset=" + this.charset.name());
-			con.setRequestProperty("Connection", isKeepAlive ? "keep-alive" : "close");
+			String[] headers = this.getHeaders();
+			for(int i = 0; i < headers.length; i += 2) {
+				con.setRequestProperty(headers[i], headers[i + 1]);
+			}
 
 			Optional.ofNullable(auth)
 					.ifPresent(a -> con.setRequestProperty("Authorization", a.auth(charset)));
@@ -1483,7 +1862,7 @@ public class HttpConnection {
 				con.setRequestProperty("Proxy-Connection", isKeepAlive ? "keep-alive" : "close");
 			}
 
-			if (type.equals(RequestType.POST)) {
+			if (type.equals(RequestType.POST) && postDataLength >= 0) {
 				con.setRequestProperty("Content-Length", String.valueOf(postDataLength));
 				con.setDoOutput(true);
 			}
@@ -1590,6 +1969,52 @@ public class HttpConnection {
 		return result;
 	}
 
+	/**
+	 * Exclude input parameters of type.
+	 * @param params all parameters
+	 * @param type type to exclude
+	 * @return parameters of other types.
+	 */
+	private Parameter[] excludeParameters(Parameter[] params, ParameterType type) {
+		if(params == null) {
+			return null;
+		}
+
+		Parameter[] result = new Parameter[params.length];
+
+		int i=0;
+		for(Parameter p : params) {
+			if(p.getType() != type) {
+				result[i++] = p;
+			}
+		}
+
+		if(i < params.length) {
+			Parameter[] aux = result;
+			result = new Parameter[i];
+			System.arraycopy(aux, 0, result, 0, i);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Expand url template by QUERY parameters.
+	 * @param template target url template
+	 * @param params all parameters
+	 * @return expanded url.
+	 * @throws URLConnectionException throws when expanded url is malformed.
+	 */
+	private URL expand(UrlTemplate template, Parameter... params) throws URLConnectionException {
+		Objects.requireNonNull(template);
+		try {
+			return template.expand(this.filterParameters(params, ParameterType.QUERY));
+		} catch (MalformedURLException e) {
+			throw new URLConnectionException(
+					"An error occurred while attempt to expand url template:\n" + e.getMessage());
+		}
+	}
+
 	/**
 	 * Add QUERY parameters for URL.
 	 * @param url target url
@@ -1599,6 +2024,10 @@ public class HttpConnection {
 	 */
 	private URL addParameters(URL url, Parameter... params) throws MalformedURLException {
 		params = this.filterParameters(params, ParameterType.QUERY);
+		if(params == null || params.length == 0) {
+			return url;
+		}
+
 		String urlStr = url.toExternalForm();
 		StringBuilder queryParams = null;
 
@@ -1642,18 +2071,20 @@ public class HttpConnection {
 		return builder.toString();
 	}
 
-	private InputStream resolveInputStream(HttpURLConnection con) throws URLConnectionException {
+	private InputStream resolveInputStream(HttpURLConnection con, HttpTrace trace) throws URLConnectionException {
 		try {
-			return AcceptEncoding.resolveContentEncoding(con, con.getInputStream());
+			return trace == null ? AcceptEncoding.resolveContentEncoding(con, con.getInputStream()) :
+					trace.countDecoded(AcceptEncoding.resolveContentEncoding(con, trace.countIn(con.getInputStream())));
 		} catch (IOException e) {
 			throw new URLConnectionException(
 					"An error occurred while attempt to access the page content:\n" + e.getMessage());
 		}
 	}
 
-	private InputStream resolveErrorStream(HttpURLConnection con) throws URLConnectionException {
+	private InputStream resolveErrorStream(HttpURLConnection con, HttpTrace trace) throws URLConnectionException {
 		try {
-			return AcceptEncoding.resolveContentEncoding(con, con.getErrorStream());
+			return trace == null ? AcceptEncoding.resolveContentEncoding(con, con.getErrorStream()) :
+					trace.countDecoded(AcceptEncoding.resolveContentEncoding(con, trace.countIn(con.getErrorStream())));
 		} catch (IOException e) {
 			throw new URLConnectionException(
 					"An error occurred while attempt to access the page content:\n" + e.getMessage());
@@ -1665,29 +2096,57 @@ public class HttpConnection {
 		this.updateCookies(con);
 	}
 
+	private HttpHost.Permit acquireHostPermit(URL url) throws URLConnectionException {
+		CircuitBreaker breaker = this.circuitBreaker;
+		CircuitBreaker.Circuit circuit = breaker == null ? null : breaker.acquire(url);
+		try {
+			return HttpHost.of(url).acquire(maxRequestsPerHost, hostQueueTimeoutInMillis).withCircuit(circuit);
+		} catch (URLConnectionException e) {
+			if(circuit != null) circuit.abandon();
+			throw e;
+		}
+	}
+
+	private HttpTrace newTrace(URL url) {
+		HttpListener listener = this.listener;
+		return listener == null ? null : new HttpTrace(listener, url);
+	}
+
 	@SuppressWarnings("resource")
-	private Response.Builder getResponseBuilder() {
-		return new Response.Builder()
+	private Response.Builder getResponseBuilder(HttpTrace trace) {
+		Response.Builder builder = new Response.Builder()
 				.useCharset(this.charset)
 				.useBufferLength(BUFFER_LENGTH)
+				.useCacheLimit(cacheStreamLimit)
+				.useKeepAlive(isKeepAlive)
+				.useCacheMaxAge(cacheTimeUnit == null ? 0L : cacheTimeUnit.toMillis(cacheMaxAge))
+				.useStaleIfError(staleIfErrorInMillis)
+				.useCachePlaintext(useCachePlaintext)
 				.useSuccessResponseFun(this::containsHttpResponseCode)
-				.useInputStreamFun(this::resolveInputStream)
-				.useErrorStreamFun(this::resolveErrorStream)
+				.useInputStreamFun(c -> this.resolveInputStream(c, trace))
+				.useErrorStreamFun(c -> this.resolveErrorStream(c, trace))
 				.useFinallyAction(this::finallyHttpUrlConn);
+		return trace == null ? builder : builder.useTrace(trace);
 	}
 
-	private Response getResponse(HttpURLConnection con) {
-		return getResponseBuilder()
+	private Response getResponse(HttpURLConnection con, HttpHost.Permit permit) {
+		return getResponse(con, permit, this.newTrace(con.getURL()));
+	}
+
+	private Response getResponse(HttpURLConnection con, HttpHost.Permit permit, HttpTrace trace) {
+		return getResponseBuilder(trace)
 				.useConnection(con)
+				.usePermit(permit)
 				.build();
 	}
 
 	@SuppressWarnings("resource")
 	private Response getResponseCached(URL url,
 									   ResponseParameter.FunctionIO<URL, HttpURLConnection> conFun) {
-		return getResponseBuilder()
+		return getResponseBuilder(this.newTrace(url))
 				.useUrl(url)
 				.useConnectionFun(conFun)
+				.usePermitFun(this::acquireHostPermit)
 				.useCacheFun(this::getCache)
 				.build();
 	}
@@ -1696,23 +2155,50 @@ public class HttpConnection {
 	//region cached Response
 	private CacheControl getCache() {
 		if(useCache) {
-			switch (cacheMode) {
-				case MEMORY:
-					return CacheControl.memory(cacheId)
-							.maxAge(cacheMaxAge, cacheTimeUnit);
-				case STORED:
-					return CacheControl.stored(cacheId)
-							.maxAge(cacheMaxAge, cacheTimeUnit);
-				default:
-					throw new UnsupportedOperationException();
+			CacheControl cache;
+			if(cacheDirectory == null && cacheCodec == null) {
+				cache = newCache(cacheId);
+			} else {
+				//configured once by cache id, directory and compression, so connections
+				//with different settings never overwrite each other ones on a shared cache.
+				List<Object> key = Arrays.asList(cacheId, cacheMode, cacheDirectory,
+						cacheCodec, cacheCompressionThreshold);
+				cache = configuredCaches.get(key);//lock-free when already configured.
+				if(cache == null) {
+					cache = configuredCaches.computeIfAbsent(key, k -> {
+						CacheControl c = newCache(k);
+						if(cacheDirectory != null && cacheMode != CacheMode.MEMORY) c.directory(cacheDirectory);
+						if(cacheCodec != null) c.compression(cacheCodec, cacheCompressionThreshold);
+						return c;
+					});
+				}
 			}
+			return cache.maxAge(cacheMaxAge, cacheTimeUnit);
 		}
 		return null;
 	}
+
+	private CacheControl newCache(Object id) {
+		switch (cacheMode) {
+			case MEMORY:
+				return CacheControl.memory(id);
+			case STORED:
+				return CacheControl.stored(id);
+			case TIERED:
+				return CacheControl.tiered(id);
+			default:
+				throw new UnsupportedOperationException();
+		}
+	}
 	//endregion
 
 	//region get and send
 	private Response get(URL url, Parameter... params) throws URLConnectionException {
+		return retrying(RequestType.GET, null, () -> hedgeDelayInMillis > 0 ?
+				hedged(url, params) : get(url, null, params));
+	}
+
+	private Response get(URL url, AsyncRequest handle, Parameter... params) throws URLConnectionException {
 
 		//region prepare url
 		try {
@@ -1723,20 +2209,64 @@ public class HttpConnection {
 		}
 		//endregion
 
+		if(useCoalescing) {
+			URL target = url;
+			return HttpCoalescer.coalesce(getCoalescingKey(target, params), handle,
+					() -> this.getResponseCached(target, this.getConnectionFun(handle, params)));
+		}
+
 		//cached or new request
-		return this.getResponseCached(url, (u) -> {
-			//region new request
-			HttpURLConnection con;
-			try {
-				con = this.openConnection(u, RequestType.GET, 0, params);
-				con.connect();
-				return con;
-			} catch (IOException e) {
-				throw new URLConnectionException(
-						"An error occurred while attempt to connect on \"" + u + "\" :\n" + e.getMessage());
+		return this.getResponseCached(url, this.getConnectionFun(handle, params));
+	}
+
+	private ResponseParameter.FunctionIO<URL, HttpURLConnection> getConnectionFun(AsyncRequest handle, Parameter... params) {
+		return (u) -> {
+			//new request, connected by response after conditional (revalidation) headers.
+			HttpURLConnection con = this.openConnection(u, RequestType.GET, 0, params);
+			if(handle != null) handle.attach(con);
+			return con;
+		};
+	}
+
+	private String getCoalescingKey(URL url, Parameter... params) {
+		StringBuilder key = new StringBuilder(RequestType.GET.name())
+				.append(' ').append(url.toExternalForm())
+				.append('\n').append(useCache ? cacheId : 0);
+
+		//request header name and values, including credentials and cookies.
+		String[] block = this.getHeaders();
+		for(int i = 0; i < block.length; i += 2) {
+			appendHeader(key, block[i], block[i + 1]);
+		}
+
+		if(auth != null) {
+			appendHeader(key, "Authorization", auth.auth(charset));
+		}
+
+		if(useProxy) {
+			Auth proxy = authProxy != null ? authProxy : auth;
+			if(proxy != null) {
+				appendHeader(key, "Proxy-Authorization", proxy.auth(charset));
 			}
-		});
-		//endregion
+		}
+
+		synchronized (cookieLock) {
+			if(cookies != null) {
+				appendHeader(key, "Cookie", String.join(";", cookies));
+			}
+		}
+
+		Parameter[] headers = this.filterParameters(params, ParameterType.HEADER);
+		if(headers != null) {
+			for(Parameter p : headers) {
+				appendHeader(key, p.getName(), String.valueOf(p.getContent()));
+			}
+		}
+		return key.toString();
+	}
+
+	private static void appendHeader(StringBuilder key, String name, String value) {
+		key.append('\n').append(name).append(": ").append(value);
 	}
 
 	private Response get(String url, Parameter... params) throws URLConnectionException {
@@ -1748,6 +2278,10 @@ public class HttpConnection {
 	}
 
 	private Response send(URL url, RequestType type, byte[] data, Parameter... params) throws URLConnectionException {
+		return retrying(type, null, () -> send(url, type, data, null, params));
+	}
+
+	private Response send(URL url, RequestType type, byte[] data, AsyncRequest handle, Parameter... params) throws URLConnectionException {
 
 		if (data == null || data.length == 0) {
 			Parameter[] bodyParams = this.filterParameters(params, ParameterType.BODY);
@@ -1762,24 +2296,84 @@ public class HttpConnection {
 			data = builder.getBytes(this.charset);
 		}
 
+		return send(url, type, RequestBody.of(data), handle, params);
+	}
+
+	private Response send(URL url, RequestType type, RequestBody body, Parameter... params) throws URLConnectionException {
+		Objects.requireNonNull(body);
+		return body.isRepeatable() ?
+				retrying(type, null, () -> send(url, type, body, null, params)) :
+				send(url, type, body, null, params);
+	}
+
+	private Response send(URL url, RequestType type, RequestBody body, AsyncRequest handle, Parameter... params) throws URLConnectionException {
 		HttpURLConnection con = null;
-		OutputStream out;
+		HttpHost.Permit permit = null;
+		HttpTrace trace = null;
 
 		try {
 
 			url = addParameters(url, params);
-			con = this.openConnection(url, type, data.length, params);
+			long length = body.length();
+			for (int attempt = 1;; attempt++) {
+				permit = this.acquireHostPermit(url);
+				con = this.openConnection(url, type, length > Integer.MAX_VALUE ? -1 : (int) length, params);
+				if(handle != null) handle.attach(con);
+
+				//byte array content buffered by connection (replayed on redirects and
+				//authentication challenges), others streamed, never buffered by connection.
+				boolean streamed = !body.isBuffered();
+				con.setDoOutput(true);
+				if(body.isGzip()) con.setRequestProperty("Content-Encoding", "gzip");
+				if(streamed) {
+					if(length >= 0) con.setFixedLengthStreamingMode(length);
+					else con.setChunkedStreamingMode(0);
+				}
+
+				trace = this.newTrace(url);
+				if(trace != null) trace.connecting();
+				try (OutputStream out = trace == null ? con.getOutputStream() : trace.countOut(con.getOutputStream())) {
+					if(trace != null) trace.connected();
+					body.writeTo(out);
+					out.flush();
+				}
 
-			out = con.getOutputStream();
-			out.write(data);
-			out.flush();
-			out.close();
+				//streamed requests are not resent by connection, and stale kept alive
+				//connections are only discarded before streamed POST, so resend once
+				//idempotent ones (PUT, DELETE), never PATCH, already processed maybe.
+				if(!streamed || (type != RequestType.PUT && type != RequestType.DELETE) ||
+						!body.isRepeatable() || attempt > 1) {
+					break;
+				}
+
+				try {
+					con.getResponseCode();
+					break;
+				} catch (SocketException e) {
+					con.disconnect();
+					permit.release(false);
+					permit = null;
+				}
+			}
 
-			return this.getResponse(con);
+			Response response = this.getResponse(con, permit, trace);
+			permit = null;//released by response.
+			return response;
 		} catch (IOException e) {
+			if(permit != null) permit.record(null);
 			if(con != null) con.disconnect();
 			throw new URLConnectionException(
 					"An error occurred while attempt to post data:\n" + e.getMessage());
+		} finally {
+			if(permit != null) permit.release(false);
+		}
+	}
+
+	private Response send(String url, RequestType type, RequestBody body, Parameter... params) throws URLConnectionException {
+		try {
+			return send(new URL(url), type, body, params);
+		} catch (MalformedURLException e) {
+			throw new URLConnectionException(e);
 		}
 	}
 
@@ -1792,7 +2386,7 @@ public class HttpConnection {
 	}
 
 	private Response send(URL url, RequestType type, Parameter... params) throws URLConnectionException {
-		return send(url, type, null, params);
+		return send(url, type, (byte[]) null, params);
 	}
 
 	private Response send(String url, RequestType type, Parameter... params) throws URLConnectionException {
@@ -1804,6 +2398,112 @@ public class HttpConnection {
 	}
 	//endregion
 
+	//region retry and hedging
+	private Response retrying(RequestType type, AsyncRequest handle,
+							  ResponseParameter.Function<Response> request) throws URLConnectionException {
+		RetryPolicy policy = this.retryPolicy;
+		if(policy == null || !policy.isIdempotent(type)) {
+			return request.apply();
+		}
+
+		policy.onRequest();
+		for(int attempt = 1;; attempt++) {
+			Response response = null;
+			try {
+				response = request.apply();
+				if(!policy.isRetryable(response.getStatusCode()) ||
+						(handle != null && handle.isDone()) || !policy.tryRetry(attempt)) {
+					return response;
+				}
+				response.close();
+			} catch (URLConnectionException e) {
+				if(response != null) response.close();
+				if(e instanceof CircuitOpenException ||
+						(handle != null && handle.isDone()) || !policy.tryRetry(attempt)) {
+					throw e;
+				}
+			}
+
+			try {
+				Thread.sleep(policy.backoff(attempt));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new URLConnectionException(e);
+			}
+		}
+	}
+
+	private Response hedged(URL url, Parameter... params) throws URLConnectionException {
+		//primary on caller thread, duplicate on executor only when a thread takes it after delay,
+		//so never waits for a task queued on executor (already busy by callers waiting on it).
+		AsyncRequest primary = new AsyncRequest(0L, TimeUnit.MILLISECONDS);
+		AsyncRequest secondary = new AsyncRequest(0L, TimeUnit.MILLISECONDS);
+		AtomicBoolean claimed = new AtomicBoolean();
+		Executor executor = this.executor == null ? HttpExecutor.shared() : this.executor;
+		Runnable hedge = () -> {
+			if(claimed.compareAndSet(false, true)) {
+				secondary.run(handle -> get(url, handle, params));
+				try {
+					if(secondary.getNow(null).isSuccess()) {
+						primary.cancel(true);//disconnects primary in flight.
+					}
+				} catch (RuntimeException | URLConnectionException ignored) { }
+			}
+		};
+		ScheduledFuture<?> timer = HttpExecutor.scheduler().schedule(() -> {
+			try {
+				executor.execute(hedge);
+			} catch (RuntimeException ignored) {
+				//rejected, not hedged.
+			}
+		}, hedgeDelayInMillis, TimeUnit.MILLISECONDS);
+
+		try {
+			primary.run(handle -> get(url, handle, params));
+			if(claimed.compareAndSet(false, true)) {
+				//duplicate not sent.
+				timer.cancel(false);
+				return primary.get();
+			}
+			return firstSuccessful(primary, secondary).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new URLConnectionException(e);
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof URLConnectionException ?
+					(URLConnectionException) e.getCause() : new URLConnectionException(e.getCause());
+		} finally {
+			//completed one (used) is not affected, other one in flight is disconnected.
+			timer.cancel(false);
+			claimed.set(true);
+			primary.cancel(true);
+			secondary.cancel(true);
+		}
+	}
+
+	private static CompletableFuture<Response> firstSuccessful(CompletableFuture<Response> first,
+															   CompletableFuture<Response> second) {
+		CompletableFuture<Response> winner = new CompletableFuture<>();
+		AtomicInteger pending = new AtomicInteger(2);
+		BiConsumer<Response, Throwable> onDone = (response, ex) -> {
+			boolean success = false;
+			try {
+				success = ex == null && response.isSuccess();
+			} catch (URLConnectionException ignored) { }
+
+			boolean used = success ? winner.complete(response) :
+					pending.decrementAndGet() == 0 && (ex == null ?
+							winner.complete(response) : winner.completeExceptionally(ex));
+			if(!used && response != null) {
+				response.close();
+			}
+		};
+		first.whenComplete(onDone);
+		second.whenComplete(onDone);
+		return winner;
+	}
+	//endregion
+
 	//region getContent
 	/**
 	 * Do a request (GET Method) on {@link URL} with {@link Parameter}
@@ -1830,6 +2530,251 @@ public class HttpConnection {
 	}
 	//endregion
 
+	//region async
+	private CompletableFuture<Response> async(long timeout, TimeUnit unit, AsyncRequest.Work work) {
+		AsyncRequest handle = new AsyncRequest(timeout, unit);
+		Executor executor = this.executor == null ? HttpExecutor.shared() : this.executor;
+		try {
+			executor.execute(() -> handle.run(work));
+		} catch (RuntimeException e) {
+			handle.completeExceptionally(new URLConnectionException(e));
+		}
+		return handle;
+	}
+
+	private static URL toURL(String url) throws URLConnectionException {
+		try {
+			return new URL(url);
+		} catch (MalformedURLException e) {
+			throw new URLConnectionException(e);
+		}
+	}
+
+	private static CompletableFuture<Response> failed(Throwable e) {
+		CompletableFuture<Response> future = new CompletableFuture<>();
+		future.completeExceptionally(e);
+		return future;
+	}
+
+	/**
+	 * <p>Do a request (GET Method) on {@link URL} with {@link Parameter} set asynchronously,
+	 * completing with a {@link Response} whose content was already read.</p>
+	 * <p>Cancelling the future disconnects the request in flight.</p>
+	 * @param url target url
+	 * @param params parameters
+	 * @return future completed with request result, or exceptionally with {@link URLConnectionException}.
+	 */
+	public CompletableFuture<Response> getContentAsync(URL url, Parameter... params) {
+		return getContentAsync(url, 0L, TimeUnit.MILLISECONDS, params);
+	}
+
+	/**
+	 * <p>Do a request (GET Method) on {@link URL} with {@link Parameter} set asynchronously,
+	 * completing with a {@link Response} whose content was already read.</p>
+	 * <p>Cancelling the future or reaching the deadline disconnects the request in flight,
+	 * connect and read timeouts are limited to the time remaining to the deadline.</p>
+	 * @param url target url
+	 * @param timeout max time to complete request (deadline), zero means without deadline.
+	 * @param unit timeout unit
+	 * @param params parameters
+	 * @return future completed with request result, or exceptionally with {@link URLConnectionException}.
+	 */
+	public CompletableFuture<Response> getContentAsync(URL url, long timeout, TimeUnit unit, Parameter... params) {
+		Objects.requireNonNull(url);
+		return async(timeout, unit, handle -> retrying(RequestType.GET, handle, () -> get(url, handle, params)));
+	}
+
+	/**
+	 * <p>Do a request (GET Method) on {@link URL} with {@link Parameter} set asynchronously,
+	 * completing with a {@link Response} whose content was already read.</p>
+	 * <p>Cancelling the future disconnects the request in flight.</p>
+	 * @param url target url
+	 * @param params parameters
+	 * @return future completed with request result, or exceptionally with {@link URLConnectionException}.
+	 */
+	public CompletableFuture<Response> getContentAsync(String url, Parameter... params) {
+		try {
+			return getContentAsync(toURL(url), params);
+		} catch (URLConnectionException e) {
+			return failed(e);
+		}
+	}
+
+	/**
+	 * <p>Send data asynchronously, completing with a {@link Response} whose content was already read.</p>
+	 * <p>Cancelling the future disconnects the request in flight.</p>
+	 * @param url target url
+	 * @param type request method
+	 * @param data data to be send, when null or empty body parameters are sent
+	 * @param params parameters
+	 * @return future completed with request result, or exceptionally with {@link URLConnectionException}.
+	 */
+	public CompletableFuture<Response> sendAsync(URL url, RequestType type, byte[] data, Parameter... params) {
+		return sendAsync(url, type, data, 0L, TimeUnit.MILLISECONDS, params);
+	}
+
+	/**
+	 * <p>Send data asynchronously, completing with a {@link Response} whose content was already read.</p>
+	 * <p>Cancelling the future or reaching the deadline disconnects the request in flight,
+	 * connect and read timeouts are limited to the time remaining to the deadline.</p>
+	 * @param url target url
+	 * @param type request method
+	 * @param data data to be send, when null or empty body parameters are sent
+	 * @param timeout max time to complete request (deadline), zero means without deadline.
+	 * @param unit timeout unit
+	 * @param params parameters
+	 * @return future completed with request result, or exceptionally with {@link URLConnectionException}.
+	 */
+	public CompletableFuture<Response> sendAsync(URL url, RequestType type, byte[] data,
+												 long timeout, TimeUnit unit, Parameter... params) {
+		Objects.requireNonNull(url);
+		Objects.requireNonNull(type);
+		return async(timeout, unit, handle -> retrying(type, handle, () -> type == RequestType.GET ?
+				get(url, handle, params) : send(url, type, data, handle, params)));
+	}
+
+	/**
+	 * <p>Send data asynchronously, completing with a {@link Response} whose content was already read.</p>
+	 * <p>Cancelling the future disconnects the request in flight.</p>
+	 * @param url target url
+	 * @param type request method
+	 * @param data data to be send, when null or empty body parameters are sent
+	 * @param params parameters
+	 * @return future completed with request result, or exceptionally with {@link URLConnectionException}.
+	 */
+	public CompletableFuture<Response> sendAsync(String url, RequestType type, byte[] data, Parameter... params) {
+		try {
+			return sendAsync(toURL(url), type, data, params);
+		} catch (URLConnectionException e) {
+			return failed(e);
+		}
+	}
+
+	/**
+	 * <p>Send streamed content asynchronously, completing with a {@link Response} whose content was already read.</p>
+	 * <p>Cancelling the future disconnects the request in flight.</p>
+	 * @param url target url
+	 * @param type request method
+	 * @param body content to be send
+	 * @param params parameters
+	 * @return future completed with request result, or exceptionally with {@link URLConnectionException}.
+	 */
+	public CompletableFuture<Response> sendAsync(URL url, RequestType type, RequestBody body, Parameter... params) {
+		Objects.requireNonNull(url);
+		Objects.requireNonNull(type);
+		Objects.requireNonNull(body);
+		return async(0L, TimeUnit.MILLISECONDS, handle -> body.isRepeatable() ?
+				retrying(type, handle, () -> send(url, type, body, handle, params)) :
+				send(url, type, body, handle, params));
+	}
+
+	/**
+	 * <p>Do requests (GET Method) on all {@link URL}s with {@link Parameter} set, at most max concurrency
+	 * requests in flight, iterating results in completion order (blocking until next one completes).</p>
+	 * <p>Requests share this http connection configuration (cache, cookies, auth, retry policy),
+	 * and run on its executor (see {@link #setExecutor(Executor)}), so throughput is also bounded by it.
+	 * Results completed but not yet iterated still count as in flight.</p>
+	 * @param urls target urls
+	 * @param maxConcurrency max requests in flight
+	 * @param params parameters, shared by all requests
+	 * @return results (responses with content already read) in completion order.
+	 */
+	public Iterator<BatchResult> getAll(Collection<URL> urls, int maxConcurrency, Parameter... params) {
+		return new HttpBatch(Objects.requireNonNull(urls), maxConcurrency, url -> getContentAsync(url, params));
+	}
+
+	/**
+	 * <p>Do requests (GET Method) on all {@link URL}s with {@link Parameter} set, at most max concurrency
+	 * requests in flight, delivering results in completion order to callback, on the caller thread.</p>
+	 * <p>Blocks until all results are delivered, see {@link #getAll(Collection, int, Parameter...)}.</p>
+	 * @param urls target urls
+	 * @param maxConcurrency max requests in flight
+	 * @param callback result callback, receives responses with content already read (closed after callback)
+	 * @param params parameters, shared by all requests
+	 */
+	public void getAll(Collection<URL> urls, int maxConcurrency, Consumer<BatchResult> callback, Parameter... params) {
+		Objects.requireNonNull(callback);
+		HttpBatch batch = new HttpBatch(Objects.requireNonNull(urls), maxConcurrency, url -> getContentAsync(url, params));
+		try {
+			while (batch.hasNext()) {
+				BatchResult result = batch.next();
+				try {
+					callback.accept(result);
+				} finally {
+					if(!result.isFailed()) {
+						try {
+							result.getResponse().close();
+						} catch (URLConnectionException | UnsupportedOperationException ignored) { }
+					}
+				}
+			}
+		} catch (RuntimeException e) {
+			batch.cancel();
+			throw e;
+		}
+	}
+	//endregion
+
+	//region download
+	private Response getRange(URL url, String range, String validator, Parameter... params) throws URLConnectionException {
+		HttpHost.Permit permit = this.acquireHostPermit(url);
+		try {
+			HttpURLConnection con = this.openConnection(url, RequestType.GET, 0, params);
+			//byte ranges are of encoded content, so request it as is.
+			con.setRequestProperty("Accept-Encoding", "identity");
+			if(range != null) con.setRequestProperty("Range", range);
+			if(validator != null) con.setRequestProperty("If-Range", validator);
+			Response response = this.getResponse(con, permit);
+			permit = null;//released by response.
+			return response;
+		} finally {
+			if(permit != null) permit.release(false);
+		}
+	}
+
+	/**
+	 * <p>Download content (GET Method) of {@link URL} into file, fetching byte ranges (parts)
+	 * concurrently on executor (see {@link #setExecutor(Executor)}) and caller thread, writing each part straight at
+	 * its offset on file, never buffering content in memory. Byte ranges support and content length
+	 * are probed by a one byte range request, when not supported content is downloaded by a single request.</p>
+	 * <p>Progress is kept beside file ({@code <file>.download}), so an interrupted or failed download
+	 * is resumed by next call, while remote content remains the same (same length and ETag or Last-Modified).
+	 * Downloaded length is verified at end. Requests bypass cache and coalescing.</p>
+	 * @param url target url
+	 * @param file target file, created or replaced.
+	 * @param parts max parts fetched concurrently.
+	 * @param params parameters, shared by all requests
+	 * @return downloaded content length.
+	 * @throws URLConnectionException throws when some connection error is found or download is incomplete.
+	 */
+	public long download(URL url, Path file, int parts, Parameter... params) throws URLConnectionException {
+		Objects.requireNonNull(url);
+		URL target;
+		try {
+			target = addParameters(url, params);
+		} catch (MalformedURLException e) {
+			throw new URLConnectionException(e);
+		}
+		Executor executor = this.executor == null ? HttpExecutor.shared() : this.executor;
+		return new HttpDownload(file, parts,
+				(range, validator) -> getRange(target, range, validator, params), executor).run();
+	}
+
+	/**
+	 * Download content (GET Method) of url into file, fetching byte ranges (parts) concurrently,
+	 * see {@link #download(URL, Path, int, Parameter...)}.
+	 * @param url target url
+	 * @param file target file, created or replaced.
+	 * @param parts max parts fetched concurrently.
+	 * @param params parameters, shared by all requests
+	 * @return downloaded content length.
+	 * @throws URLConnectionException throws when some connection error is found or download is incomplete.
+	 */
+	public long download(String url, Path file, int parts, Parameter... params) throws URLConnectionException {
+		return download(toURL(url), file, parts, params);
+	}
+	//endregion
+
 	//region post, put, patch, delete - data on body
 	/**
 	 * Send data (POST Method)
@@ -1920,6 +2865,80 @@ public class HttpConnection {
 	}
 	//endregion
 
+	//region post, put, patch - streamed body
+	/**
+	 * Send streamed content (POST Method)
+	 * @param url target url
+	 * @param body content to be send
+	 * @param params parameters
+	 * @return response with post result.
+	 * @throws URLConnectionException throws when some connection error is found.
+	 */
+	public Response postContent(URL url, RequestBody body, Parameter... params) throws URLConnectionException {
+		return this.send(url, RequestType.POST, body, params);
+	}
+
+	/**
+	 * Update by streamed content (PUT Method)
+	 * @param url target url
+	 * @param body content to be updated
+	 * @param params parameters
+	 * @return response with put result.
+	 * @throws URLConnectionException throws when some connection error is found.
+	 */
+	public Response putContent(URL url, RequestBody body, Parameter... params) throws URLConnectionException {
+		return this.send(url, RequestType.PUT, body, params);
+	}
+
+	/**
+	 * Send streamed content (PATCH Method)
+	 * @param url target url
+	 * @param body content to be updated
+	 * @param params parameters
+	 * @return response with result.
+	 * @throws URLConnectionException throws when some connection error is found.
+	 */
+	public Response patchContent(URL url, RequestBody body, Parameter... params) throws URLConnectionException {
+		return this.send(url, RequestType.PATCH, body, params);
+	}
+
+	/**
+	 * Send streamed content (POST Method)
+	 * @param url target url
+	 * @param body content to be send
+	 * @param params parameters
+	 * @return response with post result.
+	 * @throws URLConnectionException throws when some connection error is found.
+	 */
+	public Response postContent(String url, RequestBody body, Parameter... params) throws URLConnectionException {
+		return this.send(url, RequestType.POST, body, params);
+	}
+
+	/**
+	 * Update by streamed content (PUT Method)
+	 * @param url target url
+	 * @param body content to be updated
+	 * @param params parameters
+	 * @return response with put result.
+	 * @throws URLConnectionException throws when some connection error is found.
+	 */
+	public Response putContent(String url, RequestBody body, Parameter... params) throws URLConnectionException {
+		return this.send(url, RequestType.PUT, body, params);
+	}
+
+	/**
+	 * Send streamed content (PATCH Method)
+	 * @param url target url
+	 * @param body content to be updated
+	 * @param params parameters
+	 * @return response with result.
+	 * @throws URLConnectionException throws when some connection error is found.
+	 */
+	public Response patchContent(String url, RequestBody body, Parameter... params) throws URLConnectionException {
+		return this.send(url, RequestType.PATCH, body, params);
+	}
+	//endregion
+
 	//region post, put, patch, delete - parameters
 	/**
 	 * Send parameters data
@@ -2009,4 +3028,114 @@ public class HttpConnection {
 		return this.send(url, RequestType.DELETE, params);
 	}
 	//endregion
+
+	//region url template
+	/**
+	 * Do a request (GET Method) on {@link UrlTemplate} expanded by QUERY {@link Parameter}
+	 * set and recover a {@link Response} with result.
+	 * @param template target url template
+	 * @param params parameters
+	 * @return a response with request result.
+	 * @throws URLConnectionException throws when some connection error is found.
+	 */
+	public Response getContent(UrlTemplate template, Parameter... params) throws URLConnectionException {
+		return get(expand(template, params), excludeParameters(params, ParameterType.QUERY));
+	}
+
+	/**
+	 * <p>Do a request (GET Method) on {@link UrlTemplate} expanded by QUERY {@link Parameter} set asynchronously,
+	 * completing with a {@link Response} whose content was already read.</p>
+	 * <p>Cancelling the future disconnects the request in flight.</p>
+	 * @param template target url template
+	 * @param params parameters
+	 * @return future completed with request result, or exceptionally with {@link URLConnectionException}.
+	 */
+	public CompletableFuture<Response> getContentAsync(UrlTemplate template, Parameter... params) {
+		try {
+			return getContentAsync(expand(template, params), excludeParameters(params, ParameterType.QUERY));
+		} catch (URLConnectionException e) {
+			return failed(e);
+		}
+	}
+
+	/**
+	 * Send parameters data (POST Method) on {@link UrlTemplate} expanded by QUERY parameters.
+	 * @param template target url template
+	 * @param params optional parameters
+	 * @return response with post result.
+	 * @throws URLConnectionException throws when some connection error is found.
+	 */
+	public Response postContent(UrlTemplate template, Parameter... params) throws URLConnectionException {
+		return this.send(expand(template, params), RequestType.POST, excludeParameters(params, ParameterType.QUERY));
+	}
+
+	/**
+	 * Update data (PUT Method) on {@link UrlTemplate} expanded by QUERY parameters.
+	 * @param template target url template
+	 * @param params optional parameters
+	 * @return response with put result.
+	 * @throws URLConnectionException throws when some connection error is found.
+	 */
+	public Response putContent(UrlTemplate template, Parameter... params) throws URLConnectionException {
+		return this.send(expand(template, params), RequestType.PUT, excludeParameters(params, ParameterType.QUERY));
+	}
+
+	/**
+	 * Send data (PATCH Method) on {@link UrlTemplate} expanded by QUERY parameters.
+	 * @param template target url template
+	 * @param params parameters
+	 * @return response with result.
+	 * @throws URLConnectionException throws when some connection error is found.
+	 */
+	public Response patchContent(UrlTemplate template, Parameter... params) throws URLConnectionException {
+		return this.send(expand(template, params), RequestType.PATCH, excludeParameters(params, ParameterType.QUERY));
+	}
+
+	/**
+	 * Delete data (DELETE Method) on {@link UrlTemplate} expanded by QUERY parameters.
+	 * @param template target url template
+	 * @param params optional parameters
+	 * @return response with result.
+	 * @throws URLConnectionException throws when some connection error is found.
+	 */
+	public Response deleteContent(UrlTemplate template, Parameter... params) throws URLConnectionException {
+		return this.send(expand(template, params), RequestType.DELETE, excludeParameters(params, ParameterType.QUERY));
+	}
+
+	/**
+	 * Send streamed content (POST Method) on {@link UrlTemplate} expanded by QUERY parameters.
+	 * @param template target url template
+	 * @param body content to be send
+	 * @param params parameters
+	 * @return response with post result.
+	 * @throws URLConnectionException throws when some connection error is found.
+	 */
+	public Response postContent(UrlTemplate template, RequestBody body, Parameter... params) throws URLConnectionException {
+		return this.send(expand(template, params), RequestType.POST, body, excludeParameters(params, ParameterType.QUERY));
+	}
+
+	/**
+	 * Update by streamed content (PUT Method) on {@link UrlTemplate} expanded by QUERY parameters.
+	 * @param template target url template
+	 * @param body content to be updated
+	 * @param params parameters
+	 * @return response with put result.
+	 * @throws URLConnectionException throws when some connection error is found.
+	 */
+	public Response putContent(UrlTemplate template, RequestBody body, Parameter... params) throws URLConnectionException {
+		return this.send(expand(template, params), RequestType.PUT, body, excludeParameters(params, ParameterType.QUERY));
+	}
+
+	/**
+	 * Send streamed content (PATCH Method) on {@link UrlTemplate} expanded by QUERY parameters.
+	 * @param template target url template
+	 * @param body content to be send
+	 * @param params parameters
+	 * @return response with result.
+	 * @throws URLConnectionException throws when some connection error is found.
+	 */
+	public Response patchContent(UrlTemplate template, RequestBody body, Parameter... params) throws URLConnectionException {
+		return this.send(expand(template, params), RequestType.PATCH, body, excludeParameters(params, ParameterType.QUERY));
+	}
+	//endregion
 }
\ No newline at end of file
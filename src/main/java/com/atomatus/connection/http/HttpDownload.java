@@ -0,0 +1,454 @@
+package com.atomatus.connection.http;
+
+import com.atomatus.connection.http.exception.URLConnectionException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Download of a resource into a file, fetching byte ranges (parts) concurrently and writing
+ * each one straight at its offset on file, by positional writes.
+ * <p>
+ *     Progress of each part is kept in a state file beside target file ({@code <file>.download}),
+ *     so an interrupted download resumes from where each part stopped, while resource length
+ *     and validator (ETag or Last-Modified) remain the same. State file is removed once
+ *     download is completed and its length verified.
+ * </p>
+ */
+final class HttpDownload {
+
+	/**
+	 * Byte range request.
+	 */
+	@FunctionalInterface
+	interface Ranged {
+
+		/**
+		 * Request byte range of resource.
+		 * @param range byte range, e.g. "bytes=0-1023", or null to request whole content.
+		 * @param validator resource validator (If-Range), or null.
+		 * @return response, partial content (206) when range is honoured.
+		 * @throws URLConnectionException throws when some connection error is found.
+		 */
+		Response open(String range, String validator) throws URLConnectionException;
+	}
+
+	private static final long MIN_PART_LENGTH;
+	private static final int BUFFER_LENGTH;
+	private static final String STATE_SUFFIX;
+
+	static {
+		MIN_PART_LENGTH = 64 * 1024L;
+		BUFFER_LENGTH = 64 * 1024;
+		STATE_SUFFIX = ".download";
+	}
+
+	private final Path file;
+	private final Path state;
+	private final int parts;
+	private final Ranged ranged;
+	private final Executor executor;
+	private final AtomicBoolean aborted;
+	private final List<Response> inFlight;
+
+	/**
+	 * Create download.
+	 * @param file target file.
+	 * @param parts max parts fetched concurrently.
+	 * @param ranged byte range request.
+	 * @param executor parts executor.
+	 */
+	HttpDownload(Path file, int parts, Ranged ranged, Executor executor) {
+		if(parts <= 0) {
+			throw new IllegalArgumentException("Parts must be greater than 0!");
+		}
+		this.file = Objects.requireNonNull(file);
+		this.state = file.resolveSibling(file.getFileName() + STATE_SUFFIX);
+		this.parts = parts;
+		this.ranged = Objects.requireNonNull(ranged);
+		this.executor = Objects.requireNonNull(executor);
+		this.aborted = new AtomicBoolean();
+		this.inFlight = new ArrayList<>();
+	}
+
+	//region probe
+	/**
+	 * Download resource, probing length and byte ranges support by a one byte range request.
+	 * @return resource length.
+	 * @throws URLConnectionException throws when download fails or is interrupted (resumable).
+	 */
+	long run() throws URLConnectionException {
+		Response probe = ranged.open("bytes=0-0", null);
+		try {
+			HttpConnection.StatusCode code = probe.getStatusCode();
+			if(code == HttpConnection.StatusCode.HTTP_PARTIAL) {
+				long length = parseLength(probe.getHeaderField("Content-Range"));
+				if(length >= 0) {
+					String validator = validatorOf(probe);
+					probe.close();
+					probe = null;
+					return ranged(length, validator);
+				}
+
+				//length unknown, request whole content.
+				probe.close();
+				probe = null;
+				probe = ranged.open(null, null);
+				if(!probe.isSuccess()) {
+					throw new URLConnectionException("Download failed, status code: " + probe.getStatusCode());
+				}
+			} else if(code == HttpConnection.StatusCode.HTTP_RANGE_NOT_SATISFIABLE &&
+					parseLength(probe.getHeaderField("Content-Range")) == 0L) {
+				return single(null, 0L);//empty resource.
+			} else if(!probe.isSuccess()) {
+				throw new URLConnectionException("Download failed, status code: " + code);
+			}
+
+			//byte ranges not supported (or length unknown), probe response is whole content.
+			String length = probe.getHeaderField("Content-Length");
+			return single(probe, length == null ? -1L : Long.parseLong(length.trim()));
+		} catch (NumberFormatException e) {
+			throw new URLConnectionException(e);
+		} finally {
+			if(probe != null) probe.close();
+		}
+	}
+
+	/**
+	 * Total length of "Content-Range" header (e.g. "bytes 0-0/1024" or "bytes *&#47;1024").
+	 * @return total length, or -1 when unknown.
+	 */
+	private static long parseLength(String contentRange) {
+		int index;
+		if(contentRange == null || (index = contentRange.lastIndexOf('/')) == -1) {
+			return -1L;
+		}
+		String total = contentRange.substring(index + 1).trim();
+		return total.equals("*") ? -1L : Long.parseLong(total);
+	}
+
+	/**
+	 * Resource validator, strong ETag or Last-Modified.
+	 */
+	private static String validatorOf(Response response) throws URLConnectionException {
+		String etag = response.getHeaderField("ETag");
+		return etag != null && !etag.startsWith("W/") ? etag : response.getHeaderField("Last-Modified");
+	}
+	//endregion
+
+	//region single
+	private long single(Response response, long length) throws URLConnectionException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			long written = response == null ? 0L : write(response, channel, 0L, -1);
+			if(length >= 0 && written != length) {
+				throw new URLConnectionException("Download incomplete, expected " +
+						length + " bytes, but received " + written + "!");
+			}
+			Files.deleteIfExists(state);
+			return written;
+		} catch (IOException e) {
+			throw new URLConnectionException(
+					"An error occurred while attempt to write download on \"" + file + "\":\n" + e.getMessage());
+		}
+	}
+	//endregion
+
+	//region ranged
+	private long ranged(long length, String validator) throws URLConnectionException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			 FileChannel progress = FileChannel.open(state, StandardOpenOption.CREATE,
+					 StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+			State s = State.load(progress, length, validator);
+			if(s == null) {
+				int count = (int) Math.max(1L, Math.min(parts, length / MIN_PART_LENGTH));
+				s = State.create(progress, length, validator, count);
+			}
+
+			List<Integer> pending = new ArrayList<>(s.count);
+			List<CompletableFuture<Void>> futures = new ArrayList<>(s.count);
+			for(int i = 0; i < s.count; i++) {
+				if(s.positions[i] < s.end(i)) {
+					pending.add(i);
+					futures.add(new CompletableFuture<>());
+				}
+			}
+
+			//parts taken by executor threads and by caller thread, so caller never
+			//waits for a part queued on executor (already busy by callers waiting on it).
+			State current = s;
+			AtomicInteger next = new AtomicInteger();
+			Runnable worker = () -> {
+				for(int j; (j = next.getAndIncrement()) < pending.size(); ) {
+					try {
+						fetch(current, pending.get(j), channel, progress);
+						futures.get(j).complete(null);
+					} catch (Throwable e) {
+						futures.get(j).completeExceptionally(e);
+						abort();//first failure aborts other parts, progress kept to resume.
+					}
+				}
+			};
+			for(int i = 1; i < pending.size(); i++) {
+				try {
+					executor.execute(worker);
+				} catch (RuntimeException ignored) {
+					break;//rejected, parts fetched by caller thread.
+				}
+			}
+			worker.run();
+			await(futures);
+
+			for(int i = 0; i < s.count; i++) {
+				if(s.positions[i] != s.end(i)) {
+					throw new URLConnectionException("Download incomplete, part " + i + " stopped at " +
+							s.positions[i] + " of " + s.end(i) + "!");
+				}
+			}
+
+			channel.truncate(length);
+			if(channel.size() != length) {
+				throw new URLConnectionException("Download incomplete, expected " +
+						length + " bytes, but file has " + channel.size() + "!");
+			}
+			channel.force(false);
+		} catch (IOException e) {
+			throw new URLConnectionException(
+					"An error occurred while attempt to write download on \"" + file + "\":\n" + e.getMessage());
+		}
+
+		try {
+			Files.deleteIfExists(state);
+		} catch (IOException ignored) { }
+		return length;
+	}
+
+	private void fetch(State s, int part, FileChannel channel, FileChannel progress) {
+		try {
+			if(aborted.get()) {
+				return;
+			}
+
+			long position = s.positions[part], end = s.end(part);
+			Response response = ranged.open("bytes=" + position + "-" + (end - 1), s.validator);
+			synchronized (inFlight) {
+				inFlight.add(response);
+			}
+
+			try {
+				HttpConnection.StatusCode code = response.getStatusCode();
+				if(code != HttpConnection.StatusCode.HTTP_PARTIAL) {
+					if(code == HttpConnection.StatusCode.HTTP_OK) {
+						//If-Range not matched, resource changed: restart on next download.
+						progress.truncate(0L);
+						throw new URLConnectionException("Resource changed while downloading, download again!");
+					}
+					throw new URLConnectionException("Download failed, part " + part + " status code: " + code);
+				}
+
+				String contentRange = response.getHeaderField("Content-Range");
+				if(contentRange == null || !contentRange.trim().startsWith("bytes " + position + "-")) {
+					throw new URLConnectionException("Download failed, part " + part +
+							" unexpected content range: " + contentRange);
+				}
+
+				write(response, channel, position, part, s, progress);
+			} finally {
+				synchronized (inFlight) {
+					if(inFlight.remove(response)) {
+						response.close();
+					}
+				}
+			}
+		} catch (URLConnectionException | IOException e) {
+			throw new CompletionException(e);
+		}
+	}
+
+	private void await(List<CompletableFuture<Void>> futures) throws URLConnectionException {
+		try {
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			abort();
+			throw new URLConnectionException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null ?
+					e.getCause().getCause() : e.getCause();
+			throw cause instanceof URLConnectionException ?
+					(URLConnectionException) cause : new URLConnectionException(cause);
+		}
+	}
+
+	private void abort() {
+		if(aborted.compareAndSet(false, true)) {
+			synchronized (inFlight) {
+				//disconnects parts in flight.
+				inFlight.forEach(Response::close);
+				inFlight.clear();
+			}
+		}
+	}
+	//endregion
+
+	//region write
+	private long write(Response response, FileChannel channel, long position, int part) throws IOException, URLConnectionException {
+		return write(response, channel, position, part, null, null);
+	}
+
+	/**
+	 * Write response content straight at position on file, recording part progress when state is set.
+	 * @return count of bytes written.
+	 */
+	private long write(Response response, FileChannel channel, long position, int part,
+					   State s, FileChannel progress) throws IOException, URLConnectionException {
+		long start = position;
+		try (InputStream in = response.getContentStream();
+			 ReadableByteChannel source = Channels.newChannel(in)) {
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_LENGTH);
+			ByteBuffer slot = ByteBuffer.allocate(Long.BYTES);
+			while (!aborted.get() && source.read(buffer) != -1) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					position += channel.write(buffer, position);
+				}
+				buffer.clear();
+
+				if(s != null) {
+					if(position > s.end(part)) {
+						throw new URLConnectionException("Download failed, part " + part + " exceeds its range!");
+					}
+					s.positions[part] = position;
+					slot.clear();
+					slot.putLong(0, position);
+					progress.write(slot, s.slot(part));
+				}
+			}
+		}
+		return position - start;
+	}
+	//endregion
+
+	//region state
+	/**
+	 * Download progress: resource length and validator, parts count and position reached by each part.
+	 */
+	private static final class State {
+
+		private final long length;
+		private final String validator;
+		private final int count;
+		private final long[] positions;
+		private final int header;
+
+		private State(long length, String validator, int count, int header) {
+			this.length = length;
+			this.validator = validator;
+			this.count = count;
+			this.positions = new long[count];
+			this.header = header;
+		}
+
+		private static int headerLength(byte[] validator) {
+			return Long.BYTES + Integer.BYTES + Integer.BYTES + validator.length;
+		}
+
+		private static byte[] bytesOf(String validator) {
+			return validator == null ? new byte[0] : validator.getBytes(StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Load progress of same resource (length and validator), otherwise null.
+		 */
+		static State load(FileChannel progress, long length, String validator) throws IOException {
+			byte[] expected = bytesOf(validator);
+			long size = progress.size();
+			if(validator == null || size < headerLength(expected)) {
+				return null;//without validator, can not assure same resource.
+			}
+
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+			while (buffer.hasRemaining()) {
+				if(progress.read(buffer, buffer.position()) == -1) {
+					break;
+				}
+			}
+			buffer.flip();
+
+			int count, validatorLength;
+			if(buffer.getLong() != length || (count = buffer.getInt()) <= 0 ||
+					(validatorLength = buffer.getInt()) != expected.length ||
+					buffer.remaining() != validatorLength + (long) count * Long.BYTES) {
+				return null;
+			}
+
+			byte[] actual = new byte[validatorLength];
+			buffer.get(actual);
+			if(!validator.equals(new String(actual, StandardCharsets.UTF_8))) {
+				return null;
+			}
+
+			State s = new State(length, validator, count, headerLength(expected));
+			for(int i = 0; i < count; i++) {
+				long position = buffer.getLong();
+				if(position < s.start(i) || position > s.end(i)) {
+					return null;
+				}
+				s.positions[i] = position;
+			}
+			return s;
+		}
+
+		/**
+		 * Create progress, each part from its start.
+		 */
+		static State create(FileChannel progress, long length, String validator, int count) throws IOException {
+			byte[] bytes = bytesOf(validator);
+			State s = new State(length, validator, count, headerLength(bytes));
+			ByteBuffer buffer = ByteBuffer.allocate(s.header + count * Long.BYTES);
+			buffer.putLong(length).putInt(count).putInt(bytes.length).put(bytes);
+			for(int i = 0; i < count; i++) {
+				buffer.putLong(s.positions[i] = s.start(i));
+			}
+			buffer.flip();
+
+			progress.truncate(0L);
+			long position = 0L;
+			while (buffer.hasRemaining()) {
+				position += progress.write(buffer, position);
+			}
+			return s;
+		}
+
+		long start(int part) {
+			return part * ((length + count - 1) / count);
+		}
+
+		long end(int part) {
+			return part == count - 1 ? length : Math.min(length, start(part + 1));
+		}
+
+		long slot(int part) {
+			return header + (long) part * Long.BYTES;
+		}
+	}
+	//endregion
+}
@@ -0,0 +1,150 @@
+package com.atomatus.connection.http;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded executor running asynchronous requests, on virtual threads when runtime
+ * supports them (limiting requests in flight), otherwise on a fixed pool of daemon threads.
+ */
+final class HttpExecutor extends AbstractExecutorService {
+
+	private static final int DEFAULT_MAX_CONCURRENCY;
+	private static final Method newVirtualThreadPerTaskExecutor;
+	private static volatile ExecutorService shared;
+	private static volatile ScheduledExecutorService scheduler;
+
+	static {
+		DEFAULT_MAX_CONCURRENCY = 64;
+		Method method;
+		try {
+			method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			method = null;//runtime older than java 21.
+		}
+		newVirtualThreadPerTaskExecutor = method;
+	}
+
+	private final ExecutorService delegate;
+	private final Semaphore permits;
+
+	private HttpExecutor(ExecutorService delegate, int maxConcurrency) {
+		this.delegate = delegate;
+		this.permits = new Semaphore(maxConcurrency);
+	}
+
+	private static ThreadFactory daemonFactory(String prefix) {
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread t = new Thread(r, prefix + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+
+	/**
+	 * Create a bounded executor.
+	 * @param maxConcurrency max tasks running at same time.
+	 * @return bounded executor.
+	 */
+	static ExecutorService bounded(int maxConcurrency) {
+		if(maxConcurrency <= 0) {
+			throw new IllegalArgumentException("Max concurrency must be greater than 0!");
+		}
+
+		if(newVirtualThreadPerTaskExecutor != null) {
+			try {
+				return new HttpExecutor((ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null), maxConcurrency);
+			} catch (ReflectiveOperationException ignored) {
+				//fallback to platform threads.
+			}
+		}
+
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency,
+				60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), daemonFactory("http-async-"));
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Shared bounded executor, used when http connection does not define one.
+	 * @return shared executor.
+	 */
+	static ExecutorService shared() {
+		ExecutorService s = shared;
+		if(s == null) {
+			synchronized (HttpExecutor.class) {
+				if((s = shared) == null) {
+					shared = s = bounded(DEFAULT_MAX_CONCURRENCY);
+				}
+			}
+		}
+		return s;
+	}
+
+	/**
+	 * Shared scheduler (single daemon thread) for request deadlines.
+	 * @return shared scheduler.
+	 */
+	static ScheduledExecutorService scheduler() {
+		ScheduledExecutorService s = scheduler;
+		if(s == null) {
+			synchronized (HttpExecutor.class) {
+				if((s = scheduler) == null) {
+					ScheduledThreadPoolExecutor created = new ScheduledThreadPoolExecutor(1, daemonFactory("http-scheduler-"));
+					created.setRemoveOnCancelPolicy(true);
+					scheduler = s = created;
+				}
+			}
+		}
+		return s;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		delegate.execute(() -> {
+			permits.acquireUninterruptibly();
+			try {
+				command.run();
+			} finally {
+				permits.release();
+			}
+		});
+	}
+
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return delegate.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return delegate.awaitTermination(timeout, unit);
+	}
+}
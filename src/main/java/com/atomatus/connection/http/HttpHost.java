@@ -0,0 +1,212 @@
+package com.atomatus.connection.http;
+
+import com.atomatus.connection.http.exception.URLConnectionException;
+
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per host (authority) requests state: requests in flight limiter and connection counters,
+ * request permits record outcomes on host circuit when circuit breaker is enabled.
+ */
+final class HttpHost {
+
+	private static final ConcurrentMap<String, HttpHost> hosts;
+
+	static {
+		hosts = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Host requests in flight limiter, fair and resizable.
+	 */
+	private static final class Limiter extends Semaphore {
+
+		private volatile int limit;
+
+		private Limiter(int limit) {
+			super(limit, true);
+			this.limit = limit;
+		}
+
+		/**
+		 * Resize limit, permits in use are kept until released.
+		 * @param limit new limit.
+		 */
+		private synchronized void resize(int limit) {
+			if(limit > this.limit) {
+				release(limit - this.limit);
+			} else if(limit < this.limit) {
+				reducePermits(this.limit - limit);
+			}
+			this.limit = limit;
+		}
+	}
+
+	/**
+	 * Request permit, released once when request connection is released.
+	 */
+	final class Permit {
+
+		private final Semaphore semaphore;
+		private final AtomicBoolean released;
+		private final AtomicBoolean recorded;
+		private CircuitBreaker.Circuit circuit;
+
+		private Permit(Semaphore semaphore) {
+			this.semaphore = semaphore;
+			this.released = new AtomicBoolean();
+			this.recorded = new AtomicBoolean();
+		}
+
+		/**
+		 * Circuit of host where request outcome is recorded.
+		 * @param circuit host circuit, or null when circuit breaker is disabled.
+		 * @return current permit.
+		 */
+		Permit withCircuit(CircuitBreaker.Circuit circuit) {
+			this.circuit = circuit;
+			return this;
+		}
+
+		/**
+		 * Record request outcome on host circuit, once.
+		 * @param code response status code, null when request failed by connection error.
+		 */
+		void record(HttpConnection.StatusCode code) {
+			if(circuit != null && recorded.compareAndSet(false, true)) {
+				circuit.record(code);
+			}
+		}
+
+		/**
+		 * Release permit.
+		 * @param keptAlive true, connection was released to keep-alive cache, otherwise disconnected.
+		 */
+		void release(boolean keptAlive) {
+			if(released.compareAndSet(false, true)) {
+				if(circuit != null && recorded.compareAndSet(false, true)) {
+					circuit.abandon();
+				}
+				(keptAlive ? keepAliveReleasedCount : discardedCount).increment();
+				inFlight.decrement();
+				if(semaphore != null) {
+					semaphore.release();
+				}
+			}
+		}
+	}
+
+	private final String authority;
+	private volatile Limiter limiter;
+	private final LongAdder requestCount;
+	private final LongAdder keepAliveReleasedCount;
+	private final LongAdder discardedCount;
+	private final LongAdder queuedCount;
+	private final LongAdder rejectedCount;
+	private final LongAdder inFlight;
+
+	private HttpHost(String authority) {
+		this.authority = authority;
+		this.requestCount = new LongAdder();
+		this.keepAliveReleasedCount = new LongAdder();
+		this.discardedCount = new LongAdder();
+		this.queuedCount = new LongAdder();
+		this.rejectedCount = new LongAdder();
+		this.inFlight = new LongAdder();
+	}
+
+	/**
+	 * Host state of target url.
+	 * @param url request url.
+	 * @return host state.
+	 */
+	static HttpHost of(URL url) {
+		String authority = authorityOf(url);
+		HttpHost host = hosts.get(authority);
+		return host != null ? host : hosts.computeIfAbsent(authority, HttpHost::new);
+	}
+
+	/**
+	 * Authority (scheme, host and port) of target url.
+	 * @param url request url.
+	 * @return url authority.
+	 */
+	static String authorityOf(URL url) {
+		int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+		return url.getProtocol() + "://" + url.getHost().toLowerCase() + ":" + port;
+	}
+
+	/**
+	 * Acquire permit to do a request on host, waiting in queue while
+	 * max requests in flight on host is reached.
+	 * @param maxInFlight max requests in flight on host, zero or negative means unlimited.
+	 * @param queueTimeoutInMillis max time waiting in queue.
+	 * @return request permit.
+	 * @throws URLConnectionException throws when queue timeout is reached or interrupted.
+	 */
+	Permit acquire(int maxInFlight, long queueTimeoutInMillis) throws URLConnectionException {
+		Semaphore semaphore = null;
+		if(maxInFlight > 0) {
+			semaphore = limiter(maxInFlight);
+
+			if(!semaphore.tryAcquire()) {
+				queuedCount.increment();
+				try {
+					if(!semaphore.tryAcquire(Math.max(0L, queueTimeoutInMillis), TimeUnit.MILLISECONDS)) {
+						rejectedCount.increment();
+						throw new URLConnectionException("Max requests in flight (" + maxInFlight +
+								") to \"" + authority + "\" reached, queue timeout of " + queueTimeoutInMillis + "ms exceeded!");
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					rejectedCount.increment();
+					throw new URLConnectionException(e);
+				}
+			}
+		}
+
+		requestCount.increment();
+		inFlight.increment();
+		return new Permit(semaphore);
+	}
+
+	/**
+	 * Host limiter, one by host, resized when limit changes.
+	 * @param maxInFlight max requests in flight on host.
+	 * @return host limiter.
+	 */
+	private Limiter limiter(int maxInFlight) {
+		Limiter limiter = this.limiter;
+		if(limiter == null) {
+			synchronized (this) {
+				if((limiter = this.limiter) == null) {
+					return this.limiter = new Limiter(maxInFlight);
+				}
+			}
+		}
+		if(limiter.limit != maxInFlight) {
+			limiter.resize(maxInFlight);
+		}
+		return limiter;
+	}
+
+	/**
+	 * Snapshot of host statistics.
+	 * @return host statistics.
+	 */
+	HttpHostStats stats() {
+		return new HttpHostStats(authority,
+				requestCount.sum(),
+				keepAliveReleasedCount.sum(),
+				discardedCount.sum(),
+				queuedCount.sum(),
+				rejectedCount.sum(),
+				inFlight.sum());
+	}
+}
@@ -0,0 +1,117 @@
+package com.atomatus.connection.http;
+
+/**
+ * <strong>Http host statistics</strong>
+ * <p>
+ *     Immutable snapshot of requests done on a host (scheme, host and port),
+ *     recovered by {@link HttpConnection#getHostStats(java.net.URL)}.
+ * </p>
+ * <p>
+ *     Connections released for keep-alive were handed (content drained and closed) to the
+ *     keep-alive cache of runtime, reusable by next requests while not closed by server or
+ *     expired, see {@link HttpConnection#setKeepAlive(boolean)}. Actual reuse is decided by
+ *     runtime, so it is not counted. Discarded connections were disconnected.
+ * </p>
+ * @author Carlos Matos {@literal @chcmatos}
+ */
+public final class HttpHostStats {
+
+	private final String authority;
+	private final long requestCount;
+	private final long keepAliveReleasedCount;
+	private final long discardedCount;
+	private final long queuedCount;
+	private final long rejectedCount;
+	private final long inFlight;
+
+	HttpHostStats(String authority, long requestCount,
+				  long keepAliveReleasedCount, long discardedCount,
+				  long queuedCount, long rejectedCount, long inFlight) {
+		this.authority = authority;
+		this.requestCount = requestCount;
+		this.keepAliveReleasedCount = keepAliveReleasedCount;
+		this.discardedCount = discardedCount;
+		this.queuedCount = queuedCount;
+		this.rejectedCount = rejectedCount;
+		this.inFlight = inFlight;
+	}
+
+	/**
+	 * Host authority (scheme, host and port).
+	 * @return host authority.
+	 */
+	public String authority() {
+		return authority;
+	}
+
+	/**
+	 * Count of connections opened to host (requests not served by cache).
+	 * @return request count.
+	 */
+	public long requestCount() {
+		return requestCount;
+	}
+
+	/**
+	 * Count of connections released to keep-alive cache, not necessarily reused by next requests.
+	 * @return released for keep-alive count.
+	 */
+	public long keepAliveReleasedCount() {
+		return keepAliveReleasedCount;
+	}
+
+	/**
+	 * Count of connections disconnected.
+	 * @return discarded count.
+	 */
+	public long discardedCount() {
+		return discardedCount;
+	}
+
+	/**
+	 * Ratio of connections released to keep-alive cache, from all released ones.
+	 * @return released for keep-alive rate, from 0 to 1.
+	 */
+	public double keepAliveReleasedRate() {
+		long released = keepAliveReleasedCount + discardedCount;
+		return released == 0 ? 0d : (double) keepAliveReleasedCount / released;
+	}
+
+	/**
+	 * Count of requests queued waiting for max requests in flight,
+	 * see {@link HttpConnection#setMaxRequestsPerHost(int, long, java.util.concurrent.TimeUnit)}.
+	 * @return queued count.
+	 */
+	public long queuedCount() {
+		return queuedCount;
+	}
+
+	/**
+	 * Count of requests rejected by queue timeout.
+	 * @return rejected count.
+	 */
+	public long rejectedCount() {
+		return rejectedCount;
+	}
+
+	/**
+	 * Current requests in flight.
+	 * @return requests in flight.
+	 */
+	public long inFlight() {
+		return inFlight;
+	}
+
+	@Override
+	public String toString() {
+		return "HttpHostStats{" +
+				"authority=" + authority +
+				", requestCount=" + requestCount +
+				", keepAliveReleasedCount=" + keepAliveReleasedCount +
+				", discardedCount=" + discardedCount +
+				", queuedCount=" + queuedCount +
+				", rejectedCount=" + rejectedCount +
+				", inFlight=" + inFlight +
+				'}';
+	}
+}
@@ -0,0 +1,37 @@
+package com.atomatus.connection.http;
+
+import java.net.URL;
+
+/**
+ * <strong>Http listener</strong>
+ * <p>
+ *     Opt-in instrumentation of requests done by {@link HttpConnection}, see
+ *     {@link HttpConnection#setListener(HttpListener)}. Callbacks run on the thread completing
+ *     the request (reading response content or closing it), so must be cheap and thread-safe,
+ *     as {@link HttpMetrics}, which aggregates them by host and status code.
+ * </p>
+ * @author Carlos Matos {@literal @chcmatos}
+ */
+public interface HttpListener {
+
+	/**
+	 * Request exchange completed, once response content was read, or response closed.
+	 * @param url request url.
+	 * @param statusCode response status code.
+	 * @param connectNanos time to connect (near zero when connection was reused by keep-alive).
+	 * @param firstByteNanos time from connected (and request body sent) until response headers received.
+	 * @param bodyNanos time reading response content.
+	 * @param bytesOut request content bytes sent.
+	 * @param bytesIn response content bytes received, as sent by server (compressed).
+	 * @param bytesDecoded response content bytes read, decompressed.
+	 */
+	void onExchange(URL url, HttpConnection.StatusCode statusCode,
+					long connectNanos, long firstByteNanos, long bodyNanos,
+					long bytesOut, long bytesIn, long bytesDecoded);
+
+	/**
+	 * Response served by cache, without request.
+	 * @param url request url.
+	 */
+	default void onCacheHit(URL url) { }
+}
@@ -0,0 +1,451 @@
+package com.atomatus.connection.http;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <strong>Http metrics</strong>
+ * <p>
+ *     Listener aggregating requests latency by host (scheme, host and port) and status code,
+ *     split into connect, time to first byte and body read phases, with bytes transferred and
+ *     cache hits, see {@link HttpConnection#setListener(HttpListener)}.
+ * </p>
+ * <p>
+ *     Latencies are recorded on log-linear histograms (8 buckets by power of two, relative
+ *     error up to 12.5%), each record costing a few atomic increments, without allocation.
+ * </p>
+ * <code>
+ *     HttpMetrics metrics = new HttpMetrics();<br>
+ *     HttpConnection con = new HttpConnection().setListener(metrics);<br>
+ *     ...<br>
+ *     for(HttpMetrics.Entry e : metrics.snapshot().entries()) {<br>
+ *     &emsp;long p99 = e.firstByte().percentile(.99d, TimeUnit.MILLISECONDS);<br>
+ *     }
+ * </code>
+ * @author Carlos Matos {@literal @chcmatos}
+ */
+public final class HttpMetrics implements HttpListener {
+
+	private static final int SUB_BUCKET_BITS;
+	private static final int SUB_BUCKETS;
+	private static final int BUCKETS;
+
+	static {
+		SUB_BUCKET_BITS = 3;
+		SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+		BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+	}
+
+	//region histogram
+	private static int bucketOf(long value) {
+		if(value < SUB_BUCKETS) {
+			return (int) Math.max(0L, value);
+		}
+		int msb = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (msb - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	private static long upperBoundOf(int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lower + (1L << shift) - 1L;
+	}
+
+	/**
+	 * Latency histogram recorder.
+	 */
+	private static final class Recorder {
+
+		private final AtomicLongArray buckets;
+		private final LongAdder count;
+		private final LongAdder sum;
+		private final AtomicLong max;
+
+		Recorder() {
+			this.buckets = new AtomicLongArray(BUCKETS);
+			this.count = new LongAdder();
+			this.sum = new LongAdder();
+			this.max = new AtomicLong();
+		}
+
+		void record(long nanos) {
+			nanos = Math.max(0L, nanos);
+			buckets.incrementAndGet(bucketOf(nanos));
+			count.increment();
+			sum.add(nanos);
+			long current;
+			do {
+				current = max.get();
+			} while (nanos > current && !max.compareAndSet(current, nanos));
+		}
+
+		Histogram snapshot() {
+			long[] counts = new long[BUCKETS];
+			for(int i = 0; i < BUCKETS; i++) {
+				counts[i] = buckets.get(i);
+			}
+			return new Histogram(counts, count.sum(), sum.sum(), max.get());
+		}
+	}
+
+	/**
+	 * Immutable latency histogram snapshot.
+	 */
+	public static final class Histogram {
+
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+		private final long max;
+
+		private Histogram(long[] counts, long count, long sum, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		/**
+		 * Count of recorded values.
+		 * @return recorded count.
+		 */
+		public long count() {
+			return count;
+		}
+
+		/**
+		 * Mean of recorded values.
+		 * @param unit result unit.
+		 * @return mean latency, zero when empty.
+		 */
+		public long mean(TimeUnit unit) {
+			return count == 0 ? 0L : unit.convert(sum / count, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Max recorded value.
+		 * @param unit result unit.
+		 * @return max latency, zero when empty.
+		 */
+		public long max(TimeUnit unit) {
+			return unit.convert(max, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Percentile of recorded values, upper bound of bucket reached (never above max recorded).
+		 * @param percentile percentile, from 0 to 1 (e.g. 0.99 = p99).
+		 * @param unit result unit.
+		 * @return percentile latency, zero when empty.
+		 */
+		public long percentile(double percentile, TimeUnit unit) {
+			if(percentile < 0d || percentile > 1d) {
+				throw new IllegalArgumentException("Percentile must be between 0 and 1!");
+			} else if(count == 0) {
+				return 0L;
+			}
+
+			long rank = Math.max(1L, (long) Math.ceil(percentile * count)), seen = 0L;
+			for(int i = 0; i < counts.length; i++) {
+				if((seen += counts[i]) >= rank) {
+					return unit.convert(Math.min(max, upperBoundOf(i)), TimeUnit.NANOSECONDS);
+				}
+			}
+			return max(unit);
+		}
+
+		@Override
+		public String toString() {
+			return "Histogram{" +
+					"count=" + count +
+					", mean=" + mean(TimeUnit.MICROSECONDS) + "us" +
+					", p50=" + percentile(.5d, TimeUnit.MICROSECONDS) + "us" +
+					", p99=" + percentile(.99d, TimeUnit.MICROSECONDS) + "us" +
+					", max=" + max(TimeUnit.MICROSECONDS) + "us" +
+					'}';
+		}
+	}
+	//endregion
+
+	//region entry
+	/**
+	 * Exchanges recorder of a host and status code.
+	 */
+	private static final class Exchanges {
+
+		private final Recorder connect;
+		private final Recorder firstByte;
+		private final Recorder body;
+		private final LongAdder bytesOut;
+		private final LongAdder bytesIn;
+		private final LongAdder bytesDecoded;
+
+		Exchanges() {
+			this.connect = new Recorder();
+			this.firstByte = new Recorder();
+			this.body = new Recorder();
+			this.bytesOut = new LongAdder();
+			this.bytesIn = new LongAdder();
+			this.bytesDecoded = new LongAdder();
+		}
+	}
+
+	/**
+	 * Immutable snapshot of exchanges of a host and status code.
+	 */
+	public static final class Entry {
+
+		private final String authority;
+		private final HttpConnection.StatusCode statusCode;
+		private final Histogram connect;
+		private final Histogram firstByte;
+		private final Histogram body;
+		private final long bytesOut;
+		private final long bytesIn;
+		private final long bytesDecoded;
+
+		private Entry(String authority, HttpConnection.StatusCode statusCode, Exchanges e) {
+			this.authority = authority;
+			this.statusCode = statusCode;
+			this.connect = e.connect.snapshot();
+			this.firstByte = e.firstByte.snapshot();
+			this.body = e.body.snapshot();
+			this.bytesOut = e.bytesOut.sum();
+			this.bytesIn = e.bytesIn.sum();
+			this.bytesDecoded = e.bytesDecoded.sum();
+		}
+
+		/**
+		 * Host authority (scheme, host and port).
+		 * @return host authority.
+		 */
+		public String authority() {
+			return authority;
+		}
+
+		/**
+		 * Response status code.
+		 * @return status code.
+		 */
+		public HttpConnection.StatusCode statusCode() {
+			return statusCode;
+		}
+
+		/**
+		 * Count of exchanges.
+		 * @return exchange count.
+		 */
+		public long count() {
+			return connect.count();
+		}
+
+		/**
+		 * Connect phase latency.
+		 * @return connect histogram.
+		 */
+		public Histogram connect() {
+			return connect;
+		}
+
+		/**
+		 * Time to first byte latency, from connected (and request body sent) until response headers received.
+		 * @return time to first byte histogram.
+		 */
+		public Histogram firstByte() {
+			return firstByte;
+		}
+
+		/**
+		 * Body read phase latency.
+		 * @return body read histogram.
+		 */
+		public Histogram body() {
+			return body;
+		}
+
+		/**
+		 * Request content bytes sent.
+		 * @return bytes sent.
+		 */
+		public long bytesOut() {
+			return bytesOut;
+		}
+
+		/**
+		 * Response content bytes received, as sent by server (compressed).
+		 * @return bytes received.
+		 */
+		public long bytesIn() {
+			return bytesIn;
+		}
+
+		/**
+		 * Response content bytes read, decompressed.
+		 * @return bytes decoded.
+		 */
+		public long bytesDecoded() {
+			return bytesDecoded;
+		}
+
+		@Override
+		public String toString() {
+			return "Entry{" +
+					"authority=" + authority +
+					", statusCode=" + statusCode +
+					", connect=" + connect +
+					", firstByte=" + firstByte +
+					", body=" + body +
+					", bytesOut=" + bytesOut +
+					", bytesIn=" + bytesIn +
+					", bytesDecoded=" + bytesDecoded +
+					'}';
+		}
+	}
+
+	/**
+	 * Immutable snapshot of all exchanges and cache hits.
+	 */
+	public static final class Snapshot {
+
+		private final List<Entry> entries;
+		private final Map<String, Long> cacheHits;
+
+		private Snapshot(List<Entry> entries, Map<String, Long> cacheHits) {
+			this.entries = Collections.unmodifiableList(entries);
+			this.cacheHits = Collections.unmodifiableMap(cacheHits);
+		}
+
+		/**
+		 * Exchanges by host and status code.
+		 * @return exchanges entries.
+		 */
+		public List<Entry> entries() {
+			return entries;
+		}
+
+		/**
+		 * Exchanges of host and status code.
+		 * @param url url of host.
+		 * @param statusCode status code.
+		 * @return exchanges entry, or null when no exchange was recorded.
+		 */
+		public Entry entry(URL url, HttpConnection.StatusCode statusCode) {
+			String authority = HttpHost.authorityOf(Objects.requireNonNull(url));
+			for(Entry e : entries) {
+				if(e.authority.equals(authority) && e.statusCode == statusCode) {
+					return e;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Count of responses served by cache.
+		 * @return cache hits.
+		 */
+		public long cacheHits() {
+			long total = 0L;
+			for(long hits : cacheHits.values()) {
+				total += hits;
+			}
+			return total;
+		}
+
+		/**
+		 * Count of responses of host served by cache.
+		 * @param url url of host.
+		 * @return cache hits.
+		 */
+		public long cacheHits(URL url) {
+			return cacheHits.getOrDefault(HttpHost.authorityOf(Objects.requireNonNull(url)), 0L);
+		}
+
+		@Override
+		public String toString() {
+			return "Snapshot{" +
+					"entries=" + entries +
+					", cacheHits=" + cacheHits +
+					'}';
+		}
+	}
+	//endregion
+
+	private final ConcurrentMap<String, ConcurrentMap<HttpConnection.StatusCode, Exchanges>> exchanges;
+	private final ConcurrentMap<String, LongAdder> cacheHits;
+
+	/**
+	 * Create http metrics.
+	 */
+	public HttpMetrics() {
+		this.exchanges = new ConcurrentHashMap<>();
+		this.cacheHits = new ConcurrentHashMap<>();
+	}
+
+	@Override
+	public void onExchange(URL url, HttpConnection.StatusCode statusCode,
+						   long connectNanos, long firstByteNanos, long bodyNanos,
+						   long bytesOut, long bytesIn, long bytesDecoded) {
+		String authority = HttpHost.authorityOf(url);
+		ConcurrentMap<HttpConnection.StatusCode, Exchanges> byStatus = exchanges.get(authority);
+		if(byStatus == null) {
+			byStatus = exchanges.computeIfAbsent(authority, k -> new ConcurrentHashMap<>());
+		}
+
+		Exchanges e = byStatus.get(statusCode);
+		if(e == null) {
+			e = byStatus.computeIfAbsent(statusCode, k -> new Exchanges());
+		}
+
+		e.connect.record(connectNanos);
+		e.firstByte.record(firstByteNanos);
+		e.body.record(bodyNanos);
+		e.bytesOut.add(bytesOut);
+		e.bytesIn.add(bytesIn);
+		e.bytesDecoded.add(bytesDecoded);
+	}
+
+	@Override
+	public void onCacheHit(URL url) {
+		String authority = HttpHost.authorityOf(url);
+		LongAdder hits = cacheHits.get(authority);
+		if(hits == null) {
+			hits = cacheHits.computeIfAbsent(authority, k -> new LongAdder());
+		}
+		hits.increment();
+	}
+
+	/**
+	 * Snapshot of exchanges recorded until now.
+	 * @return metrics snapshot.
+	 */
+	public Snapshot snapshot() {
+		List<Entry> entries = new ArrayList<>();
+		exchanges.forEach((authority, byStatus) ->
+				byStatus.forEach((code, e) -> entries.add(new Entry(authority, code, e))));
+
+		Map<String, Long> hits = new ConcurrentHashMap<>();
+		cacheHits.forEach((authority, count) -> hits.put(authority, count.sum()));
+		return new Snapshot(entries, hits);
+	}
+
+	/**
+	 * Discard exchanges recorded until now.
+	 */
+	public void reset() {
+		exchanges.clear();
+		cacheHits.clear();
+	}
+}
@@ -0,0 +1,170 @@
+package com.atomatus.connection.http;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Phases timing and bytes transferred of a request, reported once to listener
+ * when response content was read or response closed.
+ */
+final class HttpTrace {
+
+	private final HttpListener listener;
+	private final URL url;
+	private final AtomicBoolean reported;
+	private volatile long connectStart;
+	private volatile long connectEnd;
+	private volatile long firstByte;
+	private volatile long bytesOut;
+	private volatile long bytesIn;
+	private volatile long bytesDecoded;
+
+	/**
+	 * Create request trace.
+	 * @param listener listener notified.
+	 * @param url request url.
+	 */
+	HttpTrace(HttpListener listener, URL url) {
+		this.listener = listener;
+		this.url = url;
+		this.reported = new AtomicBoolean();
+	}
+
+	/**
+	 * Check whether connect phase was already recorded.
+	 * @return true, connect phase recorded.
+	 */
+	boolean isConnected() {
+		return connectEnd != 0L;
+	}
+
+	/**
+	 * Connect phase started.
+	 */
+	void connecting() {
+		connectStart = System.nanoTime();
+	}
+
+	/**
+	 * Connect phase completed.
+	 */
+	void connected() {
+		connectEnd = System.nanoTime();
+	}
+
+	/**
+	 * Response headers received.
+	 */
+	void firstByte() {
+		if(firstByte == 0L) {
+			firstByte = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Count bytes sent on request content.
+	 * @param out request content stream.
+	 * @return counting stream.
+	 */
+	OutputStream countOut(OutputStream out) {
+		return new FilterOutputStream(out) {
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				bytesOut++;
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+				bytesOut += len;
+			}
+		};
+	}
+
+	/**
+	 * Count bytes received on response content, as sent by server (compressed).
+	 * @param in response content stream.
+	 * @return counting stream.
+	 */
+	InputStream countIn(InputStream in) {
+		return in == null ? null : new CountingInputStream(in, false);
+	}
+
+	/**
+	 * Count bytes read on response content, decompressed.
+	 * @param in decoded response content stream.
+	 * @return counting stream.
+	 */
+	InputStream countDecoded(InputStream in) {
+		return in == null ? null : new CountingInputStream(in, true);
+	}
+
+	/**
+	 * Served by cache, without request.
+	 */
+	void cacheHit() {
+		if(reported.compareAndSet(false, true)) {
+			listener.onCacheHit(url);
+		}
+	}
+
+	/**
+	 * Report exchange to listener, once.
+	 * @param statusCode response status code, when null (request failed) nothing is reported.
+	 */
+	void complete(HttpConnection.StatusCode statusCode) {
+		if(statusCode != null && firstByte != 0L && reported.compareAndSet(false, true)) {
+			long end = System.nanoTime();
+			long connected = connectEnd == 0L ? firstByte : connectEnd;
+			listener.onExchange(url, statusCode,
+					connectStart == 0L ? 0L : connected - connectStart,
+					firstByte - connected,
+					end - firstByte,
+					bytesOut, bytesIn, bytesDecoded);
+		}
+	}
+
+	private final class CountingInputStream extends FilterInputStream {
+
+		private final boolean decoded;
+
+		CountingInputStream(InputStream in, boolean decoded) {
+			super(in);
+			this.decoded = decoded;
+		}
+
+		private void count(long n) {
+			if(n > 0) {
+				if(decoded) bytesDecoded += n;
+				else bytesIn += n;
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			count(b == -1 ? 0 : 1);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			count(n);
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count(skipped);
+			return skipped;
+		}
+	}
+}
@@ -0,0 +1,253 @@
+package com.atomatus.connection.http;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <strong>Request body</strong>
+ * <p>
+ *     Request content written straight on connection while sent, so it is never fully held
+ *     in memory: sent in fixed length streaming mode when length is known, otherwise chunked.
+ *     Byte array content is already in memory, so it is buffered by connection instead,
+ *     being sent again on redirects and authentication challenges.
+ * </p>
+ * <code>
+ *     new HttpConnection().postContent(url, RequestBody.of(Paths.get("data.json")).gzip());
+ * </code>
+ * @author Carlos Matos {@literal @chcmatos}
+ */
+public abstract class RequestBody {
+
+	/**
+	 * Request body writer callback.
+	 */
+	@FunctionalInterface
+	public interface Writer {
+
+		/**
+		 * Write request content.
+		 * @param out connection stream, closed after callback.
+		 * @throws IOException throws when is not possible write content.
+		 */
+		void writeTo(OutputStream out) throws IOException;
+	}
+
+	private static final int BUFFER_LENGTH;
+
+	static {
+		BUFFER_LENGTH = 8192;
+	}
+
+	RequestBody() { }
+
+	//region factory
+	/**
+	 * Request body of byte array content, buffered by connection (not streamed).
+	 * @param data content.
+	 * @return request body.
+	 */
+	public static RequestBody of(byte[] data) {
+		Objects.requireNonNull(data);
+		return new RequestBody() {
+			@Override
+			public long length() {
+				return data.length;
+			}
+
+			@Override
+			boolean isBuffered() {
+				return true;
+			}
+
+			@Override
+			void writeTo(OutputStream out) throws IOException {
+				out.write(data);
+			}
+		};
+	}
+
+	/**
+	 * Request body of input stream content, read once and closed when sent.
+	 * Not repeatable, so never retried.
+	 * @param in content stream.
+	 * @param length content length, or negative when unknown (chunked).
+	 * @return request body.
+	 */
+	public static RequestBody of(InputStream in, long length) {
+		Objects.requireNonNull(in);
+		AtomicBoolean consumed = new AtomicBoolean();
+		return new RequestBody() {
+			@Override
+			public long length() {
+				return length < 0 ? -1L : length;
+			}
+
+			@Override
+			public boolean isRepeatable() {
+				return false;
+			}
+
+			@Override
+			void writeTo(OutputStream out) throws IOException {
+				if(!consumed.compareAndSet(false, true)) {
+					throw new IOException("Request body stream already sent!");
+				}
+
+				try (InputStream input = in) {
+					byte[] buffer = new byte[BUFFER_LENGTH];
+					int count;
+					while ((count = input.read(buffer)) != -1) {
+						out.write(buffer, 0, count);
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Request body of file content, transferred from file channel.
+	 * @param file content file.
+	 * @return request body.
+	 */
+	public static RequestBody of(Path file) {
+		Objects.requireNonNull(file);
+		return new RequestBody() {
+			@Override
+			public long length() {
+				try {
+					return Files.size(file);
+				} catch (IOException e) {
+					return -1L;
+				}
+			}
+
+			@Override
+			void writeTo(OutputStream out) throws IOException {
+				try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+					WritableByteChannel target = Channels.newChannel(out);
+					long position = 0L, size = channel.size();
+					while (position < size) {
+						position += channel.transferTo(position, size - position, target);
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Request body written by callback.
+	 * @param writer content writer, called once by request attempt.
+	 * @param length content length, or negative when unknown (chunked).
+	 * @return request body.
+	 */
+	public static RequestBody of(Writer writer, long length) {
+		Objects.requireNonNull(writer);
+		return new RequestBody() {
+			@Override
+			public long length() {
+				return length < 0 ? -1L : length;
+			}
+
+			@Override
+			void writeTo(OutputStream out) throws IOException {
+				writer.writeTo(out);
+			}
+		};
+	}
+	//endregion
+
+	//region body
+	/**
+	 * Content length.
+	 * @return content length, or -1 when unknown (chunked).
+	 */
+	public abstract long length();
+
+	/**
+	 * Check whether content may be sent again (retried).
+	 * @return true, content may be sent again.
+	 */
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	/**
+	 * Check whether content is buffered by connection instead of streamed,
+	 * so connection is able to send it again on redirects and authentication challenges.
+	 * @return true, buffered content.
+	 */
+	boolean isBuffered() {
+		return false;
+	}
+
+	/**
+	 * Check whether content is compressed (gzip) while sent.
+	 * @return true, compressed content.
+	 */
+	public boolean isGzip() {
+		return false;
+	}
+
+	/**
+	 * Request body compressing (gzip) current content while sent,
+	 * with "Content-Encoding: gzip" (length unknown, so chunked).
+	 * @return compressed request body.
+	 */
+	public RequestBody gzip() {
+		RequestBody origin = this;
+		return origin.isGzip() ? origin : new RequestBody() {
+			@Override
+			public long length() {
+				return -1L;
+			}
+
+			@Override
+			public boolean isRepeatable() {
+				return origin.isRepeatable();
+			}
+
+			@Override
+			public boolean isGzip() {
+				return true;
+			}
+
+			@Override
+			void writeTo(OutputStream out) throws IOException {
+				//keep connection stream open, closed by request.
+				GZIPOutputStream gzip = new GZIPOutputStream(new FilterOutputStream(out) {
+					@Override
+					public void write(byte[] b, int off, int len) throws IOException {
+						out.write(b, off, len);
+					}
+
+					@Override
+					public void close() throws IOException {
+						flush();
+					}
+				}, BUFFER_LENGTH);
+				origin.writeTo(gzip);
+				gzip.finish();
+				gzip.close();
+			}
+		};
+	}
+
+	/**
+	 * Write content on connection stream.
+	 * @param out connection stream.
+	 * @throws IOException throws when is not possible write content.
+	 */
+	abstract void writeTo(OutputStream out) throws IOException;
+	//endregion
+}
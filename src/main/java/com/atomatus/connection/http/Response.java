@@ -6,14 +6,24 @@ import com.atomatus.util.cache.CacheControl;
 import com.atomatus.util.cache.CacheData;
 import com.atomatus.util.serializer.Serializer;
 
+import java.io.ByteArrayInputStream;
 import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Response generated from request HttpConnection.
@@ -26,6 +36,13 @@ public final class Response extends ResponseParameter implements Closeable {
 	 */
 	protected static class Builder extends ResponseParameter {
 
+		private Snapshot snapshot;
+
+		Builder useSnapshot(Snapshot snapshot) {
+			this.snapshot = Objects.requireNonNull(snapshot);
+			return this;
+		}
+
 		Builder useConnection(HttpURLConnection con) {
 			this.con = Objects.requireNonNull(con);
 			this.url = con.getURL();
@@ -43,6 +60,49 @@ public final class Response extends ResponseParameter implements Closeable {
 			return this;
 		}
 
+		Builder useKeepAlive(boolean keepAlive) {
+			this.keepAlive = keepAlive;
+			return this;
+		}
+
+		Builder usePermit(HttpHost.Permit permit) {
+			this.permit = Objects.requireNonNull(permit);
+			return this;
+		}
+
+		Builder usePermitFun(FunctionIO<URL, HttpHost.Permit> permitFun) {
+			this.permitFun = Objects.requireNonNull(permitFun);
+			return this;
+		}
+
+		Builder useTrace(HttpTrace trace) {
+			this.trace = Objects.requireNonNull(trace);
+			return this;
+		}
+
+		Builder useCacheMaxAge(long cacheMaxAgeInMillis) {
+			if(cacheMaxAgeInMillis < 0) throw new IndexOutOfBoundsException();
+			this.cacheMaxAgeInMillis = cacheMaxAgeInMillis;
+			return this;
+		}
+
+		Builder useStaleIfError(long staleIfErrorInMillis) {
+			if(staleIfErrorInMillis < 0) throw new IndexOutOfBoundsException();
+			this.staleIfErrorInMillis = staleIfErrorInMillis;
+			return this;
+		}
+
+		Builder useCachePlaintext(boolean cachePlaintext) {
+			this.cachePlaintext = cachePlaintext;
+			return this;
+		}
+
+		Builder useCacheLimit(int cacheLimit) {
+			if(cacheLimit < 0) throw new IndexOutOfBoundsException();
+			this.cacheLimit = cacheLimit;
+			return this;
+		}
+
 		Builder useConnectionFun(FunctionIO<URL, HttpURLConnection> conFun){
 			this.conFun = Objects.requireNonNull(conFun);
 			return this;
@@ -84,7 +144,9 @@ public final class Response extends ResponseParameter implements Closeable {
 		 */
 		public Response build() {
 			this.requireNonClosed();
-			this.requireConnectionOrFunction();
+			if(snapshot == null) {
+				this.requireConnectionOrFunction();
+			}
 
 			try {
 				return new Response(this);
@@ -94,16 +156,186 @@ public final class Response extends ResponseParameter implements Closeable {
 		}
 	}
 
+	/**
+	 * Read response state and content, shared (read only) by response views.
+	 */
+	static final class Snapshot {
+
+		private final boolean success;
+		private final HttpConnection.StatusCode statusCode;
+		private final HttpConnection.ContentType contentType;
+		private final byte[] contentBytes;
+		private final byte[] errorBytesContent;
+		private final Charset charset;
+		private final boolean servedStale;
+
+		private Snapshot(Response response) {
+			this.success = response.success;
+			this.servedStale = response.servedStale;
+			this.statusCode = response.statusCode;
+			this.contentType = response.contentType;
+			this.contentBytes = response.contentBytes;
+			this.errorBytesContent = response.errorBytesContent == null ? new byte[0] : response.errorBytesContent;
+			this.charset = response.charset;
+		}
+
+		/**
+		 * Create an independent response view of snapshot.
+		 * @return response view.
+		 */
+		Response view() {
+			return new Builder()
+					.useCharset(charset)
+					.useSnapshot(this)
+					.build();
+		}
+	}
+
+	/**
+	 * Response content read straight from connection, copied to cache
+	 * while content length remains below cache limit.
+	 */
+	private final class ContentStream extends FilterInputStream {
+
+		private final Action<HttpURLConnection> finallyAction;
+		private final HttpURLConnection origin;
+		private byte[] copy;
+		private int count;
+		private boolean closed;
+
+		ContentStream(InputStream in, HttpURLConnection origin, boolean cacheable) {
+			super(in == null ? new ByteArrayInputStream(new byte[0]) : in);
+			this.finallyAction = Response.this.finallyAction;
+			this.origin = origin;
+			this.copy = cacheable && cacheLimit > 0 ? new byte[Math.min(cacheLimit, bufferLength)] : null;
+		}
+
+		private void copy(byte[] b, int off, int len) {
+			if(copy == null) {
+				return;
+			} else if(count + len > cacheLimit) {
+				copy = null;//content too large, only streamed.
+				return;
+			} else if(count + len > copy.length) {
+				copy = Arrays.copyOf(copy, Math.min(cacheLimit, Math.max(count + len, copy.length << 1)));
+			}
+			System.arraycopy(b, off, copy, count, len);
+			count += len;
+		}
+
+		private void end() {
+			consumed = true;
+			completeTrace();
+			if(copy != null) {
+				byte[] content = copy.length == count ? copy : Arrays.copyOf(copy, count);
+				copy = null;
+				try {
+					checkAddCache(content);
+				} catch (URLConnectionException ignored) { }
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if(b == -1) {
+				end();
+			} else if(copy != null) {
+				copy(new byte[] { (byte) b }, 0, 1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if(n == -1) {
+				end();
+			} else {
+				copy(b, off, n);
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			copy = null;//partial content, can not be cached.
+			return super.skip(n);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		@Override
+		public synchronized void mark(int readlimit) { }
+
+		@Override
+		public synchronized void reset() throws IOException {
+			throw new IOException("Response content stream does not support reset!");
+		}
+
+		@Override
+		public void close() throws IOException {
+			if(!closed) {
+				closed = true;
+				copy = null;
+				completeTrace();
+				try {
+					super.close();
+				} finally {
+					try {
+						if(finallyAction != null) {
+							finallyAction.action(origin);
+						}
+					} catch (URLConnectionException ignored) {
+					} finally {
+						synchronized (lock) {
+							tryClose(origin);
+						}
+					}
+				}
+			}
+		}
+	}
+
 	private boolean success;
 	private HttpConnection.StatusCode statusCode;
 	private HttpConnection.ContentType contentType;
 	private byte[] contentBytes;
 	private byte[] errorBytesContent;
+	private CacheData stale;
+	private HttpCacheValidator validator;
+	private boolean servedStale;
+	private final boolean shared;
 	private final Object lock;
 
 	private Response(Builder builder) {
 		super(builder);
 		lock = new Object();
+		shared = builder.snapshot != null;
+		if(shared) {
+			Snapshot s = builder.snapshot;
+			success = s.success;
+			statusCode = s.statusCode;
+			contentType = s.contentType;
+			contentBytes = s.contentBytes;
+			errorBytesContent = s.errorBytesContent;
+			servedStale = s.servedStale;
+		}
+	}
+
+	/**
+	 * Read response content and state to be shared by response views.
+	 * @return snapshot of current response.
+	 * @throws URLConnectionException throws when is not possible get response content.
+	 */
+	Snapshot snapshot() throws URLConnectionException {
+		checkReadResponseFilling();
+		synchronized (lock) {
+			return new Snapshot(this);
+		}
 	}
 
 	private InputStream getInputStream(boolean success) throws URLConnectionException {
@@ -138,44 +370,88 @@ public final class Response extends ResponseParameter implements Closeable {
 		return stream;
 	}
 
-	private byte[] readAll(InputStream in) throws URLConnectionException {
-		byte[] buffer = new byte[bufferLength];
+	private byte[] readAll(InputStream in, long expectedLength) throws URLConnectionException {
+		//expected length plus one byte, end of stream found without grow buffer.
+		byte[] buffer = new byte[expectedLength > 0 && expectedLength < Integer.MAX_VALUE - 8 ?
+				(int) expectedLength + 1 : bufferLength];
 		int offset = 0;
 		int count;
 
 		try {
 			while ((count = in.read(buffer, offset, buffer.length - offset)) != -1) {
 				if ((offset += count) == buffer.length) {
-					byte[] aux = buffer;
-					buffer = new byte[buffer.length + bufferLength];
-					System.arraycopy(aux, 0, buffer, 0, aux.length);
+					//grow geometrically, amortized linear copy.
+					buffer = Arrays.copyOf(buffer, buffer.length + Math.max(bufferLength, buffer.length >> 1));
 				}
 			}
+			consumed = true;
 		} catch (IOException e) {
 			throw new URLConnectionException(
 					"An error occurred while attempt to read response:\n" + e.getMessage());
 		}
 
-		if (offset < buffer.length) {
-			byte[] aux = buffer;
-			buffer = new byte[offset];
-			System.arraycopy(aux, 0, buffer, 0, offset);
+		return offset < buffer.length ? Arrays.copyOf(buffer, offset) : buffer;
+	}
+
+	@Override
+	protected HttpURLConnection requireConnection() throws URLConnectionException {
+		if(con != null || conFun == null) {
+			return super.requireConnection();
 		}
 
-		return buffer;
+		if(permit == null && permitFun != null) {
+			permit = permitFun.apply(url);
+		}
+
+		HttpURLConnection con;
+		try {
+			con = super.requireConnection();
+		} catch (URLConnectionException | RuntimeException e) {
+			if(permit != null) {
+				permit.release(false);
+				permit = null;
+			}
+			throw e;
+		}
+
+		if(validator != null) {
+			validator.apply(con);
+		}
+
+		try {
+			if(trace != null) trace.connecting();
+			con.connect();
+			if(trace != null) trace.connected();
+			return con;
+		} catch (IOException e) {
+			if(permit != null) permit.record(null);
+			this.tryClose(con);
+			this.con = null;
+			throw new URLConnectionException(
+					"An error occurred while attempt to connect on \"" + url + "\" :\n" + e.getMessage());
+		}
 	}
 
 	private void checkCache(boolean fillBuffer)  throws URLConnectionException {
-		if((contentBytes == null || !fillBuffer) && cacheFun != null) {
+		if((contentBytes == null || !fillBuffer) && cacheFun != null && stale == null) {
 			try {
 				CacheControl cache = cacheFun.apply();
 				if(cache != null) {
 					CacheData data = cache.get(url);
 
 					if (data.exists()) {
+						HttpCacheValidator v = con == null ? HttpCacheValidator.of(data) : null;
+						if(con == null && (v == null || !v.isFresh())) {
+							//no longer fresh (or validators missing), revalidate it.
+							stale = data;
+							validator = v;
+							return;
+						}
+
 						contentBytes 	= fillBuffer ? data.bytes() : contentBytes;
 						stream 			= !fillBuffer ? data.stream() : null;
 						success 		= true;
+						if(trace != null) trace.cacheHit();
 					}
 				}
 			} catch (Exception e) {
@@ -186,15 +462,72 @@ public final class Response extends ResponseParameter implements Closeable {
 		}
 	}
 
+	private boolean checkNotModified() throws URLConnectionException {
+		if(stale == null) {
+			return false;
+		} else if(getStatusCodeLocal() != HttpConnection.StatusCode.HTTP_NOT_MODIFIED) {
+			return servedStale;
+		}
+
+		try {
+			contentBytes = stale.bytes();
+			errorBytesContent = new byte[0];
+			success = true;
+			checkRevalidateCache(stale, HttpCacheValidator.of(con, cacheMaxAgeInMillis).merge(validator));
+			return true;
+		} catch (IOException e) {
+			throw new URLConnectionException(e);
+		} finally {
+			try {
+				if(finallyAction != null) {
+					finallyAction.action(requireConnection());
+				}
+			} finally {
+				stale = null;
+				completeTrace();
+				this.tryClose(con);
+			}
+		}
+	}
+
+	private void checkRevalidateCache(CacheData data, HttpCacheValidator v) throws URLConnectionException {
+		if(cacheFun != null) {
+			try {
+				CacheControl cache = cacheFun.apply();
+				long lifetime = v.lifetime(cacheMaxAgeInMillis);
+				//renewed in place, content kept as is, added again only when no longer cached.
+				if (cache != null && v.isStorable() && lifetime > 0L &&
+						!cache.revalidate(data, lifetime + staleIfErrorInMillis, TimeUnit.MILLISECONDS, v.meta())) {
+					checkAddCache(contentBytes, v);
+				}
+			} catch (Exception e) {
+				if(Debug.isDebugMode()) {
+					throw new URLConnectionException(e);
+				}
+			}
+		}
+	}
+
 	private byte[] checkAddCache(byte[] buffer) throws URLConnectionException {
+		return checkAddCache(buffer, con != null && cacheMaxAgeInMillis > 0 ?
+				HttpCacheValidator.of(con, cacheMaxAgeInMillis) : null);
+	}
+
+	private byte[] checkAddCache(byte[] buffer, HttpCacheValidator v) throws URLConnectionException {
 		if(cacheFun != null) {
 			try {
 				CacheControl cache = cacheFun.apply();
-				if (cache != null) {
-					cache.add(new CacheData.Builder()
-							.id(url)
-							.bytes(buffer)
-							.build());
+				long lifetime = v == null ? 0L : v.lifetime(cacheMaxAgeInMillis);
+				if(lifetime > 0L) lifetime += staleIfErrorInMillis;//kept to be served on error.
+				if (cache != null && (v == null || (v.isStorable() && lifetime > 0L))) {
+					CacheData.Builder builder = cache.dataBuilder().id(url).tag(url.getHost());
+					if(cachePlaintext) {
+						builder.plain();
+					}
+					if(v != null) {
+						builder.maxAge(lifetime, TimeUnit.MILLISECONDS).meta(v.meta());
+					}
+					cache.add(builder.bytes(cachePlaintext || cache.isPlaintext() ? buffer.clone() : buffer).build());
 				}
 			} catch (Exception e) {
 				if(Debug.isDebugMode()) {
@@ -209,14 +542,15 @@ public final class Response extends ResponseParameter implements Closeable {
 		synchronized (lock) {
 			requireNonClosed();
 			checkCache(fillBuffer);
-			if (contentBytes == null) {
+			if (contentBytes == null && !checkNotModified()) {
 				success = success || successResponseFun.apply(getStatusCodeLocal());
 				if (fillBuffer) {
 					InputStream in = null;
 					try {
 						errorBytesContent = contentBytes = new byte[0];
 						if(getStatusCodeLocal() != HttpConnection.StatusCode.HTTP_NO_CONTENT) {
-							byte[] buffer = readAll(in = getInputStream(success));
+							in = getInputStream(success);
+							byte[] buffer = readAll(in, requireConnection().getContentLengthLong());
 							if (success) {
 								contentBytes = checkAddCache(buffer);
 							} else {
@@ -229,6 +563,7 @@ public final class Response extends ResponseParameter implements Closeable {
 								finallyAction.action(requireConnection());
 							}
 						} finally {
+							completeTrace();
 							this.tryClose(in);
 							this.tryClose(con);
 						}
@@ -250,34 +585,157 @@ public final class Response extends ResponseParameter implements Closeable {
 		if(statusCode == null) {
 			try {
 				HttpURLConnection con = this.requireConnection();
-				statusCode = HttpConnection.StatusCode.valueOf(con.getResponseCode());
+				if(trace != null && !trace.isConnected()) {
+					trace.connecting();
+					con.connect();
+					trace.connected();
+				}
+				int code = con.getResponseCode();
+				if(trace != null) trace.firstByte();
+				statusCode = HttpConnection.StatusCode.valueOf(code);
 				contentType = HttpConnection.ContentType.fromType(con.getContentType());
 			} catch (IOException e) {
-				throw new URLConnectionException(e);
+				if(permit != null) permit.record(null);
+				if(!checkStaleIfError()) {
+					throw new URLConnectionException(e);
+				}
+				return statusCode;
+			} catch (URLConnectionException e) {
+				if(!checkStaleIfError()) {
+					throw e;
+				}
+				return statusCode;
+			}
+
+			if(permit != null) permit.record(statusCode);
+			if(statusCode.getCode() >= 500) {
+				checkStaleIfError();
 			}
 		}
 
 		return statusCode;
 	}
 
+	/**
+	 * Serve stale cached content when revalidation request failed (connection error,
+	 * circuit breaker open or server error), while within stale-if-error window.
+	 * @return true, stale content served.
+	 */
+	private boolean checkStaleIfError() {
+		if(stale == null || validator == null || !validator.isUsableOnError(staleIfErrorInMillis)) {
+			return false;
+		}
+
+		try {
+			contentBytes = stale.bytes();
+		} catch (IOException e) {
+			return false;
+		}
+
+		errorBytesContent = new byte[0];
+		success = true;
+		servedStale = true;
+		statusCode = HttpConnection.StatusCode.HTTP_OK;
+		stale = null;
+		if(trace != null) trace.cacheHit();
+		this.tryClose(con);
+		if(permit != null) {
+			permit.release(false);
+			permit = null;
+		}
+		return true;
+	}
+
 	private Serializer.Type getSerializerType() throws URLConnectionException {
 		return getContentType().getSerializerType();
 	}
 
 	/**
-	 * Get response content as stream.
+	 * <p>Get response content as stream.</p>
+	 * <p>Content is read straight from connection, without buffering it in memory,
+	 * and copied to cache only while its length remains below
+	 * cache stream limit ({@link HttpConnection#setCacheStreamLimit(int)}).</p>
 	 * @return response in stream
 	 * @throws URLConnectionException throws when is not possible get response content.
 	 */
 	public InputStream getContentStream() throws URLConnectionException {
 		synchronized (lock) {
 			requireNonClosed();
+			if(contentBytes != null) {
+				return new ByteArrayInputStream(success ? contentBytes : errorBytesContent);
+			}
+
+			InputStream previous = stream;
 			checkCache(false);
+			if(stream != null && stream != previous) {
+				return stream;//cached content.
+			} else if(checkNotModified()) {
+				return new ByteArrayInputStream(contentBytes);
+			}
+
 			success = success || successResponseFun.apply(getStatusCodeLocal());
+			if(stream == null) {
+				HttpURLConnection con = requireConnection();
+				return stream = new ContentStream(getInputStream(success), con,
+						success && cacheFun != null && getStatusCodeLocal() != HttpConnection.StatusCode.HTTP_NO_CONTENT);
+			}
 			return getInputStream(success);
 		}
 	}
 
+	/**
+	 * Write response content on target stream, reading it straight from connection
+	 * (see {@link #getContentStream()}).
+	 * @param out target stream, kept open.
+	 * @return count of bytes written.
+	 * @throws URLConnectionException throws when is not possible get response content or write it.
+	 */
+	public long transferTo(OutputStream out) throws URLConnectionException {
+		Objects.requireNonNull(out);
+		try (InputStream in = getContentStream()) {
+			byte[] buffer = new byte[bufferLength];
+			long total = 0L;
+			int count;
+			while ((count = in.read(buffer)) != -1) {
+				out.write(buffer, 0, count);
+				total += count;
+			}
+			out.flush();
+			return total;
+		} catch (IOException e) {
+			throw new URLConnectionException(
+					"An error occurred while attempt to transfer response:\n" + e.getMessage());
+		}
+	}
+
+	/**
+	 * Write response content on target channel, reading it straight from connection
+	 * (see {@link #getContentStream()}).
+	 * @param channel target channel, kept open.
+	 * @return count of bytes written.
+	 * @throws URLConnectionException throws when is not possible get response content or write it.
+	 */
+	public long transferTo(WritableByteChannel channel) throws URLConnectionException {
+		return transferTo(Channels.newOutputStream(Objects.requireNonNull(channel)));
+	}
+
+	/**
+	 * Write response content on target file, reading it straight from connection
+	 * (see {@link #getContentStream()}). File is created or truncated when already exists.
+	 * @param file target file.
+	 * @return count of bytes written.
+	 * @throws URLConnectionException throws when is not possible get response content or write it.
+	 */
+	public long transferTo(Path file) throws URLConnectionException {
+		try (FileChannel channel = FileChannel.open(Objects.requireNonNull(file),
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			return transferTo(channel);
+		} catch (IOException e) {
+			throw new URLConnectionException(
+					"An error occurred while attempt to write response on \"" + file + "\":\n" + e.getMessage());
+		}
+	}
+
 	/**
 	 * Get response content as byte array.
 	 * @return respose in byte array
@@ -285,7 +743,8 @@ public final class Response extends ResponseParameter implements Closeable {
 	 */
 	public byte[] getContentBytes() throws URLConnectionException {
 		checkReadResponseFilling();
-		return contentBytes;
+		//snapshot content is shared by views, copied to keep it read only.
+		return shared && contentBytes != null ? contentBytes.clone() : contentBytes;
 	}
 
 	/**
@@ -306,7 +765,7 @@ public final class Response extends ResponseParameter implements Closeable {
 
 	public byte[] getErrorBytesContent() throws URLConnectionException {
 		checkReadResponseFilling();
-		return errorBytesContent;
+		return shared && errorBytesContent != null ? errorBytesContent.clone() : errorBytesContent;
 	}
 
 	/**
@@ -339,6 +798,20 @@ public final class Response extends ResponseParameter implements Closeable {
 		return contentType;
 	}
 
+	/**
+	 * Response header field of connection.
+	 * @param name header name.
+	 * @return header value, or null when not present or served by cache.
+	 * @throws URLConnectionException throws when is not possible get response.
+	 */
+	String getHeaderField(String name) throws URLConnectionException {
+		synchronized (lock) {
+			requireNonClosed();
+			getStatusCodeLocal();
+			return con == null ? null : con.getHeaderField(name);
+		}
+	}
+
 	/**
 	 * Inform whether response is a success status code.
 	 * @return true, response sucessfully.
@@ -349,6 +822,17 @@ public final class Response extends ResponseParameter implements Closeable {
 		return success;
 	}
 
+	/**
+	 * Inform whether content was served stale by cache because request failed
+	 * (stale-if-error), see {@link HttpConnection#setStaleIfError(long, TimeUnit)}.
+	 * @return true, stale content served.
+	 * @throws URLConnectionException throws when is not possible get response.
+	 */
+	public boolean isStale() throws URLConnectionException {
+		checkReadResponseOnlyState();
+		return servedStale;
+	}
+
 	/**
 	 * Inform when current response in success contains a content.
 	 * @return true, response contains content, otherwise false.
@@ -425,12 +909,26 @@ public final class Response extends ResponseParameter implements Closeable {
 		return parseError(null, type);
 	}
 
+	private void completeTrace() {
+		HttpTrace trace = this.trace;
+		if(trace != null) {
+			trace.complete(statusCode);
+		}
+	}
+
 	@Override
 	protected void onClose() {
+		completeTrace();
 		this.tryClose(stream);
 		this.tryClose(con);
+		if(permit != null) {
+			permit.release(false);
+			permit = null;
+		}
 		this.contentBytes = null;
 		this.errorBytesContent = null;
+		this.stale = null;
+		this.validator = null;
 		this.statusCode = null;
 		this.contentType = null;
 		this.charset = null;
@@ -4,6 +4,7 @@ import com.atomatus.connection.http.exception.URLConnectionException;
 import com.atomatus.util.cache.CacheControl;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
@@ -24,6 +25,7 @@ abstract class ResponseParameter implements Closeable {
     }
 
     private static final int DEFAULT_BUFFER_LENGTH = 1024;
+    private static final int MAX_DRAIN_LENGTH = 64 * 1024;
 
     /**
      * Origin request.
@@ -81,11 +83,65 @@ abstract class ResponseParameter implements Closeable {
      */
     protected int bufferLength;
 
+    /**
+     * Max content length copied to cache while read by stream.
+     */
+    protected int cacheLimit;
+
+    /**
+     * Cache freshness when response does not define it (Cache-Control),
+     * also retention window to revalidate content with validators.
+     */
+    protected long cacheMaxAgeInMillis;
+
+    /**
+     * Time after freshness cached content is kept and served
+     * when request fails (stale-if-error), zero means disabled.
+     */
+    protected long staleIfErrorInMillis;
+
+    /**
+     * Cached content kept as plaintext (non encrypted), decided by entry.
+     */
+    protected boolean cachePlaintext;
+
+    /**
+     * Release connection to keep-alive cache (draining and closing content)
+     * instead of disconnect it.
+     */
+    protected boolean keepAlive;
+
+    /**
+     * Host permit of request connection.
+     */
+    protected HttpHost.Permit permit;
+
+    /**
+     * Function callback, acquire host permit before open request connection.
+     */
+    protected FunctionIO<URL, HttpHost.Permit> permitFun;
+
+    /**
+     * Request phases timing and bytes transferred, reported to listener when set.
+     */
+    protected HttpTrace trace;
+
     /**
      * State of response parameter.
      */
     private boolean isClosed;
 
+    /**
+     * State of response connection.
+     */
+    private boolean released;
+
+    /**
+     * Response content read until end of stream, connection already
+     * released to keep-alive cache by its closed stream.
+     */
+    protected boolean consumed;
+
     protected ResponseParameter(ResponseParameter other) {
         this.con = other.con;
         this.url = other.url;
@@ -97,6 +153,14 @@ abstract class ResponseParameter implements Closeable {
         this.finallyAction = other.finallyAction;
         this.charset = other.charset;
         this.bufferLength = other.bufferLength;
+        this.cacheLimit = other.cacheLimit;
+        this.cacheMaxAgeInMillis = other.cacheMaxAgeInMillis;
+        this.staleIfErrorInMillis = other.staleIfErrorInMillis;
+        this.cachePlaintext = other.cachePlaintext;
+        this.keepAlive = other.keepAlive;
+        this.permit = other.permit;
+        this.permitFun = other.permitFun;
+        this.trace = other.trace;
         this.stream = other.stream;
         this.isClosed = other.isClosed;
     }
@@ -176,15 +240,62 @@ abstract class ResponseParameter implements Closeable {
     }
 
     /**
-     * Attempt to close.
+     * Attempt to drain and close connection content, releasing it to keep-alive cache.
+     * @param con target
+     * @return true, released to keep-alive cache, otherwise must be disconnected.
+     */
+    private boolean tryDrain(HttpURLConnection con) {
+        InputStream in;
+        try {
+            in = con.getInputStream();
+        } catch (Exception e) {
+            in = con.getErrorStream();
+        }
+
+        if(in == null) {
+            return false;
+        }
+
+        try {
+            byte[] buffer = new byte[DEFAULT_BUFFER_LENGTH];
+            int remaining = MAX_DRAIN_LENGTH;
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                if((remaining -= count) < 0) {
+                    return false;//too large to drain, cheaper disconnect.
+                }
+            }
+        } catch (IOException e) {
+            tryClose(in);
+            return false;//broken connection, must be disconnected.
+        }
+        tryClose(in);
+        return true;
+    }
+
+    /**
+     * Attempt to close, once, releasing connection to keep-alive cache when enabled,
+     * otherwise disconnecting it.
      * @param con target
      */
     protected void tryClose(HttpURLConnection con) {
+        if (con == null || released) {
+            return;
+        }
+
+        released = true;
+        boolean keptAlive = false;
         try {
-            if (con != null) {
+            if(!(keptAlive = keepAlive && (consumed || tryDrain(con)))) {
                 con.disconnect();
             }
-        } catch (Exception ignored) { }
+        } catch (Exception ignored) {
+        } finally {
+            if(permit != null) {
+                permit.release(keptAlive);
+                permit = null;
+            }
+        }
     }
 
     @Override
@@ -200,6 +311,8 @@ abstract class ResponseParameter implements Closeable {
             this.errorStreamFun = null;
             this.successResponseFun = null;
             this.cacheFun = null;
+            this.permitFun = null;
+            this.trace = null;
             this.finallyAction = null;
             this.charset = null;
             this.stream = null;
@@ -0,0 +1,227 @@
+package com.atomatus.connection.http;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <strong>Retry policy</strong>
+ * <p>
+ *     Retry idempotent requests (GET, PUT, DELETE) failed by connection errors or retryable
+ *     status codes, waiting an exponential backoff with full jitter between attempts,
+ *     see {@link HttpConnection#setRetryPolicy(RetryPolicy)}.
+ * </p>
+ * <p>
+ *     Retries are limited by a budget shared by all requests using the same policy: each request
+ *     deposits a ratio of token and each retry withdraws a token, so retries can not exceed a ratio
+ *     of requests (plus initial reserve) when a host is down, avoiding retry storms.
+ * </p>
+ * <code>
+ *     RetryPolicy policy = RetryPolicy.builder()<br>
+ *     &emsp;.maxAttempts(3)<br>
+ *     &emsp;.backoff(100, 2000, TimeUnit.MILLISECONDS)<br>
+ *     &emsp;.retryOn(HttpConnection.StatusCode.HTTP_UNAVAILABLE)<br>
+ *     &emsp;.budget(.2d, 10)<br>
+ *     &emsp;.build();
+ * </code>
+ * @author Carlos Matos {@literal @chcmatos}
+ */
+public final class RetryPolicy {
+
+	private static final long TOKEN_SCALE;
+	private static final HttpConnection.StatusCode[] DEFAULT_RETRY_ON;
+
+	static {
+		TOKEN_SCALE = 1000L;
+		DEFAULT_RETRY_ON = new HttpConnection.StatusCode[] {
+				HttpConnection.StatusCode.HTTP_CLIENT_TIMEOUT,
+				HttpConnection.StatusCode.HTTP_TOO_MANY_REQUESTS,
+				HttpConnection.StatusCode.HTTP_INTERNAL_ERROR,
+				HttpConnection.StatusCode.HTTP_BAD_GATEWAY,
+				HttpConnection.StatusCode.HTTP_UNAVAILABLE,
+				HttpConnection.StatusCode.HTTP_GATEWAY_TIMEOUT
+		};
+	}
+
+	/**
+	 * Retry policy builder.
+	 */
+	public static final class Builder {
+
+		private int maxAttempts;
+		private long baseDelayInMillis;
+		private long maxDelayInMillis;
+		private HttpConnection.StatusCode[] retryOn;
+		private double budgetRatio;
+		private int budgetReserve;
+
+		private Builder() {
+			this.maxAttempts = 3;
+			this.baseDelayInMillis = 100L;
+			this.maxDelayInMillis = 2000L;
+			this.retryOn = DEFAULT_RETRY_ON;
+			this.budgetRatio = .2d;
+			this.budgetReserve = 10;
+		}
+
+		/**
+		 * Max attempts by request, including first one.
+		 * @param maxAttempts max attempts, 1 means without retry.
+		 * @return current builder.
+		 */
+		public Builder maxAttempts(int maxAttempts) {
+			if(maxAttempts < 1) throw new IllegalArgumentException("Max attempts must be greater than 0!");
+			this.maxAttempts = maxAttempts;
+			return this;
+		}
+
+		/**
+		 * Exponential backoff, delay before retry <i>n</i> is random (full jitter)
+		 * between zero and {@code min(maxDelay, baseDelay * 2^(n - 1))}.
+		 * @param baseDelay base delay.
+		 * @param maxDelay max delay.
+		 * @param unit delay unit.
+		 * @return current builder.
+		 */
+		public Builder backoff(long baseDelay, long maxDelay, TimeUnit unit) {
+			if(baseDelay < 0 || maxDelay < baseDelay) throw new IllegalArgumentException("Invalid backoff delays!");
+			this.baseDelayInMillis = unit.toMillis(baseDelay);
+			this.maxDelayInMillis = unit.toMillis(maxDelay);
+			return this;
+		}
+
+		/**
+		 * Status codes retried, replacing defaults (408, 429, 500, 502, 503 and 504).
+		 * @param codes retryable status codes.
+		 * @return current builder.
+		 */
+		public Builder retryOn(HttpConnection.StatusCode... codes) {
+			this.retryOn = Objects.requireNonNull(codes).clone();
+			return this;
+		}
+
+		/**
+		 * Retry budget, retries limited to a ratio of requests plus a reserve.
+		 * @param ratio ratio of requests that may be retried (e.g. 0.2 = 20%).
+		 * @param reserve retries allowed before any request deposit (also budget capacity).
+		 * @return current builder.
+		 */
+		public Builder budget(double ratio, int reserve) {
+			if(ratio < 0d || reserve < 0) throw new IllegalArgumentException("Invalid retry budget!");
+			this.budgetRatio = ratio;
+			this.budgetReserve = reserve;
+			return this;
+		}
+
+		/**
+		 * Build retry policy.
+		 * @return retry policy.
+		 */
+		public RetryPolicy build() {
+			return new RetryPolicy(this);
+		}
+	}
+
+	private final int maxAttempts;
+	private final long baseDelayInMillis;
+	private final long maxDelayInMillis;
+	private final HttpConnection.StatusCode[] retryOn;
+	private final long deposit;
+	private final long capacity;
+	private final AtomicLong tokens;
+
+	private RetryPolicy(Builder builder) {
+		this.maxAttempts = builder.maxAttempts;
+		this.baseDelayInMillis = builder.baseDelayInMillis;
+		this.maxDelayInMillis = builder.maxDelayInMillis;
+		this.retryOn = builder.retryOn;
+		this.deposit = (long) (builder.budgetRatio * TOKEN_SCALE);
+		this.capacity = Math.max(1L, builder.budgetReserve) * TOKEN_SCALE;
+		this.tokens = new AtomicLong(builder.budgetReserve * TOKEN_SCALE);
+	}
+
+	/**
+	 * Create a retry policy builder.
+	 * @return new builder.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Retry policy with default values: 3 attempts, backoff from 100ms to 2s,
+	 * retry on 408, 429, 500, 502, 503 and 504, budget of 20% of requests (reserve of 10).
+	 * @return new retry policy.
+	 */
+	public static RetryPolicy defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Check whether request method is idempotent, so may be retried.
+	 * @param type request method.
+	 * @return true, may be retried.
+	 */
+	boolean isIdempotent(HttpConnection.RequestType type) {
+		return type == HttpConnection.RequestType.GET ||
+				type == HttpConnection.RequestType.PUT ||
+				type == HttpConnection.RequestType.DELETE;
+	}
+
+	/**
+	 * Check whether response status code may be retried.
+	 * @param code status code.
+	 * @return true, may be retried.
+	 */
+	boolean isRetryable(HttpConnection.StatusCode code) {
+		if(code != null) {
+			for(HttpConnection.StatusCode c : retryOn) {
+				if(c.getCode() == code.getCode()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Deposit request ratio on retry budget.
+	 */
+	void onRequest() {
+		if(deposit > 0L) {
+			tokens.accumulateAndGet(deposit, (current, add) -> Math.min(capacity, current + add));
+		}
+	}
+
+	/**
+	 * Attempt to withdraw a retry from budget.
+	 * @param attempt attempts already done.
+	 * @return true, may retry, otherwise attempts or budget exhausted.
+	 */
+	boolean tryRetry(int attempt) {
+		if(attempt >= maxAttempts) {
+			return false;
+		}
+
+		long current;
+		do {
+			current = tokens.get();
+			if(current < TOKEN_SCALE) {
+				return false;
+			}
+		} while (!tokens.compareAndSet(current, current - TOKEN_SCALE));
+		return true;
+	}
+
+	/**
+	 * Backoff delay before retry, with full jitter.
+	 * @param retry retry number, from 1.
+	 * @return delay in millis.
+	 */
+	long backoff(int retry) {
+		long ceil = baseDelayInMillis << Math.min(30, Math.max(0, retry - 1));
+		ceil = Math.min(maxDelayInMillis, ceil < 0 ? Long.MAX_VALUE : ceil);
+		return ceil <= 0L ? 0L : ThreadLocalRandom.current().nextLong(ceil + 1);
+	}
+}
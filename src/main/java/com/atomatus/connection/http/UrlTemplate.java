@@ -0,0 +1,130 @@
+package com.atomatus.connection.http;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <strong>Url template</strong>
+ * <p>
+ *     Url with placeholders, by name <i>{name}</i> or by index <i>{0}</i>, parsed once
+ *     and expanded by request from query parameters, avoiding scan and replace of url string
+ *     on each request. Query parameters without placeholder are appended as query string.
+ * </p>
+ * <code>
+ *     UrlTemplate users = UrlTemplate.of("https://api.host.com/users/{id}/posts");<br>
+ *     client.getContent(users, Parameter.buildQuery("id", 42), Parameter.buildQuery("page", 2));
+ * </code>
+ * @author Carlos Matos {@literal @chcmatos}
+ */
+public final class UrlTemplate {
+
+	private final String template;
+	private final String[] literals;
+	private final String[] keys;
+	private final boolean hasQuery;
+
+	private UrlTemplate(String template, String[] literals, String[] keys) {
+		this.template = template;
+		this.literals = literals;
+		this.keys = keys;
+		this.hasQuery = template.indexOf('?') != -1;
+	}
+
+	/**
+	 * Parse url template.
+	 * @param template url with placeholders, by name <i>{name}</i> or by index <i>{0}</i>.
+	 * @return url template.
+	 * @throws IllegalArgumentException throws when template has unbalanced braces or is not a valid url.
+	 */
+	public static UrlTemplate of(String template) {
+		Objects.requireNonNull(template);
+		List<String> literals = new ArrayList<>();
+		List<String> keys = new ArrayList<>();
+		StringBuilder plain = new StringBuilder(template.length());
+
+		int start = 0;
+		for (int open; (open = template.indexOf('{', start)) != -1; ) {
+			int close = template.indexOf('}', open + 1);
+			if(close == -1 || close == open + 1 || template.lastIndexOf('{', close) != open) {
+				throw new IllegalArgumentException("Invalid placeholder at index " + open +
+						" of url template: " + template);
+			}
+			String literal = template.substring(start, open);
+			literals.add(literal);
+			keys.add(template.substring(open + 1, close));
+			plain.append(literal);
+			start = close + 1;
+		}
+
+		if(template.indexOf('}', start) != -1) {
+			throw new IllegalArgumentException("Unbalanced brace on url template: " + template);
+		}
+
+		String literal = template.substring(start);
+		literals.add(literal);
+		plain.append(literal);
+
+		try {
+			new URL(plain.toString());
+		} catch (MalformedURLException e) {
+			throw new IllegalArgumentException("Invalid url template: " + template, e);
+		}
+
+		return new UrlTemplate(template,
+				literals.toArray(new String[0]),
+				keys.toArray(new String[0]));
+	}
+
+	/**
+	 * Expand template replacing placeholders by query parameters, by name or index,
+	 * query parameters named and without placeholder are appended as query string,
+	 * placeholders without parameter are kept.
+	 * @param params query parameters.
+	 * @return expanded url.
+	 * @throws MalformedURLException throws when expanded url is malformed.
+	 */
+	URL expand(Parameter[] params) throws MalformedURLException {
+		String[] values = new String[keys.length];
+		StringBuilder query = null;
+
+		for (int i = 0, l = params == null ? 0 : params.length; i < l; i++) {
+			Parameter p = params[i];
+			boolean hasName = p.hasName();
+			String key = hasName ? p.getName() : String.valueOf(i);
+			boolean found = false;
+			String value = null;
+			for (int j = 0; j < keys.length; j++) {
+				if(keys[j].equals(key)) {
+					values[j] = value == null ? (value = p.getContentURLEncoded()) : value;
+					found = true;
+				}
+			}
+
+			if(!found && hasName) {
+				if(query == null) {
+					(query = new StringBuilder()).append(hasQuery ? '&' : '?').append(p);
+				} else {
+					query.append('&').append(p);
+				}
+			}
+		}
+
+		StringBuilder url = new StringBuilder(template.length() + (query == null ? 16 : query.length() + 16));
+		for (int j = 0; j < keys.length; j++) {
+			url.append(literals[j]);
+			if(values[j] != null) url.append(values[j]);
+			else url.append('{').append(keys[j]).append('}');
+		}
+		url.append(literals[keys.length]);
+		if(query != null) url.append(query);
+		return new URL(url.toString());
+	}
+
+	@Override
+	public String toString() {
+		return template;
+	}
+}
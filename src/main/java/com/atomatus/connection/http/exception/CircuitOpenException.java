@@ -0,0 +1,18 @@
+package com.atomatus.connection.http.exception;
+
+/**
+ * Request rejected without being sent, circuit breaker of target host is open.
+ * @author Carlos Matos {@literal @chcmatos}
+ */
+public class CircuitOpenException extends URLConnectionException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructs exception with message error.
+	 * @param str message error
+	 */
+	public CircuitOpenException(String str) {
+		super(str);
+	}
+}
@@ -0,0 +1,166 @@
+package com.atomatus.util.cache;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream;
+import org.apache.commons.compress.compressors.snappy.FramedSnappyCompressorInputStream;
+import org.apache.commons.compress.compressors.snappy.FramedSnappyCompressorOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * <strong>Cache data compression codec</strong>
+ * <p>
+ *     Codec used to compress cache data content when added on cache,
+ *     see {@link CacheControl#compression(CacheCodec, int)}.
+ * </p>
+ * <ul>
+ *     <li>{@link #DEFLATE}, {@link #GZIP}: good ratio, moderate speed (JDK).</li>
+ *     <li>{@link #LZ4}, {@link #SNAPPY}: lower ratio, fastest (commons-compress).</li>
+ *     <li>{@link #BZIP2}: best ratio for text, slowest (commons-compress).</li>
+ * </ul>
+ * @author Carlos Matos {@literal @chcmatos}
+ */
+public enum CacheCodec {
+
+    /**
+     * Deflate (zlib) compression.
+     */
+    DEFLATE(1) {
+        @Override
+        OutputStream compress(OutputStream out) {
+            return new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED), 8192) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        def.end();
+                    }
+                }
+            };
+        }
+
+        @Override
+        InputStream decompress(InputStream in) {
+            return new InflaterInputStream(in, new Inflater(), 8192) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inf.end();
+                    }
+                }
+            };
+        }
+    },
+
+    /**
+     * Gzip compression.
+     */
+    GZIP(2) {
+        @Override
+        OutputStream compress(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, 8192);
+        }
+
+        @Override
+        InputStream decompress(InputStream in) throws IOException {
+            return new GZIPInputStream(in, 8192);
+        }
+    },
+
+    /**
+     * Framed LZ4 compression.
+     */
+    LZ4(3) {
+        @Override
+        OutputStream compress(OutputStream out) throws IOException {
+            return new FramedLZ4CompressorOutputStream(out);
+        }
+
+        @Override
+        InputStream decompress(InputStream in) throws IOException {
+            return new FramedLZ4CompressorInputStream(in);
+        }
+    },
+
+    /**
+     * Framed Snappy compression.
+     */
+    SNAPPY(4) {
+        @Override
+        OutputStream compress(OutputStream out) throws IOException {
+            return new FramedSnappyCompressorOutputStream(out);
+        }
+
+        @Override
+        InputStream decompress(InputStream in) throws IOException {
+            return new FramedSnappyCompressorInputStream(in);
+        }
+    },
+
+    /**
+     * BZip2 compression.
+     */
+    BZIP2(5) {
+        @Override
+        OutputStream compress(OutputStream out) throws IOException {
+            return new BZip2CompressorOutputStream(out);
+        }
+
+        @Override
+        InputStream decompress(InputStream in) throws IOException {
+            return new BZip2CompressorInputStream(in);
+        }
+    };
+
+    /**
+     * Codec id kept on stored cache index.
+     */
+    final byte id;
+
+    CacheCodec(int id) {
+        this.id = (byte) id;
+    }
+
+    /**
+     * Open a stream compressing content written on target stream.
+     * @param out target stream, closed when compress stream is closed.
+     * @return compress stream.
+     * @throws IOException throws when is not possible write codec header.
+     */
+    abstract OutputStream compress(OutputStream out) throws IOException;
+
+    /**
+     * Open a stream decompressing content lazily while read from source stream.
+     * @param in source stream, closed when decompress stream is closed.
+     * @return decompress stream.
+     * @throws IOException throws when is not possible read codec header.
+     */
+    abstract InputStream decompress(InputStream in) throws IOException;
+
+    /**
+     * Recover codec by its id.
+     * @param id codec id.
+     * @return codec, or null when id is unknown (non compressed).
+     */
+    static CacheCodec of(byte id) {
+        for(CacheCodec codec : values()) {
+            if(codec.id == id) {
+                return codec;
+            }
+        }
+        return null;
+    }
+}
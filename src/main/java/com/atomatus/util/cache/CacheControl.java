@@ -2,11 +2,18 @@ package com.atomatus.util.cache;
 
 import com.atomatus.util.ArrayHelper;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * <strong>Cache control</strong>
@@ -43,6 +50,18 @@ import java.util.concurrent.atomic.AtomicLong;
  *             </code>
  *         </li>
  *         <li>
+ *             <strong>Tiered Mode</strong>
+ *             <p>
+ *                 <i>Hot cache data is kept in memory and cold ones stored in system disc,
+ *                 promoted back to memory when requested frequently.</i>
+ *             </p>
+ *             <br>
+ *             <code>
+ *                 CacheControl.tiered();<br><br>
+ *                 CacheControl.tiered(cacheId);
+ *             </code>
+ *         </li>
+ *         <li>
  *             <strong>Example how to store data in cache:</strong><br><br>
  *              <code>
  *                  CacheControl<br>
@@ -71,16 +90,17 @@ public abstract class CacheControl {
     //region cache instance
     private enum CacheTypes {
         MEMORY,
-        STORED
+        STORED,
+        TIERED
     }
 
-    private static final Map<Integer, CacheControl> caches;
+    private static final ConcurrentMap<Integer, CacheControl> caches;
     private static final Object globalHashCode;
     private static final int DEFAULT_MAX_AGE_IN_MILLIS;
 
-    private synchronized static CacheControl cache(Object id,
-                                                   CacheTypes type,
-                                                   ArrayHelper.Function<Integer, CacheControl> newCacheControlFun) {
+    private static CacheControl cache(Object id,
+                                      CacheTypes type,
+                                      ArrayHelper.Function<Integer, CacheControl> newCacheControlFun) {
         if(id == null) {
             throw new NullPointerException("Invalid id!");
         } else if(type == null) {
@@ -88,14 +108,8 @@ public abstract class CacheControl {
         }
 
         int hash = Objects.hash(id, type);
-        CacheControl cache = caches.get(hash);
-
-        if(cache == null) {
-            CacheControl res = caches.put(hash, cache = newCacheControlFun.apply(hash));
-            assert res == null;
-        }
-
-        return cache;
+        CacheControl cache = caches.get(hash);//lock-free when already created.
+        return cache != null ? cache : caches.computeIfAbsent(hash, newCacheControlFun::apply);
     }
 
     /**
@@ -136,6 +150,29 @@ public abstract class CacheControl {
     public static CacheControl stored(Object id) {
         return cache(id, CacheTypes.STORED, CacheControlStored::new);
     }
+
+    /**
+     * Get or create a cache control instance for tiered mode, hot cache data kept in memory and
+     * cold or evicted ones demoted to stored tier (temp files), promoted back to memory
+     * when requested frequently.<br>
+     * <i>Warning: This instance of cache may be accessible for all thread of your app proccesses,
+     * if you want to create an isolated cache control use {@link #tiered(Object)} with an isolated id.</i>
+     * @return cache control in tiered mode.
+     */
+    public static CacheControl tiered() {
+        return tiered(globalHashCode);
+    }
+
+    /**
+     * Get or create a cache control instance for tiered mode for isolated access by id.<br>
+     * <i>Memory tier capacity is defined by {@link #maximumSize(long)} (1024 by default)
+     * and {@link #maximumWeight(long)}, stored tier is unbounded.</i>
+     * @param id secure cache id.
+     * @return cache control in tiered mode.
+     */
+    public static CacheControl tiered(Object id) {
+        return cache(id, CacheTypes.TIERED, CacheControlTiered::new);
+    }
     //endregion
 
     /**
@@ -148,8 +185,53 @@ public abstract class CacheControl {
      */
     private final AtomicLong maxAgeInMillis;
 
+    /**
+     * Cache refresh-ahead window in milliseconds before cache data expiration, zero for disabled.
+     */
+    private final AtomicLong refreshAheadInMillis;
+
+    /**
+     * Cache maximum count of data, zero for unbounded.
+     */
+    private final AtomicLong maximumSize;
+
+    /**
+     * Cache maximum weight (data length in bytes), zero for unbounded.
+     */
+    private final AtomicLong maximumWeight;
+
+    /**
+     * Cache data built by {@link #dataBuilder()} are kept as plaintext (non encrypted).
+     */
+    private final AtomicBoolean plaintext;
+
+    /**
+     * Cache data keys are kept in compact form (128-bit digest).
+     */
+    private final AtomicBoolean compactKeys;
+
+    /**
+     * Cache data compression codec, null for uncompressed.
+     */
+    private final AtomicReference<CacheCodec> compression;
+
+    /**
+     * Cache data min length (in bytes) to be compressed.
+     */
+    private final AtomicInteger compressionThreshold;
+
+    /**
+     * Cache max bytes kept off-heap, zero for on heap only.
+     */
+    private final AtomicLong offHeapBudget;
+
+    /**
+     * Cache directory to keep stored data between application restarts, null for temp files.
+     */
+    private final AtomicReference<File> directory;
+
     static {
-        caches = new HashMap<>();
+        caches = new ConcurrentHashMap<>();
         globalHashCode = new Object();
         DEFAULT_MAX_AGE_IN_MILLIS = 60 * 60 * 1000;//1h
     }
@@ -161,6 +243,15 @@ public abstract class CacheControl {
     protected CacheControl(int id) {
         this.id = id;
         this.maxAgeInMillis = new AtomicLong(DEFAULT_MAX_AGE_IN_MILLIS);
+        this.refreshAheadInMillis = new AtomicLong();
+        this.maximumSize = new AtomicLong();
+        this.maximumWeight = new AtomicLong();
+        this.plaintext = new AtomicBoolean();
+        this.compactKeys = new AtomicBoolean();
+        this.compression = new AtomicReference<>();
+        this.compressionThreshold = new AtomicInteger();
+        this.offHeapBudget = new AtomicLong();
+        this.directory = new AtomicReference<>();
     }
 
     //region max age
@@ -183,6 +274,234 @@ public abstract class CacheControl {
     protected final long getMaxAgeInMillis(){
         return maxAgeInMillis.get();
     }
+
+    /**
+     * <p>Set refresh-ahead window (stale-while-revalidate) before cache data expiration.</p>
+     * <p>Requests by loader ({@link #get(Object, CacheLoader)} or {@link #getAsync(Object, CacheLoader, Executor)})
+     * for cache data inside this window receives cached data immediately and triggers
+     * only one background reload, replacing it before expiration.</p>
+     * @param window window time before expiration, zero or less to disable.
+     * @param timeUnit time unit
+     * @return current instance.
+     */
+    public synchronized CacheControl refreshAhead(long window, TimeUnit timeUnit) {
+        refreshAheadInMillis.set(window > 0L ? timeUnit.toMillis(window) : 0L);
+        return this;
+    }
+
+    /**
+     * Get current refresh-ahead window in milliseconds.
+     * @return refresh-ahead window in milliseconds, zero when disabled.
+     */
+    protected final long getRefreshAheadInMillis() {
+        return refreshAheadInMillis.get();
+    }
+    //endregion
+
+    //region bounds
+    /**
+     * <p>Set maximum count of cache data kept by this cache.</p>
+     * <i>When exceeded, the less valuable cache data are evicted, using a W-TinyLFU policy:
+     * recently added data pass by a small admission window and are only kept on main space
+     * whether requested more often than the data that would be evicted in their place.</i>
+     * @param maximumSize maximum count of cache data, zero or less for unbounded (default).
+     * @return current instance.
+     */
+    public synchronized CacheControl maximumSize(long maximumSize) {
+        this.maximumSize.set(Math.max(0L, maximumSize));
+        this.onBoundsChanged();
+        return this;
+    }
+
+    /**
+     * <p>Set maximum weight of cache data kept by this cache,
+     * weight is the sum of all cache data length in bytes.</p>
+     * <i>When exceeded, the less valuable cache data are evicted,
+     * see {@link #maximumSize(long)}.</i>
+     * @param maximumWeight maximum weight in bytes, zero or less for unbounded (default).
+     * @return current instance.
+     */
+    public synchronized CacheControl maximumWeight(long maximumWeight) {
+        this.maximumWeight.set(Math.max(0L, maximumWeight));
+        this.onBoundsChanged();
+        return this;
+    }
+
+    /**
+     * Get current maximum count of cache data.
+     * @return maximum count, zero when unbounded.
+     */
+    protected final long getMaximumSize() {
+        return maximumSize.get();
+    }
+
+    /**
+     * Get current maximum weight of cache data.
+     * @return maximum weight in bytes, zero when unbounded.
+     */
+    protected final long getMaximumWeight() {
+        return maximumWeight.get();
+    }
+
+    /**
+     * Callback when maximum size or weight is changed.
+     */
+    protected void onBoundsChanged() { }
+    //endregion
+
+    //region plaintext
+    /**
+     * <p>Set whether cache data built from now by {@link #dataBuilder()} are kept as plaintext
+     * (non encrypted), skipping encryption cost on write and read, see {@link CacheData.Builder#plain()}.</p>
+     * <p>Mode is decided by entry before its content is set, cache data built by other builders
+     * are kept as built (ciphered by default).</p>
+     * <i>Warning: use only for non sensitive data, ciphered mode is the default.</i>
+     * @param plaintext true, keep cache data as plaintext, otherwise ciphered (default).
+     * @return current instance.
+     */
+    public synchronized CacheControl plaintext(boolean plaintext) {
+        this.plaintext.set(plaintext);
+        return this;
+    }
+
+    /**
+     * Check whether cache data added are kept as plaintext (non encrypted).
+     * @return true, cache data are kept as plaintext, otherwise false.
+     */
+    public final boolean isPlaintext() {
+        return plaintext.get();
+    }
+
+    /**
+     * Create a cache data builder, already in plaintext mode when cache is plaintext
+     * (see {@link #plaintext(boolean)}), so content set on it is never ciphered.
+     * @return new cache data builder.
+     */
+    public CacheData.Builder dataBuilder() {
+        CacheData.Builder builder = new CacheData.Builder();
+        return isPlaintext() ? builder.plain() : builder;
+    }
+    //endregion
+
+    //region keys
+    /**
+     * <p>Set whether cache data keys are kept in compact form, a 128-bit digest (MD5)
+     * of id canonical encoding, instead of full id, reducing memory for long ids (as URLs).</p>
+     * <i>Cache data are always bonded by full id equality (or its digest), never by id
+     * hash code only. Applied on cache data added from now, should be set before using cache.</i>
+     * @param compactKeys true, keep keys in compact form, otherwise full id (default).
+     * @return current instance.
+     */
+    public synchronized CacheControl compactKeys(boolean compactKeys) {
+        this.compactKeys.set(compactKeys);
+        return this;
+    }
+
+    /**
+     * Check whether cache data keys are kept in compact form.
+     * @return true, keys are kept in compact form, otherwise false.
+     */
+    public final boolean isCompactKeys() {
+        return compactKeys.get();
+    }
+    //endregion
+
+    //region compression
+    /**
+     * <p>Set codec to compress cache data added from now, whose content length reaches threshold,
+     * reducing memory and disc used by highly compressible content (as JSON or XML).</p>
+     * <i>Content is compressed before encryption and decompressed lazily while read by
+     * {@link CacheData#stream()}, so large content is never fully inflated in memory;
+     * content not reduced by codec is kept uncompressed.</i>
+     * @param codec compression codec, or null to disable compression (default).
+     * @param thresholdInBytes min content length (in bytes) to compress, smaller content is kept uncompressed.
+     * @return current instance.
+     */
+    public synchronized CacheControl compression(CacheCodec codec, int thresholdInBytes) {
+        this.compression.set(codec);
+        this.compressionThreshold.set(Math.max(0, thresholdInBytes));
+        return this;
+    }
+
+    /**
+     * Get current compression codec.
+     * @return compression codec, or null when disabled.
+     */
+    protected final CacheCodec getCompression() {
+        return compression.get();
+    }
+
+    /**
+     * Get current min content length (in bytes) to compress.
+     * @return compression threshold.
+     */
+    protected final int getCompressionThreshold() {
+        return compressionThreshold.get();
+    }
+    //endregion
+
+    //region off-heap
+    /**
+     * <p>Set max bytes of cache data content kept off-heap (direct memory), reducing
+     * garbage collector pressure by large content, memory mode only.</p>
+     * <i>Content is moved to pooled off-heap slabs (1MB each) when added, while budget allows it,
+     * otherwise kept on heap; off-heap memory is released to pool when cache data is removed,
+     * evicted or expired. Ciphered content remains ciphered off-heap.</i>
+     * @param budgetInBytes max bytes kept off-heap, zero or less to keep on heap only (default).
+     * @return current instance.
+     */
+    public synchronized CacheControl offHeap(long budgetInBytes) {
+        this.offHeapBudget.set(Math.max(0L, budgetInBytes));
+        this.onOffHeapChanged();
+        return this;
+    }
+
+    /**
+     * Get current max bytes of cache data content kept off-heap.
+     * @return off-heap budget in bytes, zero when on heap only.
+     */
+    protected final long getOffHeapBudget() {
+        return offHeapBudget.get();
+    }
+
+    /**
+     * Callback when off-heap budget is changed.
+     */
+    protected void onOffHeapChanged() { }
+    //endregion
+
+    //region directory
+    /**
+     * <p>Set directory where cache data are kept, surviving application restarts, stored mode only.</p>
+     * <i>On each start, index of directory is loaded and cache data are revived on demand,
+     * when requested by {@link #get(Object)}. Only plaintext cache data (see {@link #plaintext(boolean)})
+     * with id of a stable type (string, URL, URI, number, UUID or enum) survive restarts,
+     * ciphered cache data are kept on directory only during application execution.</i>
+     * @param directory target directory, created when not exists.
+     * @return current instance.
+     * @throws java.io.UncheckedIOException throws when is not possible open cache directory.
+     */
+    public synchronized CacheControl directory(File directory) {
+        File target = Objects.requireNonNull(directory).getAbsoluteFile();
+        if(!target.equals(this.directory.get())) {
+            this.directory.set(target);
+            this.onDirectoryChanged();
+        }
+        return this;
+    }
+
+    /**
+     * Get current cache directory.
+     * @return cache directory, or null when using temp files.
+     */
+    protected final File getDirectory() {
+        return directory.get();
+    }
+
+    /**
+     * Callback when cache directory is changed.
+     */
+    protected void onDirectoryChanged() { }
     //endregion
 
     //region abstracts
@@ -203,6 +522,48 @@ public abstract class CacheControl {
      */
     public abstract CacheData get(Object hash);
 
+    /**
+     * <p>
+     *     Attempt to recover cache data for target id, when not found or expired,
+     *     load it by loader and add it to cache.
+     * </p>
+     * <p>
+     *     Concurrent requests for the same missing id wait for a single load
+     *     in flight and share its result, so loader is not called once per thread.
+     * </p>
+     * @param hash cache data id.
+     * @param loader cache data loader, must build cache data with requested id.
+     * @return cache data stored or loaded, oterwhise empty cache data when loader returns null.
+     * @throws CacheLoadException throws when loader fails.
+     */
+    public abstract CacheData get(Object hash, CacheLoader loader);
+
+    /**
+     * Attempt to recover cache data for target id asynchronously, when not found or expired,
+     * load it by loader on target executor and add it to cache.<br>
+     * <i>Concurrent requests for the same missing id share a single load in flight,
+     * see {@link #get(Object, CacheLoader)}.</i>
+     * @param hash cache data id.
+     * @param loader cache data loader, must build cache data with requested id.
+     * @param executor executor to run loader.
+     * @return future completed with cache data stored or loaded, or exceptionally
+     * with {@link CacheLoadException} when loader fails.
+     */
+    public abstract CompletableFuture<CacheData> getAsync(Object hash, CacheLoader loader, Executor executor);
+
+    /**
+     * Attempt to recover cache data for target id asynchronously, when not found or expired,
+     * load it by loader on {@link ForkJoinPool#commonPool()} and add it to cache.<br>
+     * <i>Warning: prefer {@link #getAsync(Object, CacheLoader, Executor)} for loaders blocking on I/O.</i>
+     * @param hash cache data id.
+     * @param loader cache data loader, must build cache data with requested id.
+     * @return future completed with cache data stored or loaded, or exceptionally
+     * with {@link CacheLoadException} when loader fails.
+     */
+    public CompletableFuture<CacheData> getAsync(Object hash, CacheLoader loader) {
+        return getAsync(hash, loader, ForkJoinPool.commonPool());
+    }
+
     /**
      * Add or update cache data boned by id.
      * @param data cache data.
@@ -224,14 +585,48 @@ public abstract class CacheControl {
     public abstract boolean remove(CacheData data);
 
     /**
-     * Clear all data cached.
+     * <p>Renew cache data freshness in place, replacing its max age (from now) and metadata
+     * without rewriting its content (e.g. content validated again by origin).</p>
+     * @param data cache data target, as found by {@link #get(Object)}.
+     * @param maxAge max age time, from now.
+     * @param timeUnit max age time unit.
+     * @param meta metadata, or null.
+     * @return true, cache data renewed, otherwise false (no longer cached, or replaced).
+     */
+    public abstract boolean revalidate(CacheData data, long maxAge, TimeUnit timeUnit, String meta);
+
+    /**
+     * <p>Remove all cache data tagged by target tag (see {@link CacheData.Builder#tag(String...)}),
+     * visiting only tagged cache data, without scanning whole cache.</p>
+     * <i>Tags are not kept between application restarts (see {@link #directory(File)}).</i>
+     * @param tag cache data tag.
+     * @return count of cache data removed.
+     */
+    public abstract int invalidate(String tag);
+
+    /**
+     * Clear all data cached, on caller thread.
      */
     public abstract void clear();
 
     /**
-     * Force attempt to recycle all cache
-     * data expired (reached max age time defined in {@link #maxAge(long, TimeUnit)}).
+     * Request to recycle all cache data expired (reached max age time defined in
+     * {@link #maxAge(long, TimeUnit)}) asynchronously on shared cache sweeper thread.<br>
+     * <i>Expired cache data are also recycled periodically by sweeper, in small batches.</i>
      */
     public abstract void recycle();
+
+    /**
+     * Recycle all cache data expired (reached max age time defined in
+     * {@link #maxAge(long, TimeUnit)}) immediately on caller thread.
+     */
+    public abstract void cleanUp();
+
+    /**
+     * Snapshot of current cache statistics (hits, misses, expirations,
+     * evictions, bytes held, store/load and encryption time).
+     * @return cache statistics.
+     */
+    public abstract CacheStats stats();
     //endregion
 }
@@ -1,20 +1,48 @@
 package com.atomatus.util.cache;
 
-import java.util.Collection;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Cache control base rules defining callbacks for each state change.
  */
 abstract class CacheControlBase extends CacheControl {
 
-    private final ConcurrentMap<Integer, CacheData> cache;
+    private final ConcurrentMap<CacheKey, CacheData> cache;
+    private final CacheEvictionPolicy policy;
+    private final CacheStatsCounter stats;
+    private final ConcurrentMap<CacheKey, CompletableFuture<CacheData>> loading;
+    private final ConcurrentMap<String, Set<CacheKey>> tagged;
+    private final AtomicBoolean recycleRequested;
+    private final Object sweepLock;
+    private final Object reviveLock;
+    private Iterator<Map.Entry<CacheKey, CacheData>> sweepCursor;
 
     protected CacheControlBase(int id) {
         super(id);
         this.cache = new ConcurrentHashMap<>();
+        this.policy = new CacheEvictionPolicy();
+        this.stats = new CacheStatsCounter();
+        this.loading = new ConcurrentHashMap<>();
+        this.tagged = new ConcurrentHashMap<>();
+        this.recycleRequested = new AtomicBoolean();
+        this.sweepLock = new Object();
+        this.reviveLock = new Object();
+        CacheSweeper.register(this);
     }
 
     //region callbacks
@@ -25,6 +53,149 @@ abstract class CacheControlBase extends CacheControl {
     }
 
     protected void onRemoveCallback(CacheData cacheData)  { }
+
+    protected void onClearCallback() { }
+
+    protected boolean onEvictCallback(CacheData cacheData) {
+        return false;
+    }
+
+    protected boolean isRevivable(CacheKey key) {
+        return false;
+    }
+
+    protected CacheData onReviveCallback(CacheKey key) {
+        return null;
+    }
+
+    @Override
+    protected final void onBoundsChanged() {
+        ReentrantLock lock = policy.lock();
+        lock.lock();
+        try {
+            if(!policy.isBounded()) {
+                //start tracking data added while unbounded.
+                for(Map.Entry<CacheKey, CacheData> entry : cache.entrySet()) {
+                    policy.recordAdd(entry.getKey(), entry.getValue().length());
+                }
+            }
+            evict(policy.bounds(getMaximumSize(), getMaximumWeight()));
+            if(!policy.isBounded()) {
+                policy.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    //endregion
+
+    //region removal
+    /**
+     * Statistics counters of current cache control.
+     * @return stats counter.
+     */
+    final CacheStatsCounter counter() {
+        return stats;
+    }
+
+    private void forget(CacheKey key, CacheData cd) {
+        untag(key, cd);
+        if(policy.isBounded()) {
+            ReentrantLock lock = policy.lock();
+            lock.lock();
+            try {
+                policy.recordRemove(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+        stats.recordRemove(cd.length());
+    }
+
+    private void release(CacheKey key, CacheData cd) {
+        forget(key, cd);
+        onRemoveCallback(cd);
+        cd.clear();
+    }
+
+    private void evict(List<Object> victims) {
+        for(Object victim : victims) {
+            CacheKey key = (CacheKey) victim;
+            CacheData cd = cache.remove(key);
+            if(cd != null) {
+                stats.recordEviction();
+                if(onEvictCallback(cd)) {
+                    forget(key, cd);//adopted by callback, not cleared.
+                } else {
+                    release(key, cd);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove cache data without clearing it, to be moved to another cache control.
+     * @param data cache data target.
+     * @return true, cache data removed, otherwise false.
+     */
+    final boolean detach(CacheData data) {
+        CacheKey key = data.key();
+        boolean success = cache.remove(key, data);
+        if(success) {
+            forget(key, data);
+        }
+        return success;
+    }
+
+    private void expire(Map.Entry<CacheKey, CacheData> entry) {
+        CacheData cd = entry.getValue();
+        if(cd.isExpired() && cache.remove(entry.getKey(), cd)) {
+            stats.recordExpiration();
+            release(entry.getKey(), cd);
+        }
+    }
+    //endregion
+
+    //region tags
+    private void tag(CacheKey key, CacheData data) {
+        for(String tag : data.tags()) {
+            tagged.compute(tag, (t, keys) -> {
+                if(keys == null) {
+                    keys = ConcurrentHashMap.newKeySet();
+                }
+                keys.add(key);
+                return keys;
+            });
+        }
+    }
+
+    private void untag(CacheKey key, CacheData data) {
+        for(String tag : data.tags()) {
+            tagged.computeIfPresent(tag, (t, keys) -> {
+                CacheData current = cache.get(key);
+                if(current == null || !current.hasTag(t)) {
+                    keys.remove(key);//keeps key when replaced by data with same tag.
+                }
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+    //endregion
+
+    //region keys
+    /**
+     * Cache data key for target id, in compact form when cache control uses compact keys.
+     * @param hash cache data id.
+     * @return cache data key.
+     */
+    final CacheKey key(Object hash) {
+        return CacheKey.of(Objects.requireNonNull(hash), isCompactKeys());
+    }
+
+    private CacheKey key(CacheData data) {
+        CacheKey key = data.key();
+        return isCompactKeys() && !key.isCompact() ? key.compact() : key;
+    }
     //endregion
 
     //region CacheControl
@@ -35,76 +206,299 @@ abstract class CacheControlBase extends CacheControl {
 
     @Override
     public final CacheData get(Object hash) {
-        CacheData found = cache.get(Objects.requireNonNull(hash).hashCode());
+        CacheKey key = key(hash);
+        CacheData found = cache.get(key);
 
-        if(found == null) {
+        if(found == null && (found = revive(key)) == null) {
+            stats.recordMiss();
             return CacheDataImpl.empty;
         } else if(found.isExpired()) {
-            recycle();
+            stats.recordMiss();
+            expire(new AbstractMap.SimpleImmutableEntry<>(key, found));
             return CacheDataImpl.empty;
+        } else if(policy.isBounded()) {
+            policy.recordAccess(key);
         }
 
+        stats.recordHit();
         return onGetCallback(found);
     }
 
     @Override
     public final void add(CacheData data) {
-        CacheData old = cache.put(data.hash(), data.maxAge(getMaxAgeInMillis()));
+        CacheKey key = key(data);
+        if(key != data.key()) {
+            data.key(key);
+        }
+        CacheCodec codec = getCompression();
+        if(codec != null) {
+            data.compress(codec, getCompressionThreshold());
+        }
+        CacheData old = cache.put(key, data.maxAge(getMaxAgeInMillis()));
         if(old != data) {
             if(old != null) {
+                untag(key, old);
+                stats.recordRemove(old.length());
                 onRemoveCallback(old);
                 old.clear();
             }
+            tag(key, data);
+            data.stats(stats);
+            stats.recordAdd(data.length(), data.encryptionNanos());
             onAddCallback(data);
         }
+        admit(key, data);
+    }
+
+    private void admit(CacheKey key, CacheData data) {
+        if(policy.isBounded()) {
+            ReentrantLock lock = policy.lock();
+            lock.lock();
+            try {
+                if(cache.get(key) == data) {
+                    evict(policy.recordAdd(key, data.length()));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Revive cache data kept by a previous application execution, when supported.
+     * @param key cache data key.
+     * @return cache data revived, or null when not found.
+     */
+    private CacheData revive(CacheKey key) {
+        if(!isRevivable(key)) {
+            return null;
+        }
+
+        synchronized (reviveLock) {
+            CacheData found = cache.get(key);
+            if(found == null && (found = onReviveCallback(key)) != null) {
+                cache.put(key, found);
+                found.stats(stats);
+                stats.recordAdd(found.length(), 0L);
+                admit(key, found);
+            }
+            return found;
+        }
     }
 
     @Override
     public final boolean remove(Object hash) {
-        CacheData cd = cache.remove(Objects.requireNonNull(hash).hashCode());
+        CacheKey key = key(hash);
+        CacheData cd = cache.remove(key);
         boolean success = cd != null;
         if(success) {
-            onRemoveCallback(cd);
-            cd.clear();
+            release(key, cd);
         }
         return success;
     }
 
     @Override
     public final boolean remove(CacheData data) {
-        CacheData cd = cache.get(Objects.requireNonNull(data).hash());
-        boolean success = cd == data || cd.hash() == data.hash();
-        if(success && cache.remove(cd.hash()) == cd) {
-            onRemoveCallback(cd);
-            cd.clear();
+        CacheKey key = key(Objects.requireNonNull(data));
+        CacheData cd = cache.get(key);
+        boolean success = cd != null && cache.remove(key, cd);
+        if(success) {
+            release(key, cd);
         }
         return success;
     }
 
+    @Override
+    public final boolean revalidate(CacheData data, long maxAge, TimeUnit timeUnit, String meta) {
+        long maxAgeInMillis = Objects.requireNonNull(timeUnit).toMillis(maxAge);
+        if(!Objects.requireNonNull(data).exists() || maxAgeInMillis <= 0L || cache.get(key(data)) != data) {
+            return false;
+        }
+        data.revalidate(maxAgeInMillis, meta);
+        return true;
+    }
+
+    @Override
+    public final int invalidate(String tag) {
+        Set<CacheKey> keys = tagged.remove(Objects.requireNonNull(tag));
+        int count = 0;
+        if(keys != null) {
+            for(CacheKey key : keys) {
+                CacheData cd = cache.get(key);
+                if(cd != null && cd.hasTag(tag) && cache.remove(key, cd)) {
+                    release(key, cd);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
     @Override
     public final void clear() {
-        new Thread(this::clearInternal).start();
+        Iterator<Map.Entry<CacheKey, CacheData>> it = cache.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<CacheKey, CacheData> entry = it.next();
+            CacheData cd = entry.getValue();
+            if(cache.remove(entry.getKey(), cd)) {
+                stats.recordRemove(cd.length());
+                onRemoveCallback(cd);
+                cd.clear();
+            }
+        }
+        tagged.clear();
+        onClearCallback();
+
+        ReentrantLock lock = policy.lock();
+        lock.lock();
+        try {
+            policy.clear();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public final void recycle() {
-        new Thread(this::recycleInternal).start();
+        if(recycleRequested.compareAndSet(false, true)) {
+            CacheSweeper.execute(() -> {
+                recycleRequested.set(false);
+                cleanUp();
+            });
+        }
     }
 
-    private synchronized void clearInternal() {
-        Collection<CacheData> col = cache.values();
-        cache.clear();
-        for (CacheData cd : col) cd.clear();
+    @Override
+    public final void cleanUp() {
+        synchronized (sweepLock) {
+            for (Map.Entry<CacheKey, CacheData> entry : cache.entrySet()) {
+                expire(entry);
+            }
+        }
     }
 
-    private synchronized void recycleInternal() {
-        Collection<CacheData> col = cache.values();
-        for (CacheData cd : col) {
-            if(cd.isExpired()) {
-                CacheData rm = cache.remove(cd.hash());
-                if(rm != null && rm != cd && !rm.isExpired()) {
-                    cache.put(rm.hash(), rm);
+    @Override
+    public final CacheStats stats() {
+        return stats.snapshot(cache.size());
+    }
+    //endregion
+
+    //region loading
+    @Override
+    public final CacheData get(Object hash, CacheLoader loader) {
+        CacheData found = get(hash);
+        if(found.exists()) {
+            refresh(hash, found, Objects.requireNonNull(loader), null);
+            return found;
+        }
+
+        try {
+            return load(hash, Objects.requireNonNull(loader), null, null).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof CacheLoadException ?
+                    (CacheLoadException) cause :
+                    new CacheLoadException(cause);
+        }
+    }
+
+    @Override
+    public final CompletableFuture<CacheData> getAsync(Object hash, CacheLoader loader, Executor executor) {
+        CacheData found = get(hash);
+        if(!found.exists()) {
+            return load(hash, Objects.requireNonNull(loader), Objects.requireNonNull(executor), null);
+        }
+        refresh(hash, found, Objects.requireNonNull(loader), Objects.requireNonNull(executor));
+        return CompletableFuture.completedFuture(found);
+    }
+
+    /**
+     * Reload cache data in background when it is inside refresh-ahead window,
+     * only once for each key in flight, failures keep cache data as is.
+     * @param hash cache data id.
+     * @param found cache data found.
+     * @param loader cache data loader.
+     * @param executor executor to run loader, or null to run on common pool.
+     */
+    final void refresh(Object hash, CacheData found, CacheLoader loader, Executor executor) {
+        long window = getRefreshAheadInMillis();
+        if(window > 0L && found.expiresAt() - System.currentTimeMillis() <= window) {
+            load(hash, loader, executor == null ? ForkJoinPool.commonPool() : executor, found);
+        }
+    }
+
+    /**
+     * Load cache data once for each key in flight, concurrent requests
+     * for the same key receive the same future.
+     * @param hash cache data id.
+     * @param loader cache data loader.
+     * @param executor executor to run loader, or null to run on caller thread.
+     * @param stale cache data to be replaced even if not expired yet, or null.
+     * @return future of cache data loaded.
+     */
+    private CompletableFuture<CacheData> load(Object hash, CacheLoader loader, Executor executor, CacheData stale) {
+        CacheKey key = key(hash);
+        CompletableFuture<CacheData> future = loading.get(key);
+        if(future != null) {
+            return future;
+        }
+
+        CompletableFuture<CacheData> own = new CompletableFuture<>();
+        if((future = loading.putIfAbsent(key, own)) != null) {
+            return future;
+        }
+
+        Runnable task = () -> {
+            try {
+                CacheData found = cache.get(key);
+                if(found == null || found == stale || found.isExpired()) {
+                    found = loader.load(hash);
+                    if(found == null) {
+                        found = CacheDataImpl.empty;
+                    } else if(!key.equals(key(found))) {
+                        throw new CacheLoadException("Cache data loaded is not bonded to requested id!");
+                    } else {
+                        add(found);
+                    }
+                }
+                own.complete(found);
+            } catch (Throwable e) {
+                own.completeExceptionally(e instanceof CacheLoadException ? e : new CacheLoadException(e));
+            } finally {
+                loading.remove(key, own);
+            }
+        };
+
+        if(executor == null) {
+            task.run();
+        } else {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                loading.remove(key, own);
+                own.completeExceptionally(new CacheLoadException(e));
+            }
+        }
+        return own;
+    }
+    //endregion
+
+    //region expiration
+    /**
+     * Recycle expired cache data incrementally, visiting at most
+     * batch size of entries, continuing from where last sweep stopped.
+     * @param batchSize max count of entries visited.
+     */
+    final void sweep(int batchSize) {
+        synchronized (sweepLock) {
+            for(int i=0; i < batchSize; i++) {
+                if(sweepCursor == null || !sweepCursor.hasNext()) {
+                    sweepCursor = i == 0 ? cache.entrySet().iterator() : null;
+                    if(sweepCursor == null || !sweepCursor.hasNext()) {
+                        break;
+                    }
                 }
+                expire(sweepCursor.next());
             }
         }
     }
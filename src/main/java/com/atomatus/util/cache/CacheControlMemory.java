@@ -1,11 +1,61 @@
 package com.atomatus.util.cache;
 
+import java.io.IOException;
+
 /**
  * Cache control for data in memory.
  */
 final class CacheControlMemory extends CacheControlBase {
 
+    private volatile CacheSlabAllocator allocator;
+    private volatile CacheControlBase demotion;
+
     protected CacheControlMemory(int id) {
         super(id);
     }
+
+    /**
+     * Set cache control receiving cache data evicted, instead of clearing them.
+     * @param demotion cache control target.
+     */
+    void demoteTo(CacheControlBase demotion) {
+        this.demotion = demotion;
+    }
+
+    @Override
+    protected boolean onEvictCallback(CacheData cacheData) {
+        CacheControlBase target = demotion;
+        if(target == null || cacheData.isExpired()) {
+            return false;
+        }
+        try {
+            target.add(cacheData);
+            return true;
+        } catch (RuntimeException e) {
+            return false;//not demoted, cleared.
+        }
+    }
+
+    @Override
+    protected void onOffHeapChanged() {
+        long budget = getOffHeapBudget();
+        CacheSlabAllocator current = allocator;
+        if(current != null) {
+            current.budget(budget);
+        } else if(budget > 0L) {
+            allocator = new CacheSlabAllocator(budget);
+        }
+    }
+
+    @Override
+    protected void onAddCallback(CacheData cacheData) {
+        CacheSlabAllocator current = allocator;
+        if(current != null && getOffHeapBudget() > 0L) {
+            try {
+                cacheData.transfer(payload -> CachePayloadOffHeap.of(current, payload));
+            } catch (IOException ignored) {
+                //keeps on heap.
+            }
+        }
+    }
 }
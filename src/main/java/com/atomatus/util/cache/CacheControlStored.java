@@ -1,22 +1,53 @@
 package com.atomatus.util.cache;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 
 /**
  * Cache control for storing data.
  */
 final class CacheControlStored extends CacheControlBase {
 
+    private volatile CacheSegmentStore store;
+
     protected CacheControlStored(int id) {
         super(id);
     }
 
+    private CacheSegmentStore store() throws IOException {
+        CacheSegmentStore s = store;
+        if(s == null) {
+            synchronized (this) {
+                if((s = store) == null) {
+                    store = s = CacheSegmentStore.temporary();
+                }
+            }
+        }
+        return s;
+    }
+
+    @Override
+    protected synchronized void onDirectoryChanged() {
+        File directory = getDirectory();
+        try {
+            store = CacheSegmentStore.open(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @Override
     protected void onAddCallback(CacheData cacheData) {
+        long start = System.nanoTime();
         try {
-            cacheData.data().store();
+            CacheSegmentStore s = store();
+            cacheData.transfer(payload -> s.write(payload, cacheData.key().canonical(),
+                    cacheData.expiresAt(), cacheData.codec(), cacheData.length()));
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            counter().recordStore(System.nanoTime() - start);
         }
     }
 
@@ -29,4 +60,25 @@ final class CacheControlStored extends CacheControlBase {
     protected void onRemoveCallback(CacheData cacheData) {
         super.onRemoveCallback(cacheData);
     }
+
+    @Override
+    protected void onClearCallback() {
+        CacheSegmentStore s = store;
+        if(s != null) {
+            s.clearDormant();
+        }
+    }
+
+    @Override
+    protected boolean isRevivable(CacheKey key) {
+        CacheSegmentStore s = store;
+        return s != null && s.isRevivable(key);
+    }
+
+    @Override
+    protected CacheData onReviveCallback(CacheKey key) {
+        CacheSegmentStore s = store;
+        CachePayloadSegment payload = s == null ? null : s.revive(key.canonical());
+        return payload == null ? null : new CacheDataImpl(key, payload);
+    }
 }
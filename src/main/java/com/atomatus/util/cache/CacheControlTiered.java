@@ -0,0 +1,227 @@
+package com.atomatus.util.cache;
+
+import com.atomatus.util.security.SensitiveBytes;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *     Two level cache control, memory tier in front of stored tier.
+ * </p>
+ * <p>
+ *     Cache data are added on memory tier, bounded by {@link #maximumSize(long)} and
+ *     {@link #maximumWeight(long)}; evicted ones are demoted to stored tier instead of cleared.
+ *     Stored tier hits are counted and cache data requested frequently is promoted
+ *     back to memory tier.
+ * </p>
+ */
+final class CacheControlTiered extends CacheControl {
+
+    /**
+     * Memory tier maximum count of cache data by default.
+     */
+    static final long DEFAULT_MAXIMUM_SIZE;
+
+    /**
+     * Stored tier hits (estimated) to promote cache data to memory tier.
+     */
+    static final int PROMOTION_FREQUENCY;
+
+    static {
+        DEFAULT_MAXIMUM_SIZE    = 1024L;
+        PROMOTION_FREQUENCY     = 2;
+    }
+
+    private final CacheControlMemory memory;
+    private final CacheControlStored stored;
+    private final CacheFrequencySketch sketch;
+
+    CacheControlTiered(int id) {
+        super(id);
+        this.memory = new CacheControlMemory(id);
+        this.stored = new CacheControlStored(id);
+        this.sketch = new CacheFrequencySketch(DEFAULT_MAXIMUM_SIZE);
+        this.memory.demoteTo(stored);
+        this.maximumSize(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    //region settings
+    @Override
+    public synchronized CacheControl maxAge(long maxAge, TimeUnit timeUnit) {
+        memory.maxAge(maxAge, timeUnit);
+        stored.maxAge(maxAge, timeUnit);
+        return super.maxAge(maxAge, timeUnit);
+    }
+
+    @Override
+    public synchronized CacheControl refreshAhead(long window, TimeUnit timeUnit) {
+        memory.refreshAhead(window, timeUnit);
+        return super.refreshAhead(window, timeUnit);
+    }
+
+    @Override
+    public synchronized CacheControl plaintext(boolean plaintext) {
+        memory.plaintext(plaintext);
+        stored.plaintext(plaintext);
+        return super.plaintext(plaintext);
+    }
+
+    @Override
+    public synchronized CacheControl compression(CacheCodec codec, int thresholdInBytes) {
+        memory.compression(codec, thresholdInBytes);
+        stored.compression(codec, thresholdInBytes);
+        return super.compression(codec, thresholdInBytes);
+    }
+
+    @Override
+    public synchronized CacheControl compactKeys(boolean compactKeys) {
+        memory.compactKeys(compactKeys);
+        stored.compactKeys(compactKeys);
+        return super.compactKeys(compactKeys);
+    }
+
+    @Override
+    protected void onBoundsChanged() {
+        memory.maximumSize(getMaximumSize());
+        memory.maximumWeight(getMaximumWeight());
+    }
+
+    @Override
+    protected void onOffHeapChanged() {
+        memory.offHeap(getOffHeapBudget());
+    }
+
+    @Override
+    protected void onDirectoryChanged() {
+        File directory = getDirectory();
+        stored.directory(directory);
+    }
+    //endregion
+
+    //region promotion
+    private boolean isFrequent(CacheData data) {
+        synchronized (sketch) {
+            sketch.increment(data.key());
+            return sketch.frequency(data.key()) >= PROMOTION_FREQUENCY;
+        }
+    }
+
+    private static CachePayload heap(CachePayload source) throws IOException {
+        if(!(source instanceof CachePayloadSegment)) {
+            return null;
+        }
+
+        byte[] content = source.bytes();
+        CachePayload heap = source.isEncrypted() ?
+                new CachePayloadSensitive(SensitiveBytes.of(content)) :
+                new CachePayloadPlain(content, content.length);
+        source.destroy();
+        return heap;
+    }
+
+    private CacheData promote(CacheData data) {
+        if(stored.detach(data)) {
+            try {
+                data.transfer(CacheControlTiered::heap);
+            } catch (IOException e) {
+                stored.add(data);//keeps stored.
+                return data;
+            }
+            memory.add(data);
+        }
+        return data;
+    }
+    //endregion
+
+    //region CacheControl
+    @Override
+    public boolean exists(Object hash) {
+        return get(hash).exists();
+    }
+
+    @Override
+    public CacheData get(Object hash) {
+        CacheData found = memory.get(hash);
+        if(!found.exists() && (found = stored.get(hash)).exists() && isFrequent(found)) {
+            found = promote(found);
+        }
+        return found;
+    }
+
+    @Override
+    public CacheData get(Object hash, CacheLoader loader) {
+        CacheData found = get(hash);
+        if(!found.exists()) {
+            return memory.get(hash, loader);
+        }
+        memory.refresh(hash, found, Objects.requireNonNull(loader), null);
+        return found;
+    }
+
+    @Override
+    public CompletableFuture<CacheData> getAsync(Object hash, CacheLoader loader, Executor executor) {
+        CacheData found = get(hash);
+        if(!found.exists()) {
+            return memory.getAsync(hash, loader, executor);
+        }
+        memory.refresh(hash, found, Objects.requireNonNull(loader), Objects.requireNonNull(executor));
+        return CompletableFuture.completedFuture(found);
+    }
+
+    @Override
+    public void add(CacheData data) {
+        if(!stored.detach(Objects.requireNonNull(data))) {
+            stored.remove((Object) data.key());//outdated cache data.
+        }
+        memory.add(data);
+    }
+
+    @Override
+    public boolean remove(Object hash) {
+        return memory.remove(hash) | stored.remove(hash);
+    }
+
+    @Override
+    public boolean remove(CacheData data) {
+        return memory.remove(data) | stored.remove(data);
+    }
+
+    @Override
+    public boolean revalidate(CacheData data, long maxAge, TimeUnit timeUnit, String meta) {
+        return memory.revalidate(data, maxAge, timeUnit, meta) || stored.revalidate(data, maxAge, timeUnit, meta);
+    }
+
+    @Override
+    public int invalidate(String tag) {
+        return memory.invalidate(tag) + stored.invalidate(tag);
+    }
+
+    @Override
+    public void clear() {
+        memory.clear();
+        stored.clear();
+    }
+
+    @Override
+    public void recycle() {
+        memory.recycle();
+        stored.recycle();
+    }
+
+    @Override
+    public void cleanUp() {
+        memory.cleanUp();
+        stored.cleanUp();
+    }
+
+    @Override
+    public CacheStats stats() {
+        return CacheStats.tiered(memory.stats(), stored.stats());
+    }
+    //endregion
+}
@@ -1,16 +1,25 @@
 package com.atomatus.util.cache;
 
+import com.atomatus.util.ArrayHelper;
 import com.atomatus.util.security.SensitiveBytes;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <strong>Cache data container.</strong>
  * <p>
  *     Cache data container to binding data and id on cache control.
  * </p>
+ * <p>
+ *     Content is ciphered by default, for non sensitive data, use {@link Builder#plain()}
+ *     (or {@link CacheControl#dataBuilder()} of a plaintext cache) to skip encryption and read content zero-copy
+ *     by {@link #buffer()} and {@link #stream()}.
+ * </p>
  * @author Carlos Matos {@literal @chcmatos}
  */
 public abstract class CacheData {
@@ -30,6 +39,41 @@ public abstract class CacheData {
          */
         protected transient SensitiveBytes data;
 
+        /**
+         * Time spent encrypting cache data, in nanoseconds.
+         */
+        protected transient long encryptionNanos;
+
+        /**
+         * Cache data max age in milliseconds, zero to use cache control max age.
+         */
+        protected transient long maxAgeInMillis;
+
+        /**
+         * Cache data kept as plaintext (non encrypted).
+         */
+        protected transient boolean plain;
+
+        /**
+         * Plaintext cache data, may be larger than {@link #plainLength}.
+         */
+        protected transient byte[] plainData;
+
+        /**
+         * Plaintext cache data length.
+         */
+        protected transient int plainLength;
+
+        /**
+         * Cache data tags.
+         */
+        protected transient String[] tags;
+
+        /**
+         * Cache data metadata.
+         */
+        protected transient String meta;
+
         /**
          * Cache data hash id.
          * @param id cache data id.
@@ -40,13 +84,63 @@ public abstract class CacheData {
             return this;
         }
 
+        /**
+         * <p>Tag cache data, grouping it (by host, API version...) to be invalidated
+         * together, see {@link CacheControl#invalidate(String)}.</p>
+         * @param tags cache data tags.
+         * @return current builder.
+         */
+        public Builder tag(String... tags) {
+            for(String tag : Objects.requireNonNull(tags)) {
+                Objects.requireNonNull(tag);
+                if(this.tags == null) {
+                    this.tags = new String[] { tag };
+                } else if(!ArrayHelper.contains(this.tags, tag)) {
+                    this.tags = ArrayHelper.add(this.tags, tag);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * <p>Set metadata of this cache data (e.g. content validators), kept alongside it as
+         * plaintext and read by {@link CacheData#meta()} without reading content.</p>
+         * <i>Metadata is kept in memory, cache data revived from directory
+         * (see {@link CacheControl#directory(java.io.File)}) has no metadata.</i>
+         * @param meta metadata, or null.
+         * @return current builder.
+         */
+        public Builder meta(String meta) {
+            this.meta = meta;
+            return this;
+        }
+
+        /**
+         * <p>Set max age of this cache data, overriding cache control max age
+         * (see {@link CacheControl#maxAge(long, TimeUnit)}).</p>
+         * @param maxAge max age time, zero or less to use cache control max age.
+         * @param timeUnit time unit.
+         * @return current builder.
+         */
+        public Builder maxAge(long maxAge, TimeUnit timeUnit) {
+            this.maxAgeInMillis = maxAge > 0L ? timeUnit.toMillis(maxAge) : 0L;
+            return this;
+        }
+
         /**
          * Set cache data.
          * @param data cached data.
          * @return current builder.
          */
         public Builder bytes(byte[] data) {
+            if(plain) {
+                this.plainData = Objects.requireNonNull(data);
+                this.plainLength = data.length;
+                return this;
+            }
+            long start = System.nanoTime();
             this.data = SensitiveBytes.of(data);
+            this.encryptionNanos += System.nanoTime() - start;
             return this;
         }
 
@@ -56,7 +150,12 @@ public abstract class CacheData {
          * @return current builder.
          */
         public Builder text(String data) {
+            if(plain) {
+                return bytes(data.getBytes());
+            }
+            long start = System.nanoTime();
             this.data = SensitiveBytes.of(data);
+            this.encryptionNanos += System.nanoTime() - start;
             return this;
         }
 
@@ -66,9 +165,14 @@ public abstract class CacheData {
          * @return current builder.
          */
         public Builder append(byte[] data) {
+            if(plain) {
+                return appendPlain(Objects.requireNonNull(data));
+            }
+            long start = System.nanoTime();
             this.data = this.data == null ?
                     SensitiveBytes.of(data) :
                     this.data.append(data);
+            this.encryptionNanos += System.nanoTime() - start;
             return this;
         }
 
@@ -78,12 +182,61 @@ public abstract class CacheData {
          * @return current builder.
          */
         public Builder append(String data) {
+            if(plain) {
+                return data == null ? this : appendPlain(data.getBytes());
+            }
+            long start = System.nanoTime();
             this.data = data == null ? this.data :
                     this.data == null ? SensitiveBytes.of(data) :
                      this.data.append(data.getBytes());
+            this.encryptionNanos += System.nanoTime() - start;
+            return this;
+        }
+
+        private Builder appendPlain(byte[] data) {
+            if(plainData == null) {
+                plainData = data;
+            } else {
+                int length = plainLength + data.length;
+                if(length > plainData.length) {
+                    plainData = Arrays.copyOf(plainData, Math.max(length, plainData.length << 1));
+                }
+                System.arraycopy(data, 0, plainData, plainLength, data.length);
+            }
+            plainLength += data.length;
             return this;
         }
 
+        /**
+         * <p>
+         *     Keep cache data as plaintext, skipping encryption, content is
+         *     kept as is (not copied) and read zero-copy by {@link CacheData#buffer()}.
+         * </p>
+         * <i>Warning: use only for non sensitive data, ciphered mode is the default.
+         * Array set by {@link #bytes(byte[])} must not be changed after built.</i>
+         * @return current builder.
+         */
+        public Builder plain() {
+            if(!plain) {
+                plain = true;
+                if(data != null) {
+                    byte[] raw = data.readAll();
+                    plainData = raw;
+                    plainLength = raw.length;
+                    destroy(data);
+                    data = null;
+                    encryptionNanos = 0L;
+                }
+            }
+            return this;
+        }
+
+        private static void destroy(SensitiveBytes data) {
+            try {
+                data.destroy();
+            } catch (Exception ignored) { }
+        }
+
         /**
          * Build a new cache data
          * @return cache data built.
@@ -100,35 +253,132 @@ public abstract class CacheData {
             } finally {
                 this.id = null;
                 this.data = null;
+                this.encryptionNanos = 0L;
+                this.maxAgeInMillis = 0L;
+                this.plain = false;
+                this.plainData = null;
+                this.plainLength = 0;
+                this.tags = null;
+                this.meta = null;
             }
         }
     }
 
     /**
      * Sensitive bytes ciphered stored in memory or disc.
-     * @return sensitive bytes
+     * @return sensitive bytes, or null when cache data is plaintext.
      */
     protected abstract SensitiveBytes data();
 
     /**
-     * Cache data hash id.
+     * Cache data content holder.
+     * @return content holder, or null when not exists.
+     */
+    abstract CachePayload payload();
+
+    /**
+     * Compress content by codec, when not yet compressed, held on heap and
+     * its length reaches threshold; kept uncompressed when codec does not reduce it.
+     * @param codec compression codec.
+     * @param threshold min content length (in bytes) to compress.
+     */
+    abstract void compress(CacheCodec codec, int threshold);
+
+    /**
+     * Codec of compressed content.
+     * @return codec, or null when content is not compressed.
+     */
+    abstract CacheCodec codec();
+
+    /**
+     * Move content to another content holder (off-heap, segment store...).
+     * @param transfer content transfer.
+     * @return true, content moved, otherwise false.
+     * @throws IOException throws when is not possible move content.
+     */
+    abstract boolean transfer(CachePayload.Transfer transfer) throws IOException;
+
+    /**
+     * Cache data tags.
+     * @return tags, empty when not tagged.
+     */
+    abstract String[] tags();
+
+    /**
+     * Check whether cache data is tagged by target tag.
+     * @param tag cache data tag.
+     * @return true, cache data is tagged, otherwise false.
+     */
+    public abstract boolean hasTag(String tag);
+
+    /**
+     * Cache data metadata, see {@link Builder#meta(String)}.
+     * @return metadata, or null when not set (or revived from directory).
+     */
+    public abstract String meta();
+
+    /**
+     * Cache data hash id, hash code of cache data key.
      * @return hash id.
      */
     protected abstract int hash();
 
     /**
-     * Calculate cache data max age to live.
+     * Cache data key, compared by full id (or its digest in compact form).
+     * @return cache data key.
+     */
+    abstract CacheKey key();
+
+    /**
+     * Replace cache data key by an equivalent form (see {@link CacheKey#compact()}).
+     * @param key cache data key.
+     */
+    abstract void key(CacheKey key);
+
+    /**
+     * Time (in millis) when cache data reaches max age to live.
+     * @return expiration time.
+     */
+    abstract long expiresAt();
+
+    /**
+     * Calculate cache data max age to live, when max age was not defined for cache data itself.
      * @param maxAgeInMillis max age in millis.
      * @return current cache data.
      */
     protected abstract CacheData maxAge(long maxAgeInMillis);
 
+    /**
+     * Renew cache data freshness, max age from now and metadata, keeping its content.
+     * @param maxAgeInMillis max age in millis, from now.
+     * @param meta metadata, or null.
+     */
+    abstract void revalidate(long maxAgeInMillis, String meta);
+
+    /**
+     * Time spent encrypting cache data content on build.
+     * @return encryption time in nanoseconds.
+     */
+    abstract long encryptionNanos();
+
+    /**
+     * Bind statistics counters of cache control where cache data was added.
+     * @param stats stats counter.
+     */
+    abstract void stats(CacheStatsCounter stats);
+
     /**
      * Check whether current cache data is expired (reached max age time to live).
      * @return true, current cache data reached max age time to live, otherwise false.
      */
     protected abstract boolean isExpired();
 
+    /**
+     * Cache data content length in bytes.
+     * @return content length, zero when not exists.
+     */
+    public abstract long length();
+
     /**
      * Check whether current cache data contains data and exists on cache control.
      * @return true, exists and contains data, otherwise false.
@@ -147,8 +397,22 @@ public abstract class CacheData {
      */
     public abstract boolean isStored();
 
+    /**
+     * Check whether current cache data content is ciphered (encrypted).
+     * @return true, content is ciphered, otherwise false (plaintext).
+     */
+    public abstract boolean isEncrypted();
+
+    /**
+     * Check whether current cache data content is kept compressed
+     * (see {@link CacheControl#compression(CacheCodec, int)}).
+     * @return true, content is compressed, otherwise false.
+     */
+    public abstract boolean isCompressed();
+
     /**
      * Open a stream to consume cache data, if in stored mode, keeps data in memory only until read.
+     * Compressed content is decompressed lazily while stream is read.
      * @return input stream to consume data.
      * @throws IOException throws when is not possible access data in disc for stored mode.
      */
@@ -168,6 +432,14 @@ public abstract class CacheData {
      */
     public abstract byte[] bytes() throws IOException;
 
+    /**
+     * Read all cached content as read-only buffer, zero-copy for plaintext cache data
+     * (memory mapped for stored mode), otherwise a decrypted (or decompressed) copy.
+     * @return content as read-only buffer.
+     * @throws IOException throws when is not possible access data in disc for stored mode.
+     */
+    public abstract ByteBuffer buffer() throws IOException;
+
     /**
      * Clear cached data.
      */
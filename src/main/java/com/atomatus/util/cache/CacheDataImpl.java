@@ -2,25 +2,85 @@ package com.atomatus.util.cache;
 
 import com.atomatus.util.security.SensitiveBytes;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 final class CacheDataImpl extends CacheData {
 
+    /**
+     * Stored data stream, recording time spent to load data until closed.
+     */
+    private static final class LoadInputStream extends FilterInputStream {
+
+        private final CacheStatsCounter stats;
+        private long nanos;
+        private boolean recorded;
+
+        LoadInputStream(InputStream in, CacheStatsCounter stats) {
+            super(in);
+            this.stats = stats;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read(b, off, len);
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if(!recorded && stats != null) {
+                    recorded = true;
+                    stats.recordLoad(nanos);
+                }
+            }
+        }
+    }
+
     //region fields
     protected static final CacheData empty;
+    private static final String[] untagged;
 
     private final long createdAt;
-    private long limitedAt;
+    private long maxAgeInMillis;
+    private volatile long limitedAt;
     private boolean expired;
-    private int hash;
-    private SensitiveBytes data;
+    private volatile CacheKey key;
+    private long length;
+    private long encryptionNanos;
+    private volatile CachePayload data;
+    private volatile CacheCodec codec;
+    private final String[] tags;
+    private volatile String meta;
+    private CacheStatsCounter stats;
     //endregion
 
     //region constructs
     static {
+        untagged = new String[0];
         empty = new CacheDataImpl();
     }
 
@@ -29,12 +89,39 @@ final class CacheDataImpl extends CacheData {
     }
 
     protected CacheDataImpl(Builder builder) {
-        this.hash   = builder.id.hashCode();
-        this.data   = builder.data;
+        this.key    = CacheKey.of(builder.id);
+        this.maxAgeInMillis = builder.maxAgeInMillis;
+        this.tags   = builder.tags == null ? untagged : builder.tags;
+        this.meta   = builder.meta;
+        if(maxAgeInMillis > 0L) this.limitedAt = createdAt + maxAgeInMillis;
+        this.data   = builder.plain ?
+                new CachePayloadPlain(builder.plainData == null ? new byte[0] : builder.plainData, builder.plainLength) :
+                builder.data == null ? null : new CachePayloadSensitive(builder.data);
+        this.length = data == null ? 0L : data.length();
+        this.encryptionNanos = builder.encryptionNanos;
         new WeakReference<>(data);//to gc if no more refering.
     }
 
-    private CacheDataImpl() { }
+    /**
+     * Constructs cache data revived from persistent segment store.
+     * @param key cache data key.
+     * @param data content revived.
+     */
+    CacheDataImpl(CacheKey key, CachePayloadSegment data) {
+        this.key        = key;
+        this.tags       = untagged;
+        this.meta       = null;
+        this.data       = data;
+        this.codec      = data.codec();
+        this.length     = data.contentLength();
+        this.limitedAt  = data.expiresAt();
+        this.maxAgeInMillis = Math.max(1L, limitedAt - createdAt);
+    }
+
+    private CacheDataImpl() {
+        this.tags = untagged;
+        this.meta = null;
+    }
     //endregion
 
     //region cacheData
@@ -46,47 +133,186 @@ final class CacheDataImpl extends CacheData {
 
     @Override
     protected SensitiveBytes data() {
+        CachePayload payload = data;
+        return payload == null ? null : payload.sensitive();
+    }
+
+    @Override
+    CachePayload payload() {
         return data;
     }
 
+    @Override
+    synchronized void compress(CacheCodec codec, int threshold) {
+        CachePayload payload = data;
+        if(this.codec != null || payload == null || length < Math.max(1, threshold) ||
+                !(payload instanceof CachePayloadSensitive || payload instanceof CachePayloadPlain)) {
+            return;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(length / 2, Integer.MAX_VALUE));
+        try (InputStream in = payload.stream(); OutputStream zip = codec.compress(out)) {
+            byte[] buffer = new byte[8192];
+            for(int read; (read = in.read(buffer)) != -1;) {
+                zip.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            return;//keeps uncompressed.
+        }
+
+        if(out.size() < length) {
+            byte[] compressed = out.toByteArray();
+            this.codec = codec;
+            this.data = payload.isEncrypted() ?
+                    new CachePayloadSensitive(SensitiveBytes.of(compressed)) :
+                    new CachePayloadPlain(compressed, compressed.length);
+            payload.destroy();
+        }
+    }
+
+    @Override
+    CacheCodec codec() {
+        return codec;
+    }
+
+    @Override
+    String[] tags() {
+        return tags;
+    }
+
+    @Override
+    public boolean hasTag(String tag) {
+        for(String t : tags) {
+            if(t.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String meta() {
+        return meta;
+    }
+
     @Override
     protected int hash() {
         requireExists();
-        return hash;
+        return key.hashCode();
+    }
+
+    @Override
+    CacheKey key() {
+        requireExists();
+        return key;
+    }
+
+    @Override
+    void key(CacheKey key) {
+        this.key = key;
+    }
+
+    @Override
+    long expiresAt() {
+        return limitedAt;
+    }
+
+    @Override
+    long encryptionNanos() {
+        return encryptionNanos;
+    }
+
+    @Override
+    void stats(CacheStatsCounter stats) {
+        this.stats = stats;
     }
 
     @Override
     protected CacheData maxAge(long maxAgeInMillis) {
-        limitedAt = createdAt + maxAgeInMillis;
+        limitedAt = createdAt + (this.maxAgeInMillis > 0L ? this.maxAgeInMillis : maxAgeInMillis);
         return this;
     }
 
+    @Override
+    void revalidate(long maxAgeInMillis, String meta) {
+        long now = System.currentTimeMillis();
+        this.meta = meta;
+        this.maxAgeInMillis = Math.max(1L, now + maxAgeInMillis - createdAt);
+        this.limitedAt = createdAt + this.maxAgeInMillis;
+        this.expired = false;
+    }
+
     @Override
     protected boolean isExpired() {
         return expired || (expired = limitedAt < System.currentTimeMillis());
     }
 
+    @Override
+    public long length() {
+        return data == null ? 0L : length;
+    }
+
     @Override
     public boolean exists() {
         return data != null;
     }
 
+    @Override
+    synchronized boolean transfer(CachePayload.Transfer transfer) throws IOException {
+        CachePayload payload = data;
+        CachePayload moved = payload == null ? null : transfer.apply(payload);
+        if(moved != null) {
+            data = moved;
+        }
+        return moved != null;
+    }
+
     @Override
     public boolean isMemory() {
-        return data != null && !data.isStored();
+        CachePayload payload = data;
+        return payload != null && !payload.isStored();
     }
 
     @Override
     public boolean isStored() {
-        return data != null && data.isStored();
+        CachePayload payload = data;
+        return payload != null && payload.isStored();
+    }
+
+    @Override
+    public boolean isEncrypted() {
+        CachePayload payload = data;
+        return payload != null && payload.isEncrypted();
+    }
+
+    @Override
+    public boolean isCompressed() {
+        return data != null && codec != null;
     }
 
     @Override
     public InputStream stream() throws IOException {
         requireExists();
-        return data.isStored() ?
-                data.streamStored() :
-                data.stream();
+        CachePayload payload = data;
+        CacheCodec c = codec;
+        InputStream in = payload.isStored() ?
+                new LoadInputStream(payload.stream(), stats) :
+                payload.stream();
+        return c == null ? in : c.decompress(in);
+    }
+
+    private byte[] decompress(CachePayload payload, CacheCodec c) throws IOException {
+        byte[] content = new byte[(int) length];
+        try (InputStream in = c.decompress(payload.stream())) {
+            int off = 0;
+            for(int read; off < content.length && (read = in.read(content, off, content.length - off)) != -1;) {
+                off += read;
+            }
+            if(off < content.length) {
+                throw new IOException("Cache data compressed content is truncated!");
+            }
+        }
+        return content;
     }
 
     @Override
@@ -97,17 +323,47 @@ final class CacheDataImpl extends CacheData {
     @Override
     public byte[] bytes() throws IOException {
         requireExists();
-        return data.isStored() ? data.peekStored() : data.readAll();
+        CachePayload payload = data;
+        CacheCodec c = codec;
+        if(payload.isStored()) {
+            long start = System.nanoTime();
+            try {
+                return c == null ? payload.bytes() : decompress(payload, c);
+            } finally {
+                if(stats != null) stats.recordLoad(System.nanoTime() - start);
+            }
+        }
+        return c == null ? payload.bytes() : decompress(payload, c);
+    }
+
+    @Override
+    public ByteBuffer buffer() throws IOException {
+        requireExists();
+        if(codec != null) {
+            return ByteBuffer.wrap(bytes()).asReadOnlyBuffer();
+        }
+        CachePayload payload = data;
+        if(payload.isStored()) {
+            long start = System.nanoTime();
+            try {
+                return payload.buffer();
+            } finally {
+                if(stats != null) stats.recordLoad(System.nanoTime() - start);
+            }
+        }
+        return payload.buffer();
     }
 
     @Override
-    protected void clear() {
+    protected synchronized void clear() {
         try {
             if(data != null) data.destroy();
-        } catch (Exception ignored) { }
-        finally {
+        } finally {
             data = null;
-            hash = 0;
+            codec = null;
+            stats = null;
+            key = null;
+            length = 0L;
         }
     }
     //endregion
@@ -122,12 +378,13 @@ final class CacheDataImpl extends CacheData {
         }
 
         CacheDataImpl cacheData = (CacheDataImpl) o;
-        return hash == cacheData.hash && Objects.equals(data, cacheData.data);
+        return Objects.equals(key, cacheData.key) && Objects.equals(data, cacheData.data);
     }
 
     @Override
     public int hashCode() {
-        return hash;
+        CacheKey k = key;
+        return k == null ? 0 : k.hashCode();
     }
     //endregion
 }
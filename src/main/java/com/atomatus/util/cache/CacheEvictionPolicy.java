@@ -0,0 +1,241 @@
+package com.atomatus.util.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ *     Size-bounded eviction policy for cache control, W-TinyLFU approach.
+ * </p>
+ * <p>
+ *     New cache data keys are kept in a small LRU admission window (1% of capacity),
+ *     when window is full, the oldest candidate is moved to main space, a segmented LRU
+ *     (probation and protected, 80% of main space) where keys requested again are promoted
+ *     to protected segment. When capacity is exceeded, candidate and probation victim
+ *     are compared by their estimated frequency ({@link CacheFrequencySketch}),
+ *     keeping the most popular, so hit ratio holds up under skewed popularity.
+ * </p>
+ * <i>Keys weight is the cache data length in bytes.</i>
+ */
+final class CacheEvictionPolicy {
+
+    private final LinkedHashMap<Object, Long> window;
+    private final LinkedHashMap<Object, Long> probation;
+    private final LinkedHashMap<Object, Long> protectedSegment;
+    private final CacheFrequencySketch sketch;
+    private final ReentrantLock lock;
+
+    private volatile long maximumSize;
+    private volatile long maximumWeight;
+    private long weightedSize;
+
+    /**
+     * Last key moved from admission window to probation segment.
+     */
+    private Object candidate;
+
+    CacheEvictionPolicy() {
+        this.window             = new LinkedHashMap<>();
+        this.probation          = new LinkedHashMap<>();
+        this.protectedSegment   = new LinkedHashMap<>();
+        this.sketch             = new CacheFrequencySketch(16L);
+        this.lock               = new ReentrantLock();
+    }
+
+    //region state
+    /**
+     * Check whether any maximum bound was defined.
+     * @return true, policy is bounded by size or weight, otherwise false.
+     */
+    boolean isBounded() {
+        return maximumSize > 0L || maximumWeight > 0L;
+    }
+
+    /**
+     * Lock to change policy and cache state atomically.
+     * @return policy lock.
+     */
+    ReentrantLock lock() {
+        return lock;
+    }
+
+    /**
+     * Count of keys tracked.
+     * @return keys count.
+     */
+    long size() {
+        return window.size() + probation.size() + protectedSegment.size();
+    }
+
+    /**
+     * Sum of all keys weight tracked.
+     * @return weighted size in bytes.
+     */
+    long weightedSize() {
+        return weightedSize;
+    }
+
+    private long capacity() {
+        return maximumSize > 0L ? maximumSize : Math.max(size(), 100L);
+    }
+
+    private long windowMaximum() {
+        return Math.max(1L, capacity() / 100L);
+    }
+
+    private long protectedMaximum() {
+        return (capacity() - windowMaximum()) * 80L / 100L;
+    }
+
+    private boolean isOverBounds() {
+        return (maximumSize > 0L && size() > maximumSize) ||
+                (maximumWeight > 0L && weightedSize > maximumWeight);
+    }
+    //endregion
+
+    //region update
+    /**
+     * Update maximum bounds, must be called holding {@link #lock()}.
+     * @param maximumSize maximum keys count, zero or less to unbounded.
+     * @param maximumWeight maximum weight in bytes, zero or less to unbounded.
+     * @return keys evicted to respect new bounds.
+     */
+    List<Object> bounds(long maximumSize, long maximumWeight) {
+        this.maximumSize = maximumSize;
+        this.maximumWeight = maximumWeight;
+        this.sketch.ensureCapacity(capacity());
+        return evict();
+    }
+
+    /**
+     * Record key access, lossy: when policy is busy by another thread,
+     * access is not recorded, keeping reads non blocking.
+     * @param key cache data key.
+     */
+    void recordAccess(Object key) {
+        if(lock.tryLock()) {
+            try {
+                sketch.increment(key);
+                touch(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Record key added or updated, must be called holding {@link #lock()}.
+     * @param key cache data key.
+     * @param weight cache data weight.
+     * @return keys evicted to respect bounds, may contains added key itself.
+     */
+    List<Object> recordAdd(Object key, long weight) {
+        sketch.increment(key);
+        Long old = window.containsKey(key) ? window.put(key, weight) :
+                probation.containsKey(key) ? probation.put(key, weight) :
+                protectedSegment.containsKey(key) ? protectedSegment.put(key, weight) : null;
+
+        if(old != null) {
+            weightedSize += weight - old;
+            touch(key);
+        } else {
+            window.put(key, weight);
+            weightedSize += weight;
+            sketch.ensureCapacity(size());
+        }
+
+        balanceWindow();
+        return evict();
+    }
+
+    /**
+     * Record key removed, must be called holding {@link #lock()}.
+     * @param key cache data key.
+     */
+    void recordRemove(Object key) {
+        Long weight = window.remove(key);
+        if(weight == null) weight = probation.remove(key);
+        if(weight == null) weight = protectedSegment.remove(key);
+        if(weight != null) weightedSize -= weight;
+    }
+
+    /**
+     * Forget all keys, must be called holding {@link #lock()}.
+     */
+    void clear() {
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+        weightedSize = 0L;
+    }
+    //endregion
+
+    //region segments
+    private static void moveToTail(Map<Object, Long> segment, Object key) {
+        segment.put(key, segment.remove(key));
+    }
+
+    private static <K> K head(Map<K, Long> segment) {
+        return segment.keySet().iterator().next();
+    }
+
+    private void touch(Object key) {
+        if(window.containsKey(key)) {
+            moveToTail(window, key);
+        } else if(protectedSegment.containsKey(key)) {
+            moveToTail(protectedSegment, key);
+        } else if(probation.containsKey(key)) {
+            protectedSegment.put(key, probation.remove(key));
+            long max = protectedMaximum();
+            while (protectedSegment.size() > max) {
+                Object demoted = head(protectedSegment);
+                probation.put(demoted, protectedSegment.remove(demoted));
+            }
+        }
+    }
+
+    private void balanceWindow() {
+        long max = windowMaximum();
+        while (window.size() > max) {
+            Object key = head(window);
+            probation.put(key, window.remove(key));
+            candidate = key;
+        }
+    }
+
+    private Object selectVictim() {
+        if(!probation.isEmpty()) {
+            Object victim = head(probation);
+            if(candidate == null || candidate.equals(victim) || !probation.containsKey(candidate)) {
+                return victim;
+            }
+            //admission: keep the most frequently requested.
+            return sketch.frequency(candidate) > sketch.frequency(victim) ? victim : candidate;
+        } else if(!protectedSegment.isEmpty()) {
+            return head(protectedSegment);
+        } else if(!window.isEmpty()) {
+            return head(window);
+        }
+        return null;
+    }
+
+    private List<Object> evict() {
+        if(!isOverBounds()) {
+            return Collections.emptyList();
+        }
+
+        List<Object> victims = new ArrayList<>();
+        Object victim;
+        while (isOverBounds() && (victim = selectVictim()) != null) {
+            recordRemove(victim);
+            if(victim.equals(candidate)) candidate = null;
+            victims.add(victim);
+        }
+        return victims;
+    }
+    //endregion
+}
@@ -0,0 +1,101 @@
+package com.atomatus.util.cache;
+
+/**
+ * <p>
+ *     Count-Min sketch of 4-bit counters estimating how often
+ *     a cache data key was requested recently (TinyLFU).
+ * </p>
+ * <p>
+ *     Each counter saturates at 15 and all counters are halved when
+ *     sample size is reached, so old popularity fades away over time.
+ * </p>
+ */
+final class CacheFrequencySketch {
+
+    private static final int DEPTH;
+    private static final int MAX_COUNT;
+    private static final int[] SEEDS;
+
+    private byte[] table;
+    private int mask;
+    private int sampleSize;
+    private int additions;
+
+    static {
+        DEPTH       = 4;
+        MAX_COUNT   = 15;
+        SEEDS       = new int[] { 0x97cb3127, 0xb7f9b4c9, 0x6a09e667, 0xbb67ae85 };
+    }
+
+    CacheFrequencySketch(long expectedSize) {
+        ensureCapacity(expectedSize);
+    }
+
+    /**
+     * Resize sketch to keep estimates accurate for expected entries count.
+     * @param expectedSize expected entries count.
+     */
+    void ensureCapacity(long expectedSize) {
+        int size = tableSizeFor((int) Math.min(Math.max(expectedSize, 16L), 1 << 24));
+        if(table == null || table.length < size) {
+            table       = new byte[size];
+            mask        = size - 1;
+            sampleSize  = size * 10;
+            additions   = 0;
+        }
+    }
+
+    private static int tableSizeFor(int n) {
+        int size = Integer.highestOneBit(n - 1) << 1;
+        return size <= 0 ? 1 << 24 : size;
+    }
+
+    private static int spread(int hash, int seed) {
+        int h = (hash ^ seed) * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Estimate access frequency of key.
+     * @param key cache data key.
+     * @return estimated frequency (0 until 15).
+     */
+    int frequency(Object key) {
+        int hash = key.hashCode();
+        int min = MAX_COUNT;
+        for(int i=0; i < DEPTH; i++) {
+            min = Math.min(min, table[spread(hash, SEEDS[i]) & mask]);
+        }
+        return min;
+    }
+
+    /**
+     * Increment access frequency of key.
+     * @param key cache data key.
+     */
+    void increment(Object key) {
+        int hash = key.hashCode();
+        boolean added = false;
+        for(int i=0; i < DEPTH; i++) {
+            int index = spread(hash, SEEDS[i]) & mask;
+            if(table[index] < MAX_COUNT) {
+                table[index]++;
+                added = true;
+            }
+        }
+
+        if(added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Aging, halve all counters.
+     */
+    private void reset() {
+        for(int i=0, l = table.length; i < l; i++) {
+            table[i] >>>= 1;
+        }
+        additions >>>= 1;
+    }
+}
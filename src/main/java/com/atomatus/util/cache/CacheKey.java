@@ -0,0 +1,184 @@
+package com.atomatus.util.cache;
+
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+/**
+ * <p>
+ *     Cache data key, compared by full id equality instead of id hash code only,
+ *     so distinct ids with the same hash code never share cache data.
+ * </p>
+ * <p>
+ *     Ids of stable types (char sequences, URL, URI, numbers, booleans, characters, UUID
+ *     and enums) are compared by their canonical text encoding (URL is never resolved),
+ *     other ids are compared by {@link Object#equals(Object)}. Compact form keeps only
+ *     a 128-bit digest (MD5) of canonical encoding, reducing memory for long ids.
+ * </p>
+ */
+final class CacheKey {
+
+    private static final char TEXT      = 's';
+    private static final char LOCATION  = 'u';
+    private static final char VALUE     = 'v';
+    private static final char OBJECT    = 'o';
+    private static final char DIGEST    = 'd';
+    private static final ThreadLocal<MessageDigest> md5;
+
+    static {
+        md5 = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private final char type;
+    private final Object value;
+    private final long high;
+    private final long low;
+    private final int hash;
+
+    private CacheKey(char type, Object value) {
+        this.type   = type;
+        this.value  = value;
+        this.high   = 0L;
+        this.low    = 0L;
+        this.hash   = 31 * type + value.hashCode();
+    }
+
+    private CacheKey(long high, long low) {
+        this.type   = DIGEST;
+        this.value  = null;
+        this.high   = high;
+        this.low    = low;
+        this.hash   = (int) (high ^ (high >>> 32));
+    }
+
+    //region factory
+    /**
+     * Cache data key compared by full id.
+     * @param id cache data id.
+     * @return cache data key.
+     */
+    static CacheKey of(Object id) {
+        if(id instanceof CacheKey) {
+            return (CacheKey) id;
+        } else if(id instanceof String) {
+            return new CacheKey(TEXT, id);
+        } else if(id instanceof CharSequence) {
+            return new CacheKey(TEXT, id.toString());
+        } else if(id instanceof URL) {
+            return new CacheKey(LOCATION, ((URL) id).toExternalForm());
+        } else if(id instanceof URI) {
+            return new CacheKey(LOCATION, id.toString());
+        } else if(id instanceof Enum) {
+            return new CacheKey(VALUE, id.getClass().getName() + ':' + ((Enum<?>) id).name());
+        } else if(id instanceof Number || id instanceof Boolean ||
+                id instanceof Character || id instanceof UUID) {
+            return new CacheKey(VALUE, id.getClass().getName() + ':' + id);
+        }
+        return new CacheKey(OBJECT, id);
+    }
+
+    /**
+     * Cache data key, in compact form when requested and id has a canonical encoding.
+     * @param id cache data id.
+     * @param compact true, compact form (128-bit digest), otherwise compared by full id.
+     * @return cache data key.
+     */
+    static CacheKey of(Object id, boolean compact) {
+        CacheKey key = of(id);
+        return compact ? key.compact() : key;
+    }
+
+    /**
+     * Canonical encoding of cache data id, stable between application restarts.
+     * @param id cache data id.
+     * @return canonical encoding, or null when id type has not a stable form.
+     */
+    static String canonical(Object id) {
+        return of(id).canonical();
+    }
+    //endregion
+
+    //region forms
+    /**
+     * Canonical encoding of current key, stable between application restarts.
+     * @return canonical encoding, or null when id type has not a stable form.
+     */
+    String canonical() {
+        switch (type) {
+            case TEXT:
+            case LOCATION:
+                return type + ":" + value;
+            case VALUE:
+                return (String) value;
+            case DIGEST:
+                return String.format("d:%016x%016x", high, low);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Check whether current key is compact form.
+     * @return true, is compact form, otherwise false.
+     */
+    boolean isCompact() {
+        return type == DIGEST;
+    }
+
+    /**
+     * Compact form of current key, 128-bit digest of canonical encoding.
+     * @return compact key, or current key when is already compact or has not canonical encoding.
+     */
+    CacheKey compact() {
+        String canonical = type == DIGEST ? null : canonical();
+        if(canonical == null) {
+            return this;
+        }
+
+        MessageDigest digest = md5.get();
+        byte[] d = digest.digest(canonical.getBytes(StandardCharsets.UTF_8));
+        long high = 0L, low = 0L;
+        for(int i=0; i < 8; i++) {
+            high = (high << 8) | (d[i] & 0xFF);
+            low = (low << 8) | (d[i + 8] & 0xFF);
+        }
+        return new CacheKey(high, low);
+    }
+    //endregion
+
+    //region equals
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        } else if (!(o instanceof CacheKey)) {
+            return false;
+        }
+
+        CacheKey other = (CacheKey) o;
+        return type == other.type && hash == other.hash && (type == DIGEST ?
+                high == other.high && low == other.low :
+                value.equals(other.value));
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        String canonical = canonical();
+        return canonical == null ? String.valueOf(value) : canonical;
+    }
+    //endregion
+}
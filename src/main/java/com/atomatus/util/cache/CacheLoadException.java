@@ -0,0 +1,32 @@
+package com.atomatus.util.cache;
+
+/**
+ * Exception for cache data loading, thrown when {@link CacheLoader} fails.
+ */
+public class CacheLoadException extends RuntimeException {
+
+    /**
+     * Constructs a cache load exception with message error.
+     * @param msg message error.
+     */
+    public CacheLoadException(String msg) {
+        super(msg);
+    }
+
+    /**
+     * Constructs a cache load exception with inner exception.
+     * @param t inner exception.
+     */
+    public CacheLoadException(Throwable t) {
+        super(t);
+    }
+
+    /**
+     * Constructs a cache load exception with message error and inner exception.
+     * @param msg message error.
+     * @param t inner exception.
+     */
+    public CacheLoadException(String msg, Throwable t) {
+        super(msg, t);
+    }
+}
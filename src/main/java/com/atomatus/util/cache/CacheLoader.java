@@ -0,0 +1,27 @@
+package com.atomatus.util.cache;
+
+/**
+ * <strong>Cache loader</strong>
+ * <p>
+ *     Load cache data when it is not found (or expired) on cache control,
+ *     see {@link CacheControl#get(Object, CacheLoader)}.
+ * </p>
+ * <code>
+ *     CacheData data = CacheControl.memory().get(url, key -&gt; new CacheData.Builder()<br>
+ *          .id(key)<br>
+ *          .bytes(download(url))<br>
+ *          .build());
+ * </code>
+ * @author Carlos Matos {@literal @chcmatos}
+ */
+@FunctionalInterface
+public interface CacheLoader {
+
+    /**
+     * Load cache data for target id.
+     * @param hash cache data id requested.
+     * @return cache data built with requested id, or null when there is no data to be cached.
+     * @throws Exception throws when is not possible load data.
+     */
+    CacheData load(Object hash) throws Exception;
+}
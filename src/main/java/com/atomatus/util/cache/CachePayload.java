@@ -0,0 +1,87 @@
+package com.atomatus.util.cache;
+
+import com.atomatus.util.security.SensitiveBytes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Cache data content holder, defining how content is kept (encrypted or plaintext)
+ * and where (memory or stored on disc).
+ */
+abstract class CachePayload {
+
+    /**
+     * Move content from a content holder to another.
+     */
+    @FunctionalInterface
+    interface Transfer {
+
+        /**
+         * Move source content, destroying source when moved.
+         * @param source source content.
+         * @return new content holder, or null when not moved.
+         * @throws IOException throws when is not possible move content.
+         */
+        CachePayload apply(CachePayload source) throws IOException;
+    }
+
+    /**
+     * Content length in bytes.
+     * @return content length.
+     */
+    abstract long length();
+
+    /**
+     * Check whether content is kept encrypted.
+     * @return true, content is encrypted, otherwise false.
+     */
+    abstract boolean isEncrypted();
+
+    /**
+     * Check whether content is stored on disc, releasing memory.
+     * @return true, content is stored, otherwise false.
+     */
+    abstract boolean isStored();
+
+    /**
+     * Store content on disc, releasing memory.
+     * @throws IOException throws when is not possible store content.
+     */
+    abstract void store() throws IOException;
+
+    /**
+     * Open a stream to read content.
+     * @return content stream.
+     * @throws IOException throws when is not possible read stored content.
+     */
+    abstract InputStream stream() throws IOException;
+
+    /**
+     * Read all content as a new byte array.
+     * @return content copy.
+     * @throws IOException throws when is not possible read stored content.
+     */
+    abstract byte[] bytes() throws IOException;
+
+    /**
+     * Read all content as read-only buffer.
+     * @return content buffer.
+     * @throws IOException throws when is not possible read stored content.
+     */
+    abstract ByteBuffer buffer() throws IOException;
+
+    /**
+     * Release content from memory and disc.
+     */
+    abstract void destroy();
+
+    /**
+     * Sensitive bytes holding encrypted content.
+     * @return sensitive bytes, or null when content is not encrypted.
+     */
+    SensitiveBytes sensitive() {
+        return null;
+    }
+}
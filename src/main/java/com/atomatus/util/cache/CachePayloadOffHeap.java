@@ -0,0 +1,170 @@
+package com.atomatus.util.cache;
+
+import com.atomatus.util.security.Encryptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ *     Cache data content kept off-heap on slab blocks of {@link CacheSlabAllocator},
+ *     only content header remains on heap.
+ * </p>
+ * <p>
+ *     Ciphered content is kept encrypted off-heap by allocator encryptor,
+ *     plaintext content is read by stream directly from blocks.
+ * </p>
+ */
+final class CachePayloadOffHeap extends CachePayload {
+
+    /**
+     * Stream reading plaintext content directly from off-heap blocks.
+     */
+    private final class BlockInputStream extends InputStream {
+
+        private long position;
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(position >= length) {
+                return -1;
+            }
+            int count = (int) Math.min(len, length - position);
+            readBlocks(position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            long count = Math.max(0L, Math.min(n, length - position));
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, length - position);
+        }
+    }
+
+    private final CacheSlabAllocator allocator;
+    private final int[] blocks;
+    private final int length;
+    private final int storedLength;
+    private final boolean encrypted;
+    private final AtomicBoolean released;
+
+    private CachePayloadOffHeap(CacheSlabAllocator allocator, int[] blocks,
+                                int length, int storedLength, boolean encrypted) {
+        this.allocator      = allocator;
+        this.blocks         = blocks;
+        this.length         = length;
+        this.storedLength   = storedLength;
+        this.encrypted      = encrypted;
+        this.released       = new AtomicBoolean();
+    }
+
+    /**
+     * Move content to off-heap.
+     * @param allocator slab allocator.
+     * @param source content to be moved, destroyed on success.
+     * @return content off-heap, or null when already off-heap, stored or off-heap budget was reached.
+     * @throws IOException throws when is not possible read source content.
+     */
+    static CachePayloadOffHeap of(CacheSlabAllocator allocator, CachePayload source) throws IOException {
+        if(source instanceof CachePayloadOffHeap || source.isStored()) {
+            return null;
+        }
+
+        byte[] content = source.bytes();
+        boolean encrypted = source.isEncrypted();
+        if(encrypted) {
+            Encryptor encryptor = allocator.encryptor();
+            synchronized (encryptor) {
+                content = encryptor.encrypt(content);
+            }
+        }
+
+        int[] blocks = allocator.allocate(content.length);
+        if(blocks == null) {
+            return null;
+        }
+
+        allocator.write(blocks, content, content.length);
+        CachePayloadOffHeap payload = new CachePayloadOffHeap(allocator, blocks,
+                (int) source.length(), content.length, encrypted);
+        source.destroy();
+        return payload;
+    }
+
+    private void readBlocks(long position, byte[] dst, int off, int len) throws IOException {
+        if(released.get()) {
+            throw new IOException("Cache data content was released!");
+        }
+        allocator.read(blocks, position, dst, off, len);
+        if(released.get()) {
+            //blocks may be reused by other content while reading.
+            throw new IOException("Cache data content was released!");
+        }
+    }
+
+    @Override
+    long length() {
+        return length;
+    }
+
+    @Override
+    boolean isEncrypted() {
+        return encrypted;
+    }
+
+    @Override
+    boolean isStored() {
+        return false;
+    }
+
+    @Override
+    void store() {
+        throw new UnsupportedOperationException("Off-heap content can not be stored!");
+    }
+
+    @Override
+    InputStream stream() throws IOException {
+        return encrypted ? new ByteArrayInputStream(bytes()) : new BlockInputStream();
+    }
+
+    @Override
+    byte[] bytes() throws IOException {
+        byte[] content = new byte[storedLength];
+        readBlocks(0L, content, 0, storedLength);
+        if(encrypted) {
+            Encryptor encryptor = allocator.encryptor();
+            synchronized (encryptor) {
+                content = encryptor.decrypt(content);
+            }
+        }
+        return content;
+    }
+
+    @Override
+    ByteBuffer buffer() throws IOException {
+        return ByteBuffer.wrap(bytes()).asReadOnlyBuffer();
+    }
+
+    @Override
+    void destroy() {
+        if(released.compareAndSet(false, true)) {
+            allocator.release(blocks);
+        }
+    }
+}
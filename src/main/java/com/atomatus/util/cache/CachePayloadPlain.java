@@ -0,0 +1,115 @@
+package com.atomatus.util.cache;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     Cache data content kept as plaintext (non encrypted), for non sensitive data.
+ * </p>
+ * <p>
+ *     Content is never copied to be read by {@link #stream()} or {@link #buffer()}
+ *     (zero-copy), when stored on disc, buffer is memory mapped from temp file.
+ * </p>
+ */
+final class CachePayloadPlain extends CachePayload {
+
+    private static final String FILE_PREFIX = "~cache";
+
+    private volatile byte[] data;
+    private volatile File file;
+    private final int length;
+
+    CachePayloadPlain(byte[] data, int length) {
+        this.data = data;
+        this.length = length;
+    }
+
+    @Override
+    long length() {
+        return length;
+    }
+
+    @Override
+    boolean isEncrypted() {
+        return false;
+    }
+
+    @Override
+    boolean isStored() {
+        return file != null;
+    }
+
+    private byte[] requireData() throws IOException {
+        byte[] arr = data;
+        if(arr == null) {
+            throw new IOException("Cache data content was released!");
+        }
+        return arr;
+    }
+
+    private File requireFile() throws IOException {
+        File f = file;
+        if(f == null || !f.exists()) {
+            throw new IOException("Cache data content was released!");
+        }
+        return f;
+    }
+
+    @Override
+    synchronized void store() throws IOException {
+        if(file == null) {
+            File f = File.createTempFile(FILE_PREFIX, ".tmp");
+            f.deleteOnExit();
+            try (FileOutputStream fos = new FileOutputStream(f)) {
+                fos.write(requireData(), 0, length);
+            }
+            file = f;
+            data = null;
+        }
+    }
+
+    @Override
+    InputStream stream() throws IOException {
+        return file != null ?
+                new BufferedInputStream(new FileInputStream(requireFile())) :
+                new ByteArrayInputStream(requireData(), 0, length);
+    }
+
+    @Override
+    byte[] bytes() throws IOException {
+        return file != null ?
+                Files.readAllBytes(requireFile().toPath()) :
+                Arrays.copyOf(requireData(), length);
+    }
+
+    @Override
+    ByteBuffer buffer() throws IOException {
+        if(file != null) {
+            try (FileChannel channel = FileChannel.open(requireFile().toPath(), StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            }
+        }
+        return ByteBuffer.wrap(requireData(), 0, length).slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    synchronized void destroy() {
+        data = null;
+        if(file != null) {
+            file.delete();
+            file = null;
+        }
+    }
+}
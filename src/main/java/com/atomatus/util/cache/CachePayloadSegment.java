@@ -0,0 +1,198 @@
+package com.atomatus.util.cache;
+
+import com.atomatus.util.security.Encryptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Cache data content stored on {@link CacheSegmentStore} segment files.
+ */
+final class CachePayloadSegment extends CachePayload {
+
+    /**
+     * Stream reading content directly from mapped segment slice.
+     */
+    private static final class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if(!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0L, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    private final CacheSegmentStore store;
+    private final long length;
+    private final boolean encrypted;
+    private final String key;
+    private final long expiresAt;
+    private final CacheCodec codec;
+    private final long contentLength;
+    private volatile CacheSegmentStore.Location location;
+
+    CachePayloadSegment(CacheSegmentStore store, long length, boolean encrypted, String key, long expiresAt) {
+        this(store, length, encrypted, key, expiresAt, null, length);
+    }
+
+    CachePayloadSegment(CacheSegmentStore store, long length, boolean encrypted, String key, long expiresAt,
+                        CacheCodec codec, long contentLength) {
+        this.store          = store;
+        this.length         = length;
+        this.encrypted      = encrypted;
+        this.key            = key;
+        this.expiresAt      = expiresAt;
+        this.codec          = codec;
+        this.contentLength  = contentLength;
+    }
+
+    /**
+     * Cache data key recorded on store index.
+     * @return key, or null when not recorded (not persistent).
+     */
+    String key() {
+        return key;
+    }
+
+    /**
+     * Time (in millis) when content expires.
+     * @return expiration time.
+     */
+    long expiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Codec of compressed content, recorded on store index.
+     * @return codec, or null when content is not compressed.
+     */
+    CacheCodec codec() {
+        return codec;
+    }
+
+    /**
+     * Content length in bytes once decompressed.
+     * @return content length, same of {@link #length()} when not compressed.
+     */
+    long contentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Set content location once written.
+     * @param location content location.
+     */
+    void locate(CacheSegmentStore.Location location) {
+        this.location = location;
+    }
+
+    private CacheSegmentStore.Location requireLocation() throws IOException {
+        CacheSegmentStore.Location loc = location;
+        if(loc == null) {
+            throw new IOException("Cache data content was released!");
+        }
+        return loc;
+    }
+
+    /**
+     * Copy content from segment to active segment of store.
+     * @param segment segment being compacted.
+     * @throws IOException throws when is not possible write content.
+     */
+    synchronized void relocate(CacheSegmentStore.Segment segment) throws IOException {
+        CacheSegmentStore.Location loc = location;
+        if(loc != null && loc.segment == segment) {
+            ByteBuffer slice = loc.slice();
+            byte[] content = new byte[slice.remaining()];
+            slice.get(content);
+            CacheSegmentStore.Location moved = store.append(content, this);
+            location = moved;
+            store.record(this, moved);
+            store.release(this, loc, false);
+        }
+    }
+
+    @Override
+    long length() {
+        return length;
+    }
+
+    @Override
+    boolean isEncrypted() {
+        return encrypted;
+    }
+
+    @Override
+    boolean isStored() {
+        return true;
+    }
+
+    @Override
+    void store() { }
+
+    @Override
+    InputStream stream() throws IOException {
+        return encrypted ?
+                new ByteArrayInputStream(bytes()) :
+                new BufferInputStream(requireLocation().slice());
+    }
+
+    @Override
+    byte[] bytes() throws IOException {
+        ByteBuffer slice = requireLocation().slice();
+        byte[] content = new byte[slice.remaining()];
+        slice.get(content);
+        if(encrypted) {
+            Encryptor encryptor = store.encryptor();
+            synchronized (encryptor) {
+                content = encryptor.decrypt(content);
+            }
+        }
+        return content;
+    }
+
+    @Override
+    ByteBuffer buffer() throws IOException {
+        return encrypted ?
+                ByteBuffer.wrap(bytes()).asReadOnlyBuffer() :
+                requireLocation().slice();
+    }
+
+    @Override
+    synchronized void destroy() {
+        CacheSegmentStore.Location loc = location;
+        if(loc != null) {
+            location = null;
+            store.release(this, loc, true);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.atomatus.util.cache;
+
+import com.atomatus.util.security.SensitiveBytes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Cache data content encrypted by {@link SensitiveBytes} (3DES).
+ */
+final class CachePayloadSensitive extends CachePayload {
+
+    private final SensitiveBytes data;
+    private final long length;
+
+    CachePayloadSensitive(SensitiveBytes data) {
+        this.data = data;
+        this.length = data.length();
+    }
+
+    @Override
+    long length() {
+        return length;
+    }
+
+    @Override
+    boolean isEncrypted() {
+        return true;
+    }
+
+    @Override
+    boolean isStored() {
+        return data.isStored();
+    }
+
+    @Override
+    void store() throws IOException {
+        data.store();
+    }
+
+    @Override
+    InputStream stream() {
+        return data.isStored() ? data.streamStored() : data.stream();
+    }
+
+    @Override
+    byte[] bytes() throws IOException {
+        return data.isStored() ? data.peekStored() : data.readAll();
+    }
+
+    @Override
+    ByteBuffer buffer() throws IOException {
+        return ByteBuffer.wrap(bytes()).asReadOnlyBuffer();
+    }
+
+    @Override
+    void destroy() {
+        try {
+            data.destroy();
+        } catch (Exception ignored) { }
+    }
+
+    @Override
+    SensitiveBytes sensitive() {
+        return data;
+    }
+}
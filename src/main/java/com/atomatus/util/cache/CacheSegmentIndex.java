@@ -0,0 +1,216 @@
+package com.atomatus.util.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ *     Durable index of persistent segment store, an append-only log file of
+ *     added (key, expiry, segment, offset, length, checksum and compression codec) and removed keys.
+ * </p>
+ * <p>
+ *     On open, index file is memory mapped and replayed (last record of each key wins),
+ *     then rewritten only with live records. A truncated last record (process killed
+ *     while writing) is ignored.
+ * </p>
+ */
+final class CacheSegmentIndex {
+
+    private static final String FILE_NAME;
+    private static final byte OP_ADD;
+    private static final byte OP_REMOVE;
+    private static final byte OP_ADD_COMPRESSED;
+
+    static {
+        FILE_NAME           = "index.dat";
+        OP_ADD              = 1;
+        OP_REMOVE           = 2;
+        OP_ADD_COMPRESSED   = 3;
+    }
+
+    /**
+     * Index record of content stored.
+     */
+    static final class Record {
+
+        final String key;
+        final long expiresAt;
+        final int segment;
+        final int offset;
+        final int length;
+        final long checksum;
+        final byte codec;
+        final long contentLength;
+
+        Record(String key, long expiresAt, int segment, int offset, int length, long checksum) {
+            this(key, expiresAt, segment, offset, length, checksum, (byte) 0, length);
+        }
+
+        Record(String key, long expiresAt, int segment, int offset, int length, long checksum,
+               byte codec, long contentLength) {
+            this.key            = key;
+            this.expiresAt      = expiresAt;
+            this.segment        = segment;
+            this.offset         = offset;
+            this.length         = length;
+            this.checksum       = checksum;
+            this.codec          = codec;
+            this.contentLength  = contentLength;
+        }
+
+        boolean isExpired() {
+            return expiresAt < System.currentTimeMillis();
+        }
+    }
+
+    private final File file;
+    private FileChannel channel;
+
+    CacheSegmentIndex(File directory) {
+        this.file = new File(directory, FILE_NAME);
+    }
+
+    //region load
+    /**
+     * Replay index file and rewrite it only with live (non expired) records.
+     * @return live records by key.
+     * @throws IOException throws when is not possible read or write index file.
+     */
+    synchronized Map<String, Record> open() throws IOException {
+        Map<String, Record> records = new LinkedHashMap<>();
+        if(file.exists() && file.length() > 0L) {
+            try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                replay(in.map(FileChannel.MapMode.READ_ONLY, 0L, in.size()), records);
+            }
+        }
+        records.values().removeIf(Record::isExpired);
+        rewrite(records.values());
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return records;
+    }
+
+    private static void replay(ByteBuffer buffer, Map<String, Record> records) {
+        try {
+            while (buffer.hasRemaining()) {
+                byte op = buffer.get();
+                if(op == OP_ADD || op == OP_ADD_COMPRESSED) {
+                    byte codec = op == OP_ADD ? 0 : buffer.get();
+                    long contentLength = op == OP_ADD ? -1L : buffer.getLong();
+                    long expiresAt = buffer.getLong();
+                    int segment = buffer.getInt();
+                    int offset = buffer.getInt();
+                    int length = buffer.getInt();
+                    long checksum = buffer.getLong();
+                    String key = key(buffer);
+                    if(key == null) break;
+                    records.put(key, new Record(key, expiresAt, segment, offset, length, checksum,
+                            codec, contentLength < 0L ? length : contentLength));
+                } else if(op == OP_REMOVE) {
+                    String key = key(buffer);
+                    if(key == null) break;
+                    records.remove(key);
+                } else {
+                    break;//corrupted.
+                }
+            }
+        } catch (BufferUnderflowException ignored) {
+            //truncated last record.
+        }
+    }
+
+    private static String key(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if(length < 0 || length > buffer.remaining()) {
+            return null;
+        }
+        byte[] key = new byte[length];
+        buffer.get(key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    private void rewrite(Collection<Record> records) throws IOException {
+        File tmp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for(Record record : records) {
+                out.write(ByteBuffer.wrap(encode(record)));
+            }
+            out.force(true);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    //endregion
+
+    //region write
+    private static byte[] encode(Record record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if(record.codec == 0) {
+                out.writeByte(OP_ADD);
+            } else {
+                out.writeByte(OP_ADD_COMPRESSED);
+                out.writeByte(record.codec);
+                out.writeLong(record.contentLength);
+            }
+            out.writeLong(record.expiresAt);
+            out.writeInt(record.segment);
+            out.writeInt(record.offset);
+            out.writeInt(record.length);
+            out.writeLong(record.checksum);
+            writeKey(out, record.key);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeKey(DataOutputStream out, String key) throws IOException {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private synchronized void append(byte[] record) throws IOException {
+        if(channel == null) {
+            throw new IOException("Cache index is not open!");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Append added record.
+     * @param record content record.
+     * @throws IOException throws when is not possible write index file.
+     */
+    void add(Record record) throws IOException {
+        append(encode(record));
+    }
+
+    /**
+     * Append removed key record.
+     * @param key content key.
+     * @throws IOException throws when is not possible write index file.
+     */
+    void remove(String key) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(OP_REMOVE);
+            writeKey(out, key);
+        }
+        append(bytes.toByteArray());
+    }
+    //endregion
+}
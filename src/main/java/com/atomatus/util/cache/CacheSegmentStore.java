@@ -0,0 +1,552 @@
+package com.atomatus.util.cache;
+
+import com.atomatus.util.security.Encryptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ *     Append-only segment files store for stored mode cache data content.
+ * </p>
+ * <p>
+ *     Content is appended on memory mapped segment files (16MB each), each cache data keeps
+ *     its location (segment, offset and length) as in-memory index, so reads are a bounded
+ *     slice of mapped segment, without one file per cache data or deserialization.
+ *     When at least half of a full segment was released, its live content is compacted
+ *     (copied) to active segment on sweeper thread and segment file is deleted.
+ * </p>
+ * <p>
+ *     A persistent store ({@link #open(File)}) keeps segment files on target directory and
+ *     records plaintext content by key on a durable index ({@link CacheSegmentIndex}),
+ *     so content survives application restarts, being revived lazily when requested.
+ * </p>
+ * <i>Ciphered content is kept encrypted on segment files by store encryptor,
+ * whose key is not persisted, so ciphered content never survives restarts.</i>
+ */
+final class CacheSegmentStore {
+
+    /**
+     * Segment file capacity in bytes, larger content receives its own segment.
+     */
+    static final int SEGMENT_SIZE;
+
+    private static final String FILE_PREFIX;
+    private static final String FILE_SUFFIX;
+
+    static {
+        SEGMENT_SIZE    = 16 * 1024 * 1024;//16MB
+        FILE_PREFIX     = "segment-";
+        FILE_SUFFIX     = ".dat";
+    }
+
+    /**
+     * Segment file memory mapped.
+     */
+    static final class Segment {
+
+        private final int id;
+        private final File file;
+        private final MappedByteBuffer map;
+        private final int capacity;
+        private final Set<CachePayloadSegment> live;
+        private final AtomicInteger dormant;
+        private final AtomicLong releasedBytes;
+        private final AtomicBoolean compacting;
+        private int position;
+        private volatile boolean sealed;
+
+        private Segment(int id, File file, int capacity) throws IOException {
+            this.id             = id;
+            this.file           = file;
+            this.capacity       = capacity;
+            this.live           = ConcurrentHashMap.newKeySet();
+            this.dormant        = new AtomicInteger();
+            this.releasedBytes  = new AtomicLong();
+            this.compacting     = new AtomicBoolean();
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                 FileChannel channel = raf.getChannel()) {
+                this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            }
+        }
+
+        /**
+         * Read-only slice of segment content.
+         * @param offset content offset.
+         * @param length content length.
+         * @return content slice.
+         */
+        ByteBuffer slice(int offset, int length) {
+            ByteBuffer dup = map.duplicate();
+            dup.limit(offset + length).position(offset);
+            return dup.slice().asReadOnlyBuffer();
+        }
+
+        private boolean isReleasable() {
+            return live.isEmpty() && dormant.get() == 0;
+        }
+
+        @SuppressWarnings("ResultOfMethodCallIgnored")
+        private void delete() {
+            file.delete();
+        }
+    }
+
+    /**
+     * Content location on segment store.
+     */
+    static final class Location {
+
+        final Segment segment;
+        final int offset;
+        final int length;
+
+        private Location(Segment segment, int offset, int length) {
+            this.segment    = segment;
+            this.offset     = offset;
+            this.length     = length;
+        }
+
+        /**
+         * Read-only slice of content.
+         * @return content slice.
+         */
+        ByteBuffer slice() {
+            return segment.slice(offset, length);
+        }
+    }
+
+    private final File directory;
+    private final int segmentSize;
+    private final CacheSegmentIndex index;
+    private final Map<Integer, Segment> segments;
+    private final ConcurrentHashMap<String, CacheSegmentIndex.Record> dormant;
+    private Segment active;
+    private int sequence;
+    private Encryptor encryptor;
+
+    CacheSegmentStore(File directory, int segmentSize) {
+        this(directory, segmentSize, null);
+    }
+
+    private CacheSegmentStore(File directory, int segmentSize, CacheSegmentIndex index) {
+        this.directory      = directory;
+        this.segmentSize    = segmentSize;
+        this.index          = index;
+        this.segments       = new HashMap<>();
+        this.dormant        = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Create a segment store on a new temp directory, deleted with segment files on system close.
+     * @return segment store.
+     * @throws IOException throws when is not possible create temp directory.
+     */
+    static CacheSegmentStore temporary() throws IOException {
+        File directory = Files.createTempDirectory("~cache").toFile();
+        directory.deleteOnExit();
+        return new CacheSegmentStore(directory, SEGMENT_SIZE);
+    }
+
+    /**
+     * Open (or create) a persistent segment store on target directory,
+     * recovering content recorded by its index.
+     * @param directory target directory.
+     * @return segment store.
+     * @throws IOException throws when is not possible create directory, read or write index file.
+     */
+    static CacheSegmentStore open(File directory) throws IOException {
+        return open(directory, SEGMENT_SIZE);
+    }
+
+    /**
+     * Open (or create) a persistent segment store on target directory,
+     * recovering content recorded by its index.
+     * @param directory target directory.
+     * @param segmentSize segment file capacity in bytes.
+     * @return segment store.
+     * @throws IOException throws when is not possible create directory, read or write index file.
+     */
+    static CacheSegmentStore open(File directory, int segmentSize) throws IOException {
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can not create cache directory \"" + directory + "\"!");
+        }
+
+        CacheSegmentStore store = new CacheSegmentStore(directory, segmentSize, new CacheSegmentIndex(directory));
+        store.recover(store.index.open());
+        return store;
+    }
+
+    //region state
+    /**
+     * Store directory.
+     * @return directory.
+     */
+    File directory() {
+        return directory;
+    }
+
+    /**
+     * Check whether store keeps content between application restarts.
+     * @return true, store is persistent, otherwise false.
+     */
+    boolean isPersistent() {
+        return index != null;
+    }
+
+    /**
+     * Encryptor to keep ciphered content on segment files, key generated by store.
+     * @return encryptor, calls must be synchronized on it.
+     */
+    synchronized Encryptor encryptor() {
+        if(encryptor == null) {
+            encryptor = Encryptor.builder().cipher().key().vector().build();
+        }
+        return encryptor;
+    }
+
+    /**
+     * Count of segment files.
+     * @return segment count.
+     */
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    private static long checksum(ByteBuffer content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    private static int segmentId(String filename) {
+        if(filename.startsWith(FILE_PREFIX) && filename.endsWith(FILE_SUFFIX)) {
+            try {
+                return Integer.parseInt(filename.substring(FILE_PREFIX.length(),
+                        filename.length() - FILE_SUFFIX.length()));
+            } catch (NumberFormatException ignored) { }
+        }
+        return -1;
+    }
+    //endregion
+
+    //region recover
+    private synchronized void recover(Map<String, CacheSegmentIndex.Record> records) throws IOException {
+        Map<Integer, Long> referenced = new HashMap<>();
+        for(CacheSegmentIndex.Record record : records.values()) {
+            referenced.merge(record.segment, (long) record.length, Long::sum);
+        }
+
+        File[] files = directory.listFiles();
+        if(files != null) {
+            for(File file : files) {
+                int id = segmentId(file.getName());
+                if(id < 0) {
+                    continue;
+                }
+                sequence = Math.max(sequence, id + 1);
+                Long bytes = referenced.get(id);
+                if(bytes == null || file.length() > Integer.MAX_VALUE) {
+                    //unreferenced segment.
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                } else {
+                    Segment segment = new Segment(id, file, (int) file.length());
+                    segment.position = segment.capacity;
+                    segment.sealed = true;
+                    segment.releasedBytes.set(segment.capacity - bytes);
+                    segments.put(id, segment);
+                }
+            }
+        }
+
+        for(CacheSegmentIndex.Record record : records.values()) {
+            Segment segment = segments.get(record.segment);
+            if(segment != null && (long) record.offset + record.length <= segment.capacity) {
+                segment.dormant.incrementAndGet();
+                dormant.put(record.key, record);
+            }
+        }
+
+        for(Iterator<Segment> it = segments.values().iterator(); it.hasNext();) {
+            Segment segment = it.next();
+            if(segment.isReleasable()) {
+                it.remove();
+                segment.delete();
+            }
+        }
+    }
+
+    /**
+     * Check whether exists content recorded by index, not yet revived, for target key.
+     * @param key cache data key.
+     * @return true, exists content to be revived, otherwise false.
+     */
+    boolean isRevivable(CacheKey key) {
+        String canonical;
+        return !dormant.isEmpty() &&
+                (canonical = key.canonical()) != null &&
+                dormant.containsKey(canonical);
+    }
+
+    /**
+     * Revive content recorded by index for target key, validating its checksum.
+     * @param key cache data key (see {@link CacheKey#canonical()}).
+     * @return content revived, or null when not found, expired or corrupted.
+     */
+    CachePayloadSegment revive(String key) {
+        CacheSegmentIndex.Record record = key == null ? null : dormant.remove(key);
+        if(record == null) {
+            return null;
+        }
+
+        Segment segment;
+        synchronized (this) {
+            segment = segments.get(record.segment);
+        }
+
+        Location location = new Location(segment, record.offset, record.length);
+        if(record.isExpired() || checksum(location.slice()) != record.checksum) {
+            forget(segment, record);
+            return null;
+        }
+
+        CachePayloadSegment payload = new CachePayloadSegment(this, record.length, false, key,
+                record.expiresAt, CacheCodec.of(record.codec), record.contentLength);
+        segment.live.add(payload);
+        payload.locate(location);
+        segment.dormant.decrementAndGet();
+        return payload;
+    }
+
+    private void forget(Segment segment, CacheSegmentIndex.Record record) {
+        removeRecord(record.key);
+        segment.releasedBytes.addAndGet(record.length);
+        if(segment.dormant.decrementAndGet() == 0 && segment.isReleasable()) {
+            remove(segment);
+        }
+    }
+
+    /**
+     * Forget all content recorded by index not yet revived.
+     */
+    void clearDormant() {
+        for(String key : dormant.keySet()) {
+            CacheSegmentIndex.Record record = dormant.remove(key);
+            if(record != null) {
+                Segment segment;
+                synchronized (this) {
+                    segment = segments.get(record.segment);
+                }
+                forget(segment, record);
+            }
+        }
+    }
+    //endregion
+
+    //region write
+    private Segment segment(int length) throws IOException {
+        if(active != null && active.capacity - active.position >= length) {
+            return active;
+        }
+
+        if(active != null) {
+            seal(active);
+        }
+
+        int id = sequence++;
+        File file = new File(directory, String.format("%s%05d%s", FILE_PREFIX, id, FILE_SUFFIX));
+        if(index == null) {
+            file.deleteOnExit();
+        }
+        active = new Segment(id, file, Math.max(segmentSize, length));
+        segments.put(id, active);
+        return active;
+    }
+
+    private void seal(Segment segment) {
+        segment.sealed = true;
+        if(segment.isReleasable()) {
+            remove(segment);
+        }
+    }
+
+    private synchronized void remove(Segment segment) {
+        if(segments.remove(segment.id, segment)) {
+            if(active == segment) {
+                active = null;
+            }
+            segment.delete();
+        }
+    }
+
+    /**
+     * Append content on active segment.
+     * @param content content bytes.
+     * @param owner content owner, kept as live content of segment.
+     * @return content location.
+     * @throws IOException throws when is not possible create a new segment file.
+     */
+    synchronized Location append(byte[] content, CachePayloadSegment owner) throws IOException {
+        Segment segment = segment(content.length);
+        int offset = segment.position;
+        ByteBuffer dup = segment.map.duplicate();
+        dup.position(offset);
+        dup.put(content);
+        segment.position += content.length;
+        segment.live.add(owner);
+        return new Location(segment, offset, content.length);
+    }
+
+    /**
+     * Record content location on index, only for persistent store.
+     * @param payload content stored.
+     * @param location content location.
+     * @throws IOException throws when is not possible write index file.
+     */
+    void record(CachePayloadSegment payload, Location location) throws IOException {
+        if(index != null && payload.key() != null) {
+            CacheCodec codec = payload.codec();
+            index.add(new CacheSegmentIndex.Record(payload.key(), payload.expiresAt(),
+                    location.segment.id, location.offset, location.length,
+                    checksum(location.slice()), codec == null ? 0 : codec.id, payload.contentLength()));
+        }
+    }
+
+    private void removeRecord(String key) {
+        if(index != null) {
+            try {
+                index.remove(key);
+            } catch (IOException ignored) { }
+        }
+    }
+
+    /**
+     * Move content to segment store.
+     * @param source source content, destroyed when moved.
+     * @return content stored, or null when already in segment store.
+     * @throws IOException throws when is not possible read source content or write it.
+     */
+    CachePayloadSegment write(CachePayload source) throws IOException {
+        return write(source, null, 0L);
+    }
+
+    /**
+     * Move content to segment store, recording it on index when persistent store and plaintext.
+     * @param source source content, destroyed when moved.
+     * @param key cache data key (see {@link CacheKey#canonical()}), or null to not record it.
+     * @param expiresAt time (in millis) when content expires.
+     * @return content stored, or null when already in segment store.
+     * @throws IOException throws when is not possible read source content or write it.
+     */
+    CachePayloadSegment write(CachePayload source, String key, long expiresAt) throws IOException {
+        return write(source, key, expiresAt, null, source.length());
+    }
+
+    /**
+     * Move content to segment store, recording it (and its compression codec) on index
+     * when persistent store and plaintext.
+     * @param source source content, destroyed when moved.
+     * @param key cache data key (see {@link CacheKey#canonical()}), or null to not record it.
+     * @param expiresAt time (in millis) when content expires.
+     * @param codec codec of compressed content, or null when not compressed.
+     * @param contentLength content length once decompressed.
+     * @return content stored, or null when already in segment store.
+     * @throws IOException throws when is not possible read source content or write it.
+     */
+    CachePayloadSegment write(CachePayload source, String key, long expiresAt,
+                              CacheCodec codec, long contentLength) throws IOException {
+        if(source instanceof CachePayloadSegment) {
+            return null;
+        }
+
+        byte[] content = source.bytes();
+        boolean encrypted = source.isEncrypted();
+        if(encrypted) {
+            Encryptor encryptor = encryptor();
+            synchronized (encryptor) {
+                content = encryptor.encrypt(content);
+            }
+        }
+
+        String recordKey = index == null || encrypted ? null : key;
+        if(key != null) {
+            CacheSegmentIndex.Record superseded = dormant.remove(key);
+            if(superseded != null) {
+                Segment segment;
+                synchronized (this) {
+                    segment = segments.get(superseded.segment);
+                }
+                forget(segment, superseded);
+            }
+        }
+
+        CachePayloadSegment payload = new CachePayloadSegment(this, source.length(), encrypted, recordKey,
+                expiresAt, codec, contentLength);
+        Location location = append(content, payload);
+        payload.locate(location);
+        record(payload, location);
+        source.destroy();
+        return payload;
+    }
+    //endregion
+
+    //region release
+    /**
+     * Release content location, scheduling segment compaction when needed.
+     * @param payload content released.
+     * @param location content location.
+     * @param removed true, content was removed (recorded as removed on index),
+     *                otherwise only moved to another location.
+     */
+    void release(CachePayloadSegment payload, Location location, boolean removed) {
+        if(removed && payload.key() != null) {
+            removeRecord(payload.key());
+        }
+
+        Segment segment = location.segment;
+        segment.live.remove(payload);
+        long released = segment.releasedBytes.addAndGet(location.length);
+        if(segment.sealed) {
+            if(segment.isReleasable()) {
+                remove(segment);
+            } else if(released * 2L >= segment.position && segment.dormant.get() == 0 &&
+                    segment.compacting.compareAndSet(false, true)) {
+                CacheSweeper.execute(() -> compact(segment));
+            }
+        }
+    }
+
+    /**
+     * Copy live content of segment to active segment and delete it.
+     * @param segment target segment.
+     */
+    void compact(Segment segment) {
+        for(CachePayloadSegment payload : segment.live) {
+            try {
+                payload.relocate(segment);
+            } catch (IOException ignored) {
+                segment.compacting.set(false);
+                return;//keeps segment, content not moved.
+            }
+        }
+        if(segment.isReleasable()) {
+            remove(segment);
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,188 @@
+package com.atomatus.util.cache;
+
+import com.atomatus.util.security.Encryptor;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     Off-heap memory allocator for cache data content, pooling direct
+ *     {@link ByteBuffer} slabs split in fixed size blocks.
+ * </p>
+ * <p>
+ *     Each content receives enough blocks (not contiguous) taken from free list,
+ *     new slabs are only allocated while off-heap budget allows it, released blocks
+ *     return to free list to be reused, slabs are never returned to system.
+ * </p>
+ */
+final class CacheSlabAllocator {
+
+    /**
+     * Block size in bytes, min unit allocated for content.
+     */
+    static final int BLOCK_SIZE;
+
+    /**
+     * Slab size in bytes, direct buffer allocated at once.
+     */
+    static final int SLAB_SIZE;
+
+    private static final int BLOCKS_PER_SLAB;
+
+    static {
+        BLOCK_SIZE      = 4 * 1024;//4KB
+        SLAB_SIZE       = 1024 * 1024;//1MB
+        BLOCKS_PER_SLAB = SLAB_SIZE / BLOCK_SIZE;
+    }
+
+    private volatile ByteBuffer[] slabs;
+    private int[] free;
+    private int freeCount;
+    private long budget;
+    private Encryptor encryptor;
+
+    CacheSlabAllocator(long budget) {
+        this.slabs  = new ByteBuffer[0];
+        this.free   = new int[0];
+        this.budget = budget;
+    }
+
+    //region budget
+    /**
+     * Update off-heap budget, slabs already allocated are kept when reduced.
+     * @param budget max bytes allocated off-heap.
+     */
+    synchronized void budget(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Bytes allocated off-heap by slabs.
+     * @return capacity in bytes.
+     */
+    long capacity() {
+        return (long) slabs.length * SLAB_SIZE;
+    }
+
+    /**
+     * Bytes in use by cache data content off-heap.
+     * @return used bytes.
+     */
+    synchronized long used() {
+        return capacity() - (long) freeCount * BLOCK_SIZE;
+    }
+
+    /**
+     * Encryptor to keep ciphered content off-heap, key generated by allocator.
+     * @return encryptor, calls must be synchronized on it.
+     */
+    synchronized Encryptor encryptor() {
+        if(encryptor == null) {
+            encryptor = Encryptor.builder().cipher().key().vector().build();
+        }
+        return encryptor;
+    }
+    //endregion
+
+    //region allocation
+    private static int blocksFor(int length) {
+        return Math.max(1, (length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+    }
+
+    private boolean grow() {
+        ByteBuffer[] current = slabs;
+        if((long) (current.length + 1) * SLAB_SIZE > budget) {
+            return false;
+        }
+
+        int slab = current.length;
+        ByteBuffer[] next = Arrays.copyOf(current, slab + 1);
+        next[slab] = ByteBuffer.allocateDirect(SLAB_SIZE);
+
+        if(free.length < freeCount + BLOCKS_PER_SLAB) {
+            free = Arrays.copyOf(free, freeCount + BLOCKS_PER_SLAB);
+        }
+        for(int i = BLOCKS_PER_SLAB - 1; i >= 0; i--) {
+            free[freeCount++] = slab * BLOCKS_PER_SLAB + i;
+        }
+        slabs = next;
+        return true;
+    }
+
+    /**
+     * Allocate blocks to hold content length.
+     * @param length content length.
+     * @return blocks allocated, or null when off-heap budget was reached.
+     */
+    synchronized int[] allocate(int length) {
+        int count = blocksFor(length);
+        while (freeCount < count) {
+            if(!grow()) {
+                return null;
+            }
+        }
+
+        int[] blocks = new int[count];
+        for(int i=0; i < count; i++) {
+            blocks[i] = free[--freeCount];
+        }
+        return blocks;
+    }
+
+    /**
+     * Release blocks back to free list.
+     * @param blocks blocks allocated by {@link #allocate(int)}.
+     */
+    synchronized void release(int[] blocks) {
+        if(free.length < freeCount + blocks.length) {
+            free = Arrays.copyOf(free, freeCount + blocks.length);
+        }
+        for(int block : blocks) {
+            free[freeCount++] = block;
+        }
+    }
+    //endregion
+
+    //region access
+    private ByteBuffer block(int block) {
+        ByteBuffer slab = slabs[block / BLOCKS_PER_SLAB].duplicate();
+        int start = (block % BLOCKS_PER_SLAB) * BLOCK_SIZE;
+        slab.limit(start + BLOCK_SIZE).position(start);
+        return slab;
+    }
+
+    /**
+     * Write content on blocks.
+     * @param blocks target blocks.
+     * @param src content.
+     * @param length content length.
+     */
+    void write(int[] blocks, byte[] src, int length) {
+        for(int i=0, off=0; off < length; i++, off += BLOCK_SIZE) {
+            block(blocks[i]).put(src, off, Math.min(BLOCK_SIZE, length - off));
+        }
+    }
+
+    /**
+     * Read content from blocks.
+     * @param blocks source blocks.
+     * @param position content position.
+     * @param dst destination array.
+     * @param off destination offset.
+     * @param len count of bytes to read.
+     */
+    void read(int[] blocks, long position, byte[] dst, int off, int len) {
+        while (len > 0) {
+            ByteBuffer block = block(blocks[(int) (position / BLOCK_SIZE)]);
+            int inner = (int) (position % BLOCK_SIZE);
+            int count = Math.min(len, BLOCK_SIZE - inner);
+            block.position(block.position() + inner);
+            block.get(dst, off, count);
+            position += count;
+            off += count;
+            len -= count;
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,217 @@
+package com.atomatus.util.cache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <strong>Cache statistics</strong>
+ * <p>
+ *     Immutable snapshot of cache control statistics, recovered by {@link CacheControl#stats()}.
+ * </p>
+ * <code>
+ *     CacheStats stats = CacheControl.memory().stats();<br>
+ *     stats.hitRate();<i> //ratio of requests served by cache.</i><br>
+ *     stats.byteSize();<i> //bytes currently held by cache.</i><br>
+ * </code>
+ * @author Carlos Matos {@literal @chcmatos}
+ */
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long expirationCount;
+    private final long evictionCount;
+    private final long size;
+    private final long byteSize;
+    private final long storeCount;
+    private final long storeTimeNanos;
+    private final long loadCount;
+    private final long loadTimeNanos;
+    private final long encryptionTimeNanos;
+
+    CacheStats(long hitCount, long missCount,
+               long expirationCount, long evictionCount,
+               long size, long byteSize,
+               long storeCount, long storeTimeNanos,
+               long loadCount, long loadTimeNanos,
+               long encryptionTimeNanos) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.expirationCount = expirationCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.byteSize = byteSize;
+        this.storeCount = storeCount;
+        this.storeTimeNanos = storeTimeNanos;
+        this.loadCount = loadCount;
+        this.loadTimeNanos = loadTimeNanos;
+        this.encryptionTimeNanos = encryptionTimeNanos;
+    }
+
+    /**
+     * Combine statistics of tiered cache control, where memory tier misses are
+     * requested to stored tier, so only stored tier misses are requests misses.
+     * @param memory memory tier statistics.
+     * @param stored stored tier statistics.
+     * @return tiered statistics.
+     */
+    static CacheStats tiered(CacheStats memory, CacheStats stored) {
+        return new CacheStats(
+                memory.hitCount + stored.hitCount,
+                stored.missCount,
+                memory.expirationCount + stored.expirationCount,
+                stored.evictionCount,
+                memory.size + stored.size,
+                memory.byteSize + stored.byteSize,
+                stored.storeCount,
+                stored.storeTimeNanos,
+                stored.loadCount,
+                stored.loadTimeNanos,
+                memory.encryptionTimeNanos + stored.encryptionTimeNanos);
+    }
+
+    //region requests
+    /**
+     * Count of requests that found a valid cache data.
+     * @return hit count.
+     */
+    public long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Count of requests that not found a cache data or found it expired.
+     * @return miss count.
+     */
+    public long missCount() {
+        return missCount;
+    }
+
+    /**
+     * Count of all requests (hits and misses).
+     * @return request count.
+     */
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * Ratio of requests that found a valid cache data.
+     * @return hit rate, from 0 until 1, or 1 when no one request was done.
+     */
+    public double hitRate() {
+        long count = requestCount();
+        return count == 0L ? 1D : (double) hitCount / count;
+    }
+
+    /**
+     * Ratio of requests that not found a valid cache data.
+     * @return miss rate, from 0 until 1, or 0 when no one request was done.
+     */
+    public double missRate() {
+        long count = requestCount();
+        return count == 0L ? 0D : (double) missCount / count;
+    }
+    //endregion
+
+    //region removal
+    /**
+     * Count of cache data recycled because reached max age.
+     * @return expiration count.
+     */
+    public long expirationCount() {
+        return expirationCount;
+    }
+
+    /**
+     * Count of cache data evicted by maximum size or weight.
+     * @return eviction count.
+     */
+    public long evictionCount() {
+        return evictionCount;
+    }
+    //endregion
+
+    //region content
+    /**
+     * Count of cache data held by cache.
+     * @return cache data count.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Sum of content length (in bytes) of all cache data held by cache.
+     * @return bytes held.
+     */
+    public long byteSize() {
+        return byteSize;
+    }
+    //endregion
+
+    //region time
+    /**
+     * Count of cache data stored (written on disc) by stored mode.
+     * @return store count.
+     */
+    public long storeCount() {
+        return storeCount;
+    }
+
+    /**
+     * Average time spent to store a cache data, stored mode.
+     * @param unit target time unit.
+     * @return average store time.
+     */
+    public double averageStoreTime(TimeUnit unit) {
+        return average(storeTimeNanos, storeCount, unit);
+    }
+
+    /**
+     * Count of cache data content loaded (read from disc) by stored mode.
+     * @return load count.
+     */
+    public long loadCount() {
+        return loadCount;
+    }
+
+    /**
+     * Average time spent to load a cache data content, stored mode.
+     * @param unit target time unit.
+     * @return average load time.
+     */
+    public double averageLoadTime(TimeUnit unit) {
+        return average(loadTimeNanos, loadCount, unit);
+    }
+
+    /**
+     * Total time spent encrypting cache data content added on cache.
+     * @param unit target time unit.
+     * @return total encryption time.
+     */
+    public long totalEncryptionTime(TimeUnit unit) {
+        return unit.convert(encryptionTimeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static double average(long nanos, long count, TimeUnit unit) {
+        return count == 0L ? 0D : (double) nanos / count / unit.toNanos(1L);
+    }
+    //endregion
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", expirationCount=" + expirationCount +
+                ", evictionCount=" + evictionCount +
+                ", size=" + size +
+                ", byteSize=" + byteSize +
+                ", storeCount=" + storeCount +
+                ", storeTimeNanos=" + storeTimeNanos +
+                ", loadCount=" + loadCount +
+                ", loadTimeNanos=" + loadTimeNanos +
+                ", encryptionTimeNanos=" + encryptionTimeNanos +
+                '}';
+    }
+}
@@ -0,0 +1,84 @@
+package com.atomatus.util.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache control statistics counters, striped ({@link LongAdder}) to keep
+ * recording cheap under contention, so may be always enabled.
+ */
+final class CacheStatsCounter {
+
+    private final LongAdder hitCount;
+    private final LongAdder missCount;
+    private final LongAdder expirationCount;
+    private final LongAdder evictionCount;
+    private final LongAdder byteSize;
+    private final LongAdder storeCount;
+    private final LongAdder storeTimeNanos;
+    private final LongAdder loadCount;
+    private final LongAdder loadTimeNanos;
+    private final LongAdder encryptionTimeNanos;
+
+    CacheStatsCounter() {
+        this.hitCount = new LongAdder();
+        this.missCount = new LongAdder();
+        this.expirationCount = new LongAdder();
+        this.evictionCount = new LongAdder();
+        this.byteSize = new LongAdder();
+        this.storeCount = new LongAdder();
+        this.storeTimeNanos = new LongAdder();
+        this.loadCount = new LongAdder();
+        this.loadTimeNanos = new LongAdder();
+        this.encryptionTimeNanos = new LongAdder();
+    }
+
+    void recordHit() {
+        hitCount.increment();
+    }
+
+    void recordMiss() {
+        missCount.increment();
+    }
+
+    void recordExpiration() {
+        expirationCount.increment();
+    }
+
+    void recordEviction() {
+        evictionCount.increment();
+    }
+
+    void recordAdd(long length, long encryptionNanos) {
+        byteSize.add(length);
+        encryptionTimeNanos.add(encryptionNanos);
+    }
+
+    void recordRemove(long length) {
+        byteSize.add(-length);
+    }
+
+    void recordStore(long nanos) {
+        storeCount.increment();
+        storeTimeNanos.add(nanos);
+    }
+
+    void recordLoad(long nanos) {
+        loadCount.increment();
+        loadTimeNanos.add(nanos);
+    }
+
+    CacheStats snapshot(long size) {
+        return new CacheStats(
+                hitCount.sum(),
+                missCount.sum(),
+                expirationCount.sum(),
+                evictionCount.sum(),
+                size,
+                byteSize.sum(),
+                storeCount.sum(),
+                storeTimeNanos.sum(),
+                loadCount.sum(),
+                loadTimeNanos.sum(),
+                encryptionTimeNanos.sum());
+    }
+}
@@ -0,0 +1,93 @@
+package com.atomatus.util.cache;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *     Shared expiration sweeper for all cache controls.
+ * </p>
+ * <p>
+ *     A single daemon thread visits each registered cache control periodically,
+ *     recycling a bounded batch of expired cache data per visit (amortized cost),
+ *     and runs on demand full recycle requests, so no thread is ever created by
+ *     cache reads or writes.
+ * </p>
+ */
+final class CacheSweeper {
+
+    /**
+     * Interval between each periodic sweep, in milliseconds.
+     */
+    static final long SWEEP_INTERVAL_IN_MILLIS;
+
+    /**
+     * Max count of cache data visited by cache control on each periodic sweep.
+     */
+    static final int SWEEP_BATCH_SIZE;
+
+    private static final CopyOnWriteArrayList<WeakReference<CacheControlBase>> caches;
+    private static volatile ScheduledExecutorService scheduler;
+
+    static {
+        SWEEP_INTERVAL_IN_MILLIS = 1000L;
+        SWEEP_BATCH_SIZE = 256;
+        caches = new CopyOnWriteArrayList<>();
+    }
+
+    private CacheSweeper() { }
+
+    private static ScheduledExecutorService scheduler() {
+        ScheduledExecutorService s = scheduler;
+        if(s == null) {
+            synchronized (CacheSweeper.class) {
+                if((s = scheduler) == null) {
+                    scheduler = s = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread t = new Thread(r, "cache-control-sweeper");
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    s.scheduleWithFixedDelay(CacheSweeper::sweepAll,
+                            SWEEP_INTERVAL_IN_MILLIS, SWEEP_INTERVAL_IN_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        return s;
+    }
+
+    private static void sweepAll() {
+        Iterator<WeakReference<CacheControlBase>> it = caches.iterator();
+        while (it.hasNext()) {
+            WeakReference<CacheControlBase> ref = it.next();
+            CacheControlBase cache = ref.get();
+            if(cache == null) {
+                caches.remove(ref);
+            } else {
+                try {
+                    cache.sweep(SWEEP_BATCH_SIZE);
+                } catch (Exception ignored) { }
+            }
+        }
+    }
+
+    /**
+     * Register cache control to be swept periodically.
+     * @param cache target cache control.
+     */
+    static void register(CacheControlBase cache) {
+        caches.add(new WeakReference<>(cache));
+        scheduler();
+    }
+
+    /**
+     * Request to run action on sweeper thread.
+     * @param action target action.
+     */
+    static void execute(Runnable action) {
+        scheduler().execute(action);
+    }
+}
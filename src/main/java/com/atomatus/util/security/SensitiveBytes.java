@@ -668,7 +668,7 @@ public class SensitiveBytes implements Iterable<Byte>, Destroyable, Closeable {
 
             @Override
             public int read() {
-                return it.hasNext() ? it.next() : -1;
+                return it.hasNext() ? it.next() & 0xFF : -1;
             }
         };
     }
@@ -999,7 +999,7 @@ public class SensitiveBytes implements Iterable<Byte>, Destroyable, Closeable {
                         it = new SensitiveBytesIterator(cipher::decrypt, tmp, tmp.length);
                     }
                 }
-                return it.hasNext() ? it.next() : -1;
+                return it.hasNext() ? it.next() & 0xFF : -1;
             }
         };
     }
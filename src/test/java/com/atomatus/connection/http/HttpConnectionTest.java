@@ -1,16 +1,73 @@
 package com.atomatus.connection.http;
 
+import com.atomatus.connection.http.exception.CircuitOpenException;
 import com.atomatus.connection.http.exception.URLConnectionException;
 import com.atomatus.util.Stopwatch;
+import com.atomatus.util.cache.CacheCodec;
+import com.atomatus.util.cache.CacheControl;
+import com.atomatus.util.cache.CacheData;
 import com.atomatus.util.security.KeyGenerator;
 import junit.framework.AssertionFailedError;
 import junit.framework.TestCase;
 
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+import java.util.zip.GZIPInputStream;
 
 public class HttpConnectionTest extends TestCase {
 
+    private static HttpServer localServer(long delayInMillis, String body) throws IOException {
+        return localServer(delayInMillis, body, new AtomicInteger());
+    }
+
+    private static HttpServer localServer(long delayInMillis, String body, AtomicInteger hits) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            hits.incrementAndGet();
+            try {
+                Thread.sleep(delayInMillis);
+            } catch (InterruptedException ignored) { }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            } catch (IOException ignored) { }
+        });
+        server.start();
+        return server;
+    }
+
+    private static String localUrl(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
     public void testGetContent() {
         try(Response resp = new HttpConnection()
                 .getContent("https://httpbin.org/get")) {
@@ -99,4 +156,839 @@ public class HttpConnectionTest extends TestCase {
         //endregion
 
     }
-}
\ No newline at end of file
+
+    public void testGetContentAsync() throws Exception {
+        HttpServer server = localServer(0L, "async");
+        try {
+            HttpConnection conn = new HttpConnection();
+            CompletableFuture<Response> f0 = conn.getContentAsync(localUrl(server));
+            CompletableFuture<Response> f1 = conn.getContentAsync(localUrl(server));
+            try(Response r0 = f0.get(10, TimeUnit.SECONDS); Response r1 = f1.get(10, TimeUnit.SECONDS)) {
+                assertTrue(r0.isSuccess());
+                assertEquals("async", r0.getContent());
+                assertEquals("async", r1.getContent());
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testGetContentAsyncDeadline() throws Exception {
+        HttpServer server = localServer(3000L, "slow");
+        try {
+            HttpConnection conn = new HttpConnection();
+            CompletableFuture<Response> future = conn.getContentAsync(
+                    new URL(localUrl(server)), 200L, TimeUnit.MILLISECONDS);
+            try {
+                future.get(2, TimeUnit.SECONDS);
+                fail("Deadline not reached!");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof URLConnectionException);
+            }
+
+            CompletableFuture<Response> cancelled = conn.getContentAsync(localUrl(server));
+            assertTrue(cancelled.cancel(true));
+            assertTrue(cancelled.isCancelled());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testGetContentAsyncMalformed() {
+        CompletableFuture<Response> future = new HttpConnection().getContentAsync("invalid url");
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    public void testGetContentStreamCached() throws Exception {
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer server = localServer(0L, "streamed content", hits);
+        int cacheId = UUID.randomUUID().hashCode();
+        try {
+            try(Response resp = new HttpConnection().useCache().setCacheId(cacheId).getContent(localUrl(server));
+                InputStream in = resp.getContentStream()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+                assertEquals("streamed content", new String(out.toByteArray(), StandardCharsets.UTF_8));
+            }
+
+            try(Response resp = new HttpConnection().useCache().setCacheId(cacheId).getContent(localUrl(server))) {
+                assertEquals("streamed content", resp.getContent());
+            }
+            assertEquals(1, hits.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testTransferToAboveCacheLimit() throws Exception {
+        AtomicInteger hits = new AtomicInteger();
+        StringBuilder sb = new StringBuilder();
+        for(int i=0; i < 10000; i++) sb.append(i % 10);
+        HttpServer server = localServer(0L, sb.toString(), hits);
+        int cacheId = UUID.randomUUID().hashCode();
+        Path file = Files.createTempFile("response", ".txt");
+        try {
+            try(Response resp = new HttpConnection().useCache().setCacheId(cacheId)
+                    .setCacheStreamLimit(1024).getContent(localUrl(server))) {
+                assertEquals(10000L, resp.transferTo(file));
+            }
+            assertEquals(sb.toString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+
+            try(Response resp = new HttpConnection().useCache().setCacheId(cacheId).getContent(localUrl(server))) {
+                assertEquals(sb.toString(), resp.getContent());
+            }
+            assertEquals(2, hits.get());
+        } finally {
+            Files.deleteIfExists(file);
+            server.stop(0);
+        }
+    }
+
+    public void testGetContentRevalidated() throws Exception {
+        AtomicInteger full = new AtomicInteger(), notModified = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.getResponseHeaders().add("Cache-Control", "max-age=1");
+            if("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                full.incrementAndGet();
+                byte[] bytes = "validated".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        });
+        server.start();
+        int cacheId = UUID.randomUUID().hashCode();
+        try {
+            CacheData cached = null;
+            for(int i=0; i < 4; i++) {
+                if(i == 2) Thread.sleep(1100L);
+                try(Response resp = new HttpConnection().useCache().setCacheId(cacheId).getContent(localUrl(server))) {
+                    assertTrue(resp.isSuccess());
+                    assertEquals("validated", resp.getContent());
+                }
+                if(i == 0) cached = CacheControl.memory(cacheId).get(new URL(localUrl(server)));
+            }
+            assertEquals(1, full.get());
+            assertEquals(1, notModified.get());
+            //renewed in place, not added again.
+            assertSame(cached, CacheControl.memory(cacheId).get(new URL(localUrl(server))));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testGetContentCoalesced() throws Exception {
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer server = localServer(500L, "coalesced", hits);
+        try {
+            int count = 8;
+            ExecutorService executor = HttpConnection.newExecutor(count);
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[count];
+            for(int i=0; i < count; i++) {
+                futures[i] = CompletableFuture.supplyAsync(() -> {
+                    try(Response resp = new HttpConnection().useCoalescing().getContent(localUrl(server))) {
+                        assertTrue(resp.isSuccess());
+                        return resp.getContent();
+                    } catch (URLConnectionException e) {
+                        throw new AssertionFailedError(e.getMessage());
+                    }
+                }, executor);
+            }
+            for(CompletableFuture<?> f : futures) {
+                assertEquals("coalesced", f.get(10, TimeUnit.SECONDS));
+            }
+            assertTrue(hits.get() < count);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testGetContentCoalescedFollowerTimeout() throws Exception {
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer server = localServer(1000L, "slow", hits);
+        try {
+            URL url = new URL(localUrl(server));
+            CompletableFuture<Response> leader = new HttpConnection().useCoalescing().getContentAsync(url);
+            Thread.sleep(100L);
+            ExecutorService single = Executors.newSingleThreadExecutor();
+            CompletableFuture<Response> follower = new HttpConnection().useCoalescing().setExecutor(single)
+                    .getContentAsync(url, 100L, TimeUnit.MILLISECONDS);
+            try {
+                follower.get(10, TimeUnit.SECONDS);
+                fail("Follower deadline not reached!");
+            } catch (ExecutionException e) {
+                //follower thread released by its own deadline, before leader completes.
+                assertFalse(single.submit(leader::isDone).get(10, TimeUnit.SECONDS));
+            } finally {
+                single.shutdown();
+            }
+            try(Response resp = leader.get(10, TimeUnit.SECONDS)) {
+                assertEquals("slow", resp.getContent());
+            }
+            assertEquals(1, hits.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testGetContentCoalescedLeaderCancelled() throws Exception {
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer server = localServer(300L, "taken over", hits);
+        try {
+            URL url = new URL(localUrl(server));
+            CompletableFuture<Response> leader = new HttpConnection().useCoalescing().getContentAsync(url);
+            Thread.sleep(100L);
+            CompletableFuture<Response> follower = new HttpConnection().useCoalescing().getContentAsync(url);
+            Thread.sleep(100L);
+            leader.cancel(true);
+            try(Response resp = follower.get(10, TimeUnit.SECONDS)) {
+                assertEquals("taken over", resp.getContent());
+            }
+            assertEquals(2, hits.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testGetContentCoalescedByCredentials() throws Exception {
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer server = localServer(300L, "private", hits);
+        try {
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[2];
+            for(int i=0; i < futures.length; i++) {
+                HttpConnection con = new HttpConnection().useCoalescing().setAuthBearer("token-" + i);
+                futures[i] = CompletableFuture.supplyAsync(() -> {
+                    try(Response resp = con.getContent(localUrl(server))) {
+                        byte[] content = resp.getContentBytes();
+                        content[0] = 0;//views content is read only.
+                        return resp.getContent();
+                    } catch (URLConnectionException e) {
+                        throw new AssertionFailedError(e.getMessage());
+                    }
+                });
+            }
+            for(CompletableFuture<?> f : futures) {
+                assertEquals("private", f.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(2, hits.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testCachePlaintextByResponse() throws Exception {
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer server = localServer(0L, "plain", hits);
+        int cacheId = UUID.randomUUID().hashCode();
+        try {
+            for(int i=0; i < 2; i++) {
+                try(Response resp = new HttpConnection().useCachePlaintext().setCacheId(cacheId)
+                        .getContent(localUrl(server))) {
+                    assertEquals("plain", resp.getContent());
+                }
+            }
+            assertEquals(1, hits.get());
+            CacheControl cache = CacheControl.memory(cacheId);
+            assertFalse(cache.isPlaintext());
+            assertFalse(cache.get(new URL(localUrl(server))).isEncrypted());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testCachedWithoutValidatorsRevalidated() throws Exception {
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer server = localServer(0L, "origin", hits);
+        int cacheId = UUID.randomUUID().hashCode();
+        try {
+            URL url = new URL(localUrl(server));
+            CacheControl.memory(cacheId).add(new CacheData.Builder().id(url).text("orphan").build());
+            try(Response resp = new HttpConnection().useCache().setCacheId(cacheId).getContent(url)) {
+                assertEquals("origin", resp.getContent());
+            }
+            try(Response resp = new HttpConnection().useCache().setCacheId(cacheId).getContent(url)) {
+                assertEquals("origin", resp.getContent());
+            }
+            assertEquals(1, hits.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testCacheCompressionNotShared() throws Exception {
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer server = localServer(0L, "compressed", hits);
+        int cacheId = UUID.randomUUID().hashCode();
+        try {
+            URL url = new URL(localUrl(server));
+            for(int i=0; i < 2; i++) {
+                try(Response resp = new HttpConnection().useCache().setCacheId(cacheId)
+                        .setCacheCompression(CacheCodec.DEFLATE, 0).getContent(url)) {
+                    assertEquals("compressed", resp.getContent());
+                }
+            }
+            assertEquals(1, hits.get());
+            assertFalse(CacheControl.memory(cacheId).exists(url));
+            try(Response resp = new HttpConnection().useCache().setCacheId(cacheId).getContent(url)) {
+                assertEquals("compressed", resp.getContent());
+            }
+            assertEquals(2, hits.get());
+            assertTrue(CacheControl.memory(cacheId).exists(url));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testKeepAliveReleased() throws Exception {
+        HttpServer server = localServer(0L, "kept alive");
+        try {
+            URL url = new URL(localUrl(server));
+            for(int i=0; i < 3; i++) {
+                try(Response resp = new HttpConnection().setKeepAlive(true).getContent(url)) {
+                    assertEquals("kept alive", resp.getContent());
+                }
+            }
+            HttpHostStats stats = HttpConnection.getHostStats(url);
+            assertEquals(3L, stats.requestCount());
+            assertEquals(3L, stats.keepAliveReleasedCount());
+            assertEquals(0L, stats.inFlight());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testMaxRequestsPerHost() throws Exception {
+        HttpServer server = localServer(500L, "limited");
+        try {
+            URL url = new URL(localUrl(server));
+            CompletableFuture<Response> first = new HttpConnection()
+                    .setMaxRequestsPerHost(1, 50L, TimeUnit.MILLISECONDS)
+                    .getContentAsync(url);
+            Thread.sleep(100L);
+            try(Response ignored = new HttpConnection()
+                    .setMaxRequestsPerHost(1, 50L, TimeUnit.MILLISECONDS)
+                    .getContent(url)) {
+                ignored.getContent();
+                fail("Max requests per host not reached!");
+            } catch (URLConnectionException e) {
+                assertEquals(1L, HttpConnection.getHostStats(url).rejectedCount());
+            }
+            try(Response resp = first.get(10, TimeUnit.SECONDS)) {
+                assertEquals("limited", resp.getContent());
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testMaxRequestsPerHostSharedByDifferentLimits() throws Exception {
+        HttpServer server = localServer(500L, "limited");
+        try {
+            URL url = new URL(localUrl(server));
+            CompletableFuture<Response> first = new HttpConnection()
+                    .setMaxRequestsPerHost(2, 50L, TimeUnit.MILLISECONDS)
+                    .getContentAsync(url);
+            Thread.sleep(100L);
+            try(Response ignored = new HttpConnection()
+                    .setMaxRequestsPerHost(1, 50L, TimeUnit.MILLISECONDS)
+                    .getContent(url)) {
+                ignored.getContent();
+                fail("Max requests per host not shared by different limits!");
+            } catch (URLConnectionException e) {
+                assertEquals(1L, HttpConnection.getHostStats(url).rejectedCount());
+            }
+            try(Response resp = first.get(10, TimeUnit.SECONDS)) {
+                assertEquals("limited", resp.getContent());
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static HttpServer localServer(IntFunction<Integer> statusByHit,
+                                          IntToLongFunction delayByHit) throws IOException {
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            int hit = hits.incrementAndGet();
+            try {
+                Thread.sleep(delayByHit.applyAsLong(hit));
+            } catch (InterruptedException ignored) { }
+            byte[] bytes = ("hit " + hit).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(statusByHit.apply(hit), bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            } catch (IOException ignored) { }
+        });
+        server.start();
+        return server;
+    }
+
+    public void testRetryPolicy() throws Exception {
+        HttpServer server = localServer(hit -> hit < 3 ? 503 : 200, hit -> 0L);
+        try {
+            RetryPolicy policy = RetryPolicy.builder()
+                    .maxAttempts(3)
+                    .backoff(1, 10, TimeUnit.MILLISECONDS)
+                    .build();
+            try(Response resp = new HttpConnection().setRetryPolicy(policy).getContent(localUrl(server))) {
+                assertTrue(resp.isSuccess());
+                assertEquals("hit 3", resp.getContent());
+            }
+            try(Response resp = new HttpConnection().setRetryPolicy(policy)
+                    .postContent(localUrl(server), "data".getBytes(StandardCharsets.UTF_8))) {
+                assertEquals("hit 4", resp.getContent());//not idempotent, never retried.
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testRetryBudget() throws Exception {
+        HttpServer server = localServer(hit -> 503, hit -> 0L);
+        try {
+            RetryPolicy policy = RetryPolicy.builder()
+                    .maxAttempts(5)
+                    .backoff(0, 0, TimeUnit.MILLISECONDS)
+                    .budget(0d, 2)
+                    .build();
+            try(Response resp = new HttpConnection().setRetryPolicy(policy).getContent(localUrl(server))) {
+                assertFalse(resp.isSuccess());
+                assertEquals("hit 3", resp.getErrorContent());//first attempt plus budget of 2 retries.
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testHedging() throws Exception {
+        HttpServer server = localServer(hit -> 200, hit -> hit == 1 ? 3000L : 0L);
+        try {
+            Stopwatch s = Stopwatch.startNew();
+            try(Response resp = new HttpConnection()
+                    .setHedging(100, TimeUnit.MILLISECONDS)
+                    .getContent(localUrl(server))) {
+                assertEquals("hit 2", resp.getContent());
+            }
+            s.stop();
+            assertTrue(s.getElapsedInMillis() < 2000L);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testHedgingOnBusyExecutor() throws Exception {
+        HttpServer server = localServer(hit -> 200, hit -> 300L);
+        ExecutorService single = HttpConnection.newExecutor(1);
+        try {
+            HttpConnection con = new HttpConnection()
+                    .setExecutor(single)
+                    .setHedging(50, TimeUnit.MILLISECONDS);
+            //called from executor only thread, duplicate request never taken.
+            Future<String> content = single.submit(() -> {
+                try(Response resp = con.getContent(localUrl(server))) {
+                    return resp.getContent();
+                }
+            });
+            assertEquals("hit 1", content.get(10, TimeUnit.SECONDS));
+        } finally {
+            single.shutdownNow();
+            server.stop(0);
+        }
+    }
+
+    public void testGetAll() throws Exception {
+        HttpServer server = localServer(hit -> 200, hit -> 200L);
+        try {
+            List<URL> urls = new ArrayList<>();
+            for(int i=0; i < 8; i++) {
+                urls.add(new URL(localUrl(server) + "?page=" + i));
+            }
+
+            Stopwatch s = Stopwatch.startNew();
+            Set<URL> received = new HashSet<>();
+            new HttpConnection().getAll(urls, 4, result -> {
+                assertFalse(result.isFailed());
+                received.add(result.getUrl());
+            });
+            s.stop();
+            assertEquals(new HashSet<>(urls), received);
+            assertTrue(s.getElapsedInMillis() < 8 * 200L);
+
+            Iterator<BatchResult> it = new HttpConnection().getAll(urls, 2);
+            int count = 0;
+            while (it.hasNext()) {
+                try(Response resp = it.next().getResponse()) {
+                    assertTrue(resp.isSuccess());
+                    count++;
+                }
+            }
+            assertEquals(urls.size(), count);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static HttpServer echoServer() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            InputStream in = exchange.getRequestBody();
+            if("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                in = new GZIPInputStream(in);
+            }
+            long length = 0L;
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                length += count;
+            }
+            byte[] bytes = (length + ";" + exchange.getRequestHeaders().getFirst("Transfer-Encoding"))
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    public void testPostStreamedBody() throws Exception {
+        HttpServer server = echoServer();
+        Path file = Files.createTempFile("request", ".bin");
+        try {
+            byte[] content = new byte[256 * 1024];
+            Arrays.fill(content, (byte) 'a');
+            Files.write(file, content);
+
+            try(Response resp = new HttpConnection().postContent(localUrl(server), RequestBody.of(file))) {
+                assertEquals(content.length + ";null", resp.getContent());
+            }
+
+            try(Response resp = new HttpConnection().postContent(localUrl(server),
+                    RequestBody.of(new ByteArrayInputStream(content), -1))) {
+                assertEquals(content.length + ";chunked", resp.getContent());
+            }
+
+            try(Response resp = new HttpConnection().putContent(localUrl(server),
+                    RequestBody.of(out -> out.write(content), content.length).gzip())) {
+                assertEquals(content.length + ";chunked", resp.getContent());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            server.stop(0);
+        }
+    }
+
+    public void testPostByteArrayRedirected() throws Exception {
+        HttpServer server = echoServer();
+        server.createContext("/redirect", exchange -> {
+            exchange.getResponseHeaders().set("Location", localUrl(server));
+            exchange.sendResponseHeaders(307, -1);
+            exchange.close();
+        });
+        try {
+            byte[] content = new byte[1024];
+            try(Response resp = new HttpConnection().postContent(localUrl(server) + "redirect", content)) {
+                assertEquals(content.length + ";null", resp.getContent());
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static HttpServer rangeServer(byte[] content, boolean ranges, int truncatedHit,
+                                          AtomicInteger hits, AtomicInteger served) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            int hit = hits.incrementAndGet();
+            String range = ranges ? exchange.getRequestHeaders().getFirst("Range") : null;
+            int start = 0, end = content.length - 1;
+            exchange.getResponseHeaders().set("ETag", "\"v1\"");
+            if(range != null) {
+                String[] bounds = range.substring("bytes=".length()).split("-");
+                start = Integer.parseInt(bounds[0]);
+                end = Integer.parseInt(bounds[1]);
+                exchange.getResponseHeaders().set("Content-Range",
+                        "bytes " + start + "-" + end + "/" + content.length);
+                exchange.sendResponseHeaders(206, end - start + 1);
+            } else {
+                exchange.sendResponseHeaders(200, content.length);
+            }
+
+            int length = hit == truncatedHit ? (end - start + 1) / 2 : end - start + 1;
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content, start, length);
+                served.addAndGet(length);
+            } catch (IOException ignored) { }
+        });
+        server.start();
+        return server;
+    }
+
+    public void testDownload() throws Exception {
+        byte[] content = new byte[1024 * 1024];
+        new Random(7).nextBytes(content);
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer server = rangeServer(content, true, -1, hits, new AtomicInteger());
+        Path file = Files.createTempFile("download", ".bin");
+        try {
+            assertEquals(content.length, new HttpConnection().download(localUrl(server), file, 4));
+            assertTrue(Arrays.equals(content, Files.readAllBytes(file)));
+            assertEquals(5, hits.get());//probe and 4 parts.
+            assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".download")));
+        } finally {
+            Files.deleteIfExists(file);
+            server.stop(0);
+        }
+    }
+
+    public void testDownloadOnBusyExecutor() throws Exception {
+        byte[] content = new byte[1024 * 1024];
+        new Random(7).nextBytes(content);
+        HttpServer server = rangeServer(content, true, -1, new AtomicInteger(), new AtomicInteger());
+        Path file = Files.createTempFile("download", ".bin");
+        ExecutorService single = HttpConnection.newExecutor(1);
+        try {
+            HttpConnection con = new HttpConnection().setExecutor(single);
+            //called from executor only thread, parts fetched by caller thread.
+            Future<Long> length = single.submit(() -> con.download(localUrl(server), file, 4));
+            assertEquals(content.length, length.get(10, TimeUnit.SECONDS).longValue());
+            assertTrue(Arrays.equals(content, Files.readAllBytes(file)));
+        } finally {
+            single.shutdownNow();
+            Files.deleteIfExists(file);
+            server.stop(0);
+        }
+    }
+
+    public void testDownloadResumed() throws Exception {
+        byte[] content = new byte[1024 * 1024];
+        new Random(7).nextBytes(content);
+        AtomicInteger served = new AtomicInteger();
+        HttpServer server = rangeServer(content, true, 3, new AtomicInteger(), served);
+        Path file = Files.createTempFile("download", ".bin");
+        Path state = file.resolveSibling(file.getFileName() + ".download");
+        try {
+            try {
+                new HttpConnection().download(localUrl(server), file, 4);
+                fail("Truncated part must fail download!");
+            } catch (URLConnectionException expected) {
+                assertTrue(Files.exists(state));
+            }
+
+            served.set(0);
+            assertEquals(content.length, new HttpConnection().download(localUrl(server), file, 4));
+            assertTrue(Arrays.equals(content, Files.readAllBytes(file)));
+            assertTrue(served.get() < content.length);
+            assertFalse(Files.exists(state));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(state);
+            server.stop(0);
+        }
+    }
+
+    public void testDownloadWithoutRanges() throws Exception {
+        byte[] content = new byte[256 * 1024];
+        new Random(7).nextBytes(content);
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer server = rangeServer(content, false, -1, hits, new AtomicInteger());
+        Path file = Files.createTempFile("download", ".bin");
+        try {
+            assertEquals(content.length, new HttpConnection().download(localUrl(server), file, 4));
+            assertTrue(Arrays.equals(content, Files.readAllBytes(file)));
+            assertEquals(1, hits.get());
+        } finally {
+            Files.deleteIfExists(file);
+            server.stop(0);
+        }
+    }
+
+    public void testListenerMetrics() throws Exception {
+        HttpServer server = localServer(50L, "measured content");
+        HttpServer echo = echoServer();
+        int cacheId = UUID.randomUUID().hashCode();
+        HttpMetrics metrics = new HttpMetrics();
+        try {
+            HttpConnection con = new HttpConnection().useCache().setCacheId(cacheId).setListener(metrics);
+            for(int i = 0; i < 2; i++) {
+                try (Response resp = con.getContent(localUrl(server))) {
+                    assertEquals("measured content", resp.getContent());
+                }
+            }
+
+            byte[] content = new byte[1024];
+            try (Response resp = new HttpConnection().setListener(metrics)
+                    .postContent(localUrl(echo), RequestBody.of(content))) {
+                assertEquals(content.length + ";null", resp.getContent());
+            }
+
+            HttpMetrics.Snapshot snapshot = metrics.snapshot();
+            HttpMetrics.Entry entry = snapshot.entry(new URL(localUrl(server)), HttpConnection.StatusCode.HTTP_OK);
+            assertEquals(1, entry.count());
+            assertTrue(entry.firstByte().percentile(.5d, TimeUnit.MILLISECONDS) >= 50L);
+            assertEquals("measured content".length(), entry.bytesIn());
+            assertEquals("measured content".length(), entry.bytesDecoded());
+            assertEquals(1, snapshot.cacheHits(new URL(localUrl(server))));
+
+            HttpMetrics.Entry posted = snapshot.entry(new URL(localUrl(echo)), HttpConnection.StatusCode.HTTP_OK);
+            assertEquals(1, posted.count());
+            assertEquals(content.length, posted.bytesOut());
+        } finally {
+            server.stop(0);
+            echo.stop(0);
+        }
+    }
+
+    private static HttpServer uriServer() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] bytes = (exchange.getRequestURI() + ";" + exchange.getRequestHeaders().getFirst("Accept"))
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            } catch (IOException ignored) { }
+        });
+        server.start();
+        return server;
+    }
+
+    public void testFreeze() throws Exception {
+        HttpServer server = uriServer();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            HttpConnection builder = new HttpConnection().setAcceptType(HttpConnection.ContentType.JSON);
+            HttpConnection client = builder.freeze();
+            assertTrue(client.isFrozen());
+            assertFalse(builder.isFrozen());
+            assertSame(client, client.freeze());
+
+            try {
+                client.setKeepAlive(true);
+                fail("Frozen connection must be immutable!");
+            } catch (UnsupportedOperationException expected) { }
+            builder.setAcceptType(HttpConnection.ContentType.XML);
+
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                String path = localUrl(server) + "item/" + i;
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try (Response resp = client.getContent(path)) {
+                        return resp.getContent();
+                    } catch (URLConnectionException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, executor));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                String content = futures.get(i).get(10, TimeUnit.SECONDS);
+                assertTrue(content.startsWith("/item/" + i + ";"));
+                assertTrue(content.contains("json"));
+                assertFalse(content.contains("xml"));
+            }
+        } finally {
+            executor.shutdownNow();
+            server.stop(0);
+        }
+    }
+
+    public void testUrlTemplate() throws Exception {
+        HttpServer server = uriServer();
+        try {
+            UrlTemplate template = UrlTemplate.of(localUrl(server) + "users/{id}/posts/{1}");
+            HttpConnection client = new HttpConnection().freeze();
+            try (Response resp = client.getContent(template,
+                    Parameter.buildQuery("id", "a b"),
+                    Parameter.buildQuery(7),
+                    Parameter.buildQuery("page", 2))) {
+                assertTrue(resp.getContent().startsWith("/users/a+b/posts/7?page=2;"));
+            }
+
+            try {
+                UrlTemplate.of(localUrl(server) + "users/{id/posts");
+                fail("Unbalanced braces must be rejected!");
+            } catch (IllegalArgumentException expected) { }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testCircuitBreaker() throws Exception {
+        HttpServer server = localServer(hit -> hit <= 4 ? 503 : 200, hit -> 0L);
+        try {
+            URL url = new URL(localUrl(server));
+            CircuitBreaker breaker = CircuitBreaker.builder()
+                    .window(4, 4)
+                    .failureRate(.5d)
+                    .openDuration(200, TimeUnit.MILLISECONDS)
+                    .build();
+            HttpConnection con = new HttpConnection().setCircuitBreaker(breaker).freeze();
+            for (int i = 0; i < 4; i++) {
+                try (Response resp = con.getContent(url)) {
+                    assertEquals(HttpConnection.StatusCode.HTTP_UNAVAILABLE, resp.getStatusCode());
+                }
+            }
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState(url));
+
+            try (Response resp = con.getContent(url)) {
+                resp.getStatusCode();
+                fail("Open circuit must fail fast!");
+            } catch (CircuitOpenException expected) { }
+
+            Thread.sleep(250L);
+            assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(url));
+            try (Response resp = con.getContent(url)) {
+                assertEquals("hit 5", resp.getContent());
+            }
+            assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(url));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testStaleIfError() throws Exception {
+        HttpServer server = localServer(hit -> hit == 1 ? 200 : 503, hit -> 0L);
+        int cacheId = UUID.randomUUID().hashCode();
+        try {
+            HttpConnection con = new HttpConnection().useCache().setCacheId(cacheId)
+                    .setCacheMaxAge(100, TimeUnit.MILLISECONDS)
+                    .setStaleIfError(1, TimeUnit.MINUTES);
+            try (Response resp = con.getContent(localUrl(server))) {
+                assertEquals("hit 1", resp.getContent());
+                assertFalse(resp.isStale());
+            }
+
+            Thread.sleep(150L);
+            try (Response resp = con.getContent(localUrl(server))) {
+                assertTrue(resp.isSuccess());
+                assertTrue(resp.isStale());
+                assertEquals("hit 1", resp.getContent());
+            }
+
+            try (Response resp = new HttpConnection().useCache().setCacheId(cacheId)
+                    .setCacheMaxAge(100, TimeUnit.MILLISECONDS)
+                    .getContent(localUrl(server))) {
+                assertFalse(resp.isSuccess());
+                assertEquals(HttpConnection.StatusCode.HTTP_UNAVAILABLE, resp.getStatusCode());
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -3,9 +3,21 @@ package com.atomatus.util.cache;
 import junit.framework.TestCase;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CacheControlMemoryTest extends TestCase {
 
@@ -46,7 +58,7 @@ public class CacheControlMemoryTest extends TestCase {
             assertFalse(cd.isStored());//false
             assertEquals(mock, cd.text());
 
-            CacheData cdAux = cache.get(cd.hash());
+            CacheData cdAux = cache.get(url);
 
             assertEquals(cd, cdAux);//compara com a ref added.
             assertTrue(cdAux.isMemory());//true
@@ -75,4 +87,385 @@ public class CacheControlMemoryTest extends TestCase {
             throw new AssertionError(e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    public void testCleanUp() {
+        try {
+            CacheData cd = new CacheData.Builder()
+                    .id(UUID.randomUUID())
+                    .text("teste")
+                    .build();
+
+            cache.add(cd);
+            cache.cleanUp();
+            assertTrue(cd.exists());//not expired yet.
+
+            Thread.sleep(TimeUnit.SECONDS.toMillis(maxAgeInSec) + 1);
+            cache.cleanUp();
+            assertFalse(cd.exists());//expired and recycled.
+        } catch (InterruptedException e){
+            throw new AssertionError(e.getMessage(), e);
+        }
+    }
+
+    public void testStats() {
+        CacheControl isolated = CacheControl.memory(UUID.randomUUID());
+        try {
+            UUID id = UUID.randomUUID();
+            isolated.add(new CacheData.Builder().id(id).bytes(new byte[32]).build());
+            assertTrue(isolated.exists(id));
+            assertFalse(isolated.exists(UUID.randomUUID()));
+
+            CacheStats stats = isolated.stats();
+            assertEquals(1L, stats.hitCount());
+            assertEquals(1L, stats.missCount());
+            assertEquals(.5D, stats.hitRate(), 0D);
+            assertEquals(1L, stats.size());
+            assertEquals(32L, stats.byteSize());
+            assertTrue(stats.totalEncryptionTime(TimeUnit.NANOSECONDS) > 0L);
+
+            isolated.remove(id);
+            assertEquals(0L, isolated.stats().byteSize());
+        } finally {
+            isolated.clear();
+        }
+    }
+
+    public void testGetLoadingSingleFlight() throws Exception {
+        UUID id = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+        CacheLoader loader = key -> {
+            loads.incrementAndGet();
+            Thread.sleep(200);
+            return new CacheData.Builder().id(key).text("loaded").build();
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CacheData>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> cache.get(id, loader)));
+            }
+            for (Future<CacheData> f : futures) {
+                assertEquals("loaded", f.get().text());
+            }
+            assertEquals(1, loads.get());
+            assertEquals("loaded", cache.getAsync(id, loader).get().text());
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testGetAsyncLoadingFailure() throws Exception {
+        try {
+            cache.getAsync(UUID.randomUUID(), key -> {
+                throw new IOException("unavailable");
+            }).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof CacheLoadException);
+        }
+    }
+
+    public void testMaximumSize() {
+        CacheControl bounded = CacheControl
+                .memory(UUID.randomUUID())
+                .maximumSize(10);
+        try {
+            UUID hot = UUID.randomUUID();
+            bounded.add(new CacheData.Builder().id(hot).text("hot").build());
+
+            for (int i = 0; i < 100; i++) {
+                assertTrue(bounded.exists(hot));//hot data requested often.
+                bounded.add(new CacheData.Builder().id(i).text("data " + i).build());
+            }
+
+            int count = 0;
+            for (int i = 0; i < 100; i++) {
+                if(bounded.exists(i)) count++;
+            }
+            assertTrue(count < 10);
+            assertTrue(bounded.exists(hot));
+        } finally {
+            bounded.clear();
+        }
+    }
+
+    public void testMaximumWeight() {
+        CacheControl bounded = CacheControl
+                .memory(UUID.randomUUID())
+                .maximumWeight(64);
+        try {
+            for (int i = 0; i < 10; i++) {
+                bounded.add(new CacheData.Builder().id(i).bytes(new byte[16]).build());
+            }
+
+            int count = 0;
+            for (int i = 0; i < 10; i++) {
+                if(bounded.exists(i)) count++;
+            }
+            assertTrue(count <= 4);
+        } finally {
+            bounded.clear();
+        }
+    }
+
+    public void testPlainCacheData() throws IOException {
+        byte[] raw = "plain content".getBytes();
+        CacheData cd = new CacheData.Builder()
+                .id("plain")
+                .plain()
+                .bytes(raw)
+                .append(" appended")
+                .build();
+
+        assertFalse(cd.isEncrypted());
+        assertNull(cd.data());
+        assertEquals("plain content appended", cd.text());
+
+        ByteBuffer buffer = cd.buffer();
+        assertTrue(buffer.isReadOnly());
+        assertEquals(cd.length(), buffer.remaining());
+        try {
+            buffer.put((byte) 0);
+            fail();
+        } catch (ReadOnlyBufferException ignored) { }
+
+        CacheControl isolated = CacheControl.memory(UUID.randomUUID());
+        try {
+            isolated.add(cd);
+            assertSame(cd, isolated.get("plain"));
+            assertEquals(0, isolated.stats().totalEncryptionTime(TimeUnit.NANOSECONDS));
+        } finally {
+            isolated.clear();
+        }
+    }
+
+    public void testMeta() throws IOException {
+        CacheControl cache = CacheControl.memory(UUID.randomUUID());
+        try {
+            cache.add(new CacheData.Builder().id("meta").meta("etag").text("content").build());
+            cache.add(new CacheData.Builder().id("none").text("content").build());
+            assertEquals("etag", cache.get("meta").meta());
+            assertNull(cache.get("none").meta());
+        } finally {
+            cache.clear();
+        }
+    }
+
+    public void testRevalidate() throws Exception {
+        CacheControl cache = CacheControl.memory(UUID.randomUUID());
+        try {
+            cache.add(new CacheData.Builder().id("fresh").meta("v1")
+                    .maxAge(100L, TimeUnit.MILLISECONDS).text("content").build());
+            CacheData found = cache.get("fresh");
+            assertTrue(cache.revalidate(found, 1L, TimeUnit.MINUTES, "v2"));
+            Thread.sleep(150L);
+            assertSame(found, cache.get("fresh"));
+            assertEquals("v2", found.meta());
+            assertEquals("content", found.text());
+
+            CacheData other = new CacheData.Builder().id("fresh").text("other").build();
+            assertFalse(cache.revalidate(other, 1L, TimeUnit.MINUTES, null));
+            cache.add(other);
+            assertFalse(cache.revalidate(found, 1L, TimeUnit.MINUTES, null));
+        } finally {
+            cache.clear();
+        }
+    }
+
+    public void testPlaintextCacheControl() throws IOException {
+        CacheControl plaintext = CacheControl
+                .memory(UUID.randomUUID())
+                .plaintext(true);
+        try {
+            CacheData cd = plaintext.dataBuilder()
+                    .id("plain")
+                    .text("content")
+                    .build();
+            assertFalse(cd.isEncrypted());
+            plaintext.add(cd);
+            assertEquals("content", plaintext.get("plain").text());
+
+            //mode is decided by entry, ciphered entries are kept ciphered.
+            CacheData ciphered = new CacheData.Builder()
+                    .id("ciphered")
+                    .text("content")
+                    .build();
+            plaintext.add(ciphered);
+            assertTrue(ciphered.isEncrypted());
+            assertEquals("content", plaintext.get("ciphered").text());
+        } finally {
+            plaintext.clear();
+        }
+    }
+
+    public void testOffHeap() throws IOException {
+        CacheControl offHeap = CacheControl
+                .memory(UUID.randomUUID())
+                .offHeap(CacheSlabAllocator.SLAB_SIZE);
+        try {
+            byte[] content = new byte[10_000];
+            new Random(3).nextBytes(content);
+            offHeap.add(new CacheData.Builder().id("ciphered").bytes(content).build());
+            offHeap.add(new CacheData.Builder().id("plain").plain().bytes(content.clone()).build());
+
+            CacheData ciphered = offHeap.get("ciphered");
+            assertTrue(ciphered.isEncrypted());
+            assertTrue(Arrays.equals(content, ciphered.bytes()));
+
+            CacheData plain = offHeap.get("plain");
+            byte[] read = new byte[content.length];
+            try (InputStream in = plain.stream()) {
+                int len, off = 0;
+                while ((len = in.read(read, off, read.length - off)) > 0) off += len;
+            }
+            assertTrue(Arrays.equals(content, read));
+
+            assertTrue(offHeap.remove("plain"));
+            assertFalse(plain.exists());
+        } finally {
+            offHeap.clear();
+        }
+    }
+
+    public void testKeyCollision() throws IOException {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        cache.add(new CacheData.Builder().id("Aa").text("first").build());
+        cache.add(new CacheData.Builder().id("BB").text("second").build());
+
+        assertEquals("first", cache.get("Aa").text());
+        assertEquals("second", cache.get("BB").text());
+    }
+
+    public void testCompactKeys() throws IOException {
+        CacheControl compact = CacheControl
+                .memory(UUID.randomUUID())
+                .compactKeys(true);
+        try {
+            URL url = new URL("https://test.com/compact?query=value");
+            compact.add(new CacheData.Builder().id(url).text("compact").build());
+            assertEquals("compact", compact.get(new URL("https://test.com/compact?query=value")).text());
+            assertFalse(compact.exists(new URL("https://test.com/compact?query=other")));
+            assertTrue(compact.remove(url));
+        } finally {
+            compact.clear();
+        }
+    }
+
+    public void testCacheDataMaxAge() throws Exception {
+        UUID shortId = UUID.randomUUID(), longId = UUID.randomUUID();
+        cache.add(new CacheData.Builder().id(shortId).text("short").maxAge(200, TimeUnit.MILLISECONDS).build());
+        cache.add(new CacheData.Builder().id(longId).text("long").build());
+        Thread.sleep(400);
+        assertFalse(cache.exists(shortId));
+        assertEquals("long", cache.get(longId).text());
+    }
+
+    public void testRefreshAhead() throws Exception {
+        CacheControl refreshing = CacheControl
+                .memory(UUID.randomUUID())
+                .maxAge(maxAgeInSec, TimeUnit.SECONDS)
+                .refreshAhead(maxAgeInSec, TimeUnit.SECONDS);
+        try {
+            UUID id = UUID.randomUUID();
+            AtomicInteger loads = new AtomicInteger();
+            CacheLoader loader = key -> {
+                int count = loads.incrementAndGet();
+                Thread.sleep(200);
+                return new CacheData.Builder().id(key).text("loaded" + count)
+                        .maxAge(count == 1 ? maxAgeInSec : 60, TimeUnit.SECONDS)
+                        .build();
+            };
+
+            assertEquals("loaded1", refreshing.get(id, loader).text());
+            for (int i = 0; i < 8; i++) {
+                assertEquals("loaded1", refreshing.getAsync(id, loader).get().text());//stale, reloading.
+            }
+
+            Thread.sleep(600);
+            assertEquals(2, loads.get());
+            assertEquals("loaded2", refreshing.get(id, loader).text());
+            assertEquals(2, loads.get());
+        } finally {
+            refreshing.clear();
+        }
+    }
+
+    public void testCompression() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1024; i++) {
+            sb.append("<item id=\"").append(i).append("\">compressible</item>");
+        }
+        String content = sb.toString();
+
+        for (CacheCodec codec : CacheCodec.values()) {
+            for (boolean plaintext : new boolean[] { false, true }) {
+                CacheControl compressed = CacheControl
+                        .memory(UUID.randomUUID())
+                        .plaintext(plaintext)
+                        .compression(codec, 1024);
+                try {
+                    compressed.add(compressed.dataBuilder().id("large").text(content).build());
+                    compressed.add(compressed.dataBuilder().id("small").text("small content").build());
+
+                    CacheData large = compressed.get("large");
+                    assertTrue(codec.name(), large.isCompressed());
+                    assertEquals(content.length(), large.length());
+                    assertEquals(content, large.text());
+                    assertEquals(content.length(), large.buffer().remaining());
+                    try (InputStream in = large.stream()) {
+                        byte[] head = new byte[16];
+                        assertEquals(16, in.read(head));
+                        assertEquals(content.substring(0, 16), new String(head));
+                    }
+
+                    CacheData small = compressed.get("small");
+                    assertFalse(small.isCompressed());
+                    assertEquals("small content", small.text());
+                } finally {
+                    compressed.clear();
+                }
+            }
+        }
+    }
+
+    public void testInvalidate() throws Exception {
+        CacheControl tagged = CacheControl.memory(UUID.randomUUID());
+        try {
+            tagged.add(new CacheData.Builder().id("v1/users").tag("api.test.com", "v1").text("users").build());
+            tagged.add(new CacheData.Builder().id("v1/orders").tag("api.test.com", "v1").text("orders").build());
+            tagged.add(new CacheData.Builder().id("v2/users").tag("api.test.com", "v2").text("users").build());
+            tagged.add(new CacheData.Builder().id("other").text("other").build());
+
+            assertEquals(2, tagged.invalidate("v1"));
+            assertFalse(tagged.exists("v1/users"));
+            assertTrue(tagged.get("v2/users").hasTag("v2"));
+
+            //replaced by untagged data, not invalidated.
+            tagged.add(new CacheData.Builder().id("v2/users").text("users").build());
+            assertEquals(0, tagged.invalidate("api.test.com"));
+            assertTrue(tagged.exists("v2/users"));
+            assertTrue(tagged.exists("other"));
+        } finally {
+            tagged.clear();
+        }
+    }
+
+    public void testRegistryConcurrent() throws Exception {
+        Object id = UUID.randomUUID();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CacheControl>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(executor.submit(() -> CacheControl.memory(id)));
+            }
+            CacheControl first = futures.get(0).get();
+            for (Future<CacheControl> f : futures) {
+                assertSame(first, f.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -2,8 +2,11 @@ package com.atomatus.util.cache;
 
 import junit.framework.TestCase;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 public class CacheControlStoredTest extends TestCase {
@@ -59,4 +62,87 @@ public class CacheControlStoredTest extends TestCase {
             throw new AssertionError(e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    public void testPlainCacheDataInStored() throws IOException {
+        String mock = "plain stored content";
+        CacheData cd = new CacheData.Builder()
+                .id("plain")
+                .plain()
+                .text(mock)
+                .build();
+
+        cache.add(cd);
+        assertTrue(cd.isStored());
+        assertFalse(cd.isEncrypted());
+        assertEquals(mock, cd.text());
+        assertEquals(mock.length(), cd.buffer().remaining());
+        assertTrue(cache.remove(cd));
+    }
+
+    public void testDirectory() throws IOException {
+        File directory = Files.createTempDirectory("~cache-test").toFile();
+        try {
+            CacheControl persistent = CacheControl
+                    .stored(UUID.randomUUID())
+                    .plaintext(true)
+                    .directory(directory);
+            persistent.add(persistent.dataBuilder()
+                    .id(new URL("https://test.com/persistent"))
+                    .text("persistent content")
+                    .build());
+
+            //another cache control on same directory, as after application restart.
+            CacheControl restarted = CacheControl
+                    .stored(UUID.randomUUID())
+                    .directory(directory);
+            CacheData cd = restarted.get(new URL("https://test.com/persistent"));
+            assertTrue(cd.exists());
+            assertTrue(cd.isStored());
+            assertEquals("persistent content", cd.text());
+
+            restarted.clear();
+            persistent.clear();
+        } finally {
+            File[] files = directory.listFiles();
+            if(files != null) for(File f : files) assertTrue(f.delete());
+            assertTrue(directory.delete());
+        }
+    }
+
+    public void testCompressedDirectory() throws IOException {
+        File directory = Files.createTempDirectory("~cache-test").toFile();
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 512; i++) {
+                sb.append("{\"id\":").append(i).append(",\"name\":\"compressible\"},");
+            }
+            String content = sb.toString();
+
+            CacheControl persistent = CacheControl
+                    .stored(UUID.randomUUID())
+                    .plaintext(true)
+                    .compression(CacheCodec.LZ4, 1024)
+                    .directory(directory);
+            persistent.add(persistent.dataBuilder()
+                    .id(new URL("https://test.com/compressed"))
+                    .text(content)
+                    .build());
+            assertTrue(persistent.get(new URL("https://test.com/compressed")).isCompressed());
+
+            CacheControl restarted = CacheControl
+                    .stored(UUID.randomUUID())
+                    .directory(directory);
+            CacheData cd = restarted.get(new URL("https://test.com/compressed"));
+            assertTrue(cd.isCompressed());
+            assertEquals(content.length(), cd.length());
+            assertEquals(content, cd.text());
+
+            restarted.clear();
+            persistent.clear();
+        } finally {
+            File[] files = directory.listFiles();
+            if(files != null) for(File f : files) assertTrue(f.delete());
+            assertTrue(directory.delete());
+        }
+    }
+}
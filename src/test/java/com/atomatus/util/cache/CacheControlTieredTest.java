@@ -0,0 +1,85 @@
+package com.atomatus.util.cache;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+public class CacheControlTieredTest extends TestCase {
+
+    private CacheControl cache;
+
+    @Override
+    protected void setUp() {
+        cache = CacheControl
+                .tiered(UUID.randomUUID())
+                .maxAge(20, TimeUnit.SECONDS)
+                .maximumSize(2);
+    }
+
+    @Override
+    protected void tearDown() {
+        cache.clear();
+        cache = null;
+    }
+
+    public void testSingleton() {
+        assertEquals(CacheControl.tiered(), CacheControl.tiered());
+        assertNotSame(CacheControl.tiered(), CacheControl.memory());
+    }
+
+    public void testDemotionAndPromotion() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            cache.add(new CacheData.Builder().id(i).text("content " + i).build());
+        }
+
+        int stored = 0;
+        for (int i = 0; i < 10; i++) {
+            CacheData cd = cache.get(i);
+            assertTrue(cd.exists());//nothing lost, demoted.
+            assertEquals("content " + i, cd.text());
+            if(cd.isStored()) stored++;
+        }
+        assertTrue(stored >= 8);
+        assertEquals(10, cache.stats().size());
+
+        CacheData cold = null;
+        for (int i = 0; i < 10 && cold == null; i++) {
+            CacheData cd = cache.get(i);
+            if(cd.isStored()) cold = cd;
+        }
+        assertNotNull(cold);
+
+        //requested frequently, promoted to memory tier.
+        CacheKey key = cold.key();
+        boolean promoted = false;
+        for (int i = 0; i < 10 && !promoted; i++) {
+            promoted = cache.get(key).isMemory();
+        }
+        assertTrue(promoted);
+    }
+
+    public void testRemove() {
+        for (int i = 0; i < 5; i++) {
+            cache.add(new CacheData.Builder().id(i).text("content " + i).build());
+        }
+        for (int i = 0; i < 5; i++) {
+            assertTrue(cache.remove(i));
+            assertFalse(cache.exists(i));
+        }
+        assertEquals(0, cache.stats().size());
+    }
+
+    public void testInvalidate() {
+        for (int i = 0; i < 10; i++) {
+            cache.add(new CacheData.Builder().id(i).tag(i % 2 == 0 ? "even" : "odd").text("content " + i).build());
+        }
+
+        assertEquals(5, cache.invalidate("even"));//memory and stored tiers.
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i % 2 != 0, cache.exists(i));
+        }
+        assertEquals(0, cache.invalidate("even"));
+    }
+}
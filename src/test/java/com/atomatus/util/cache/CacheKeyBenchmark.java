@@ -0,0 +1,64 @@
+package com.atomatus.util.cache;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.UUID;
+
+/**
+ * Lookup cost by cache size, full and compact keys, must stay flat
+ * (no collision chains) as cache grows.
+ * <p>
+ *     Not a unit test (timing depends on host load), run by main on test classpath,
+ *     reporting nanoseconds by {@link CacheControl#get(Object)} for each cache size.
+ * </p>
+ */
+public final class CacheKeyBenchmark {
+
+    private static final int LOOKUPS = 200_000;
+    private static final int[] SIZES = { 1_000, 10_000, 100_000 };
+
+    private CacheKeyBenchmark() { }
+
+    private static URL url(int i) throws MalformedURLException {
+        return new URL("https://test.com/resource/" + i + "?page=" + (i % 7));
+    }
+
+    private static long nanosPerLookup(int size, boolean compact) throws MalformedURLException {
+        CacheControl cache = CacheControl
+                .memory(UUID.randomUUID())
+                .compactKeys(compact);
+        try {
+            URL[] urls = new URL[size];
+            for (int i = 0; i < size; i++) {
+                urls[i] = url(i);
+                cache.add(new CacheData.Builder().id(urls[i]).plain().bytes(new byte[1]).build());
+            }
+
+            for (int i = 0; i < LOOKUPS; i++) {//warm up.
+                cache.get(urls[i % size]);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                if(!cache.get(urls[(i * 31) % size]).exists()) {
+                    throw new IllegalStateException("Cache data lost!");
+                }
+            }
+            return (System.nanoTime() - start) / LOOKUPS;
+        } finally {
+            cache.clear();
+        }
+    }
+
+    public static void main(String[] args) throws MalformedURLException {
+        for (boolean compact : new boolean[] { false, true }) {
+            StringBuilder report = new StringBuilder("CacheKey lookup (")
+                    .append(compact ? "compact" : "full").append("):");
+            for (int size : SIZES) {
+                report.append(' ').append(size).append(" entries ")
+                        .append(nanosPerLookup(size, compact)).append("ns;");
+            }
+            System.out.println(report);
+        }
+    }
+}
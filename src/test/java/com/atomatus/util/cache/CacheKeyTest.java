@@ -0,0 +1,88 @@
+package com.atomatus.util.cache;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+public class CacheKeyTest extends TestCase {
+
+    private static URL url(int i) throws MalformedURLException {
+        return new URL("https://test.com/resource/" + i + "?page=" + (i % 7));
+    }
+
+    public void testFullKeyEquality() throws Exception {
+        assertEquals(CacheKey.of("abc"), CacheKey.of(new StringBuilder("abc")));
+        assertEquals(CacheKey.of("abc").hashCode(), CacheKey.of(new StringBuilder("abc")).hashCode());
+        assertEquals(CacheKey.of(url(1)), CacheKey.of(url(1)));
+        assertEquals(CacheKey.of(url(1)), CacheKey.of(url(1).toURI()));
+        assertFalse(CacheKey.of(url(1)).equals(CacheKey.of(url(2))));
+        assertFalse(CacheKey.of(1).equals(CacheKey.of(1L)));
+        assertFalse(CacheKey.of(1).equals(CacheKey.of("1")));
+        assertFalse(CacheKey.of(url(1)).equals(CacheKey.of(url(1).toExternalForm())));
+    }
+
+    public void testFullKeyCollision() {
+        //same String hash code, distinct ids.
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        CacheKey aa = CacheKey.of("Aa");
+        CacheKey bb = CacheKey.of("BB");
+        assertEquals(aa.hashCode(), bb.hashCode());
+        assertFalse(aa.equals(bb));
+    }
+
+    public void testCompactKeyEquality() throws MalformedURLException {
+        CacheKey compact = CacheKey.of(url(1), true);
+        assertTrue(compact.isCompact());
+        assertEquals(compact, CacheKey.of(url(1)).compact());
+        assertEquals(compact.hashCode(), CacheKey.of(url(1)).compact().hashCode());
+        assertSame(compact, compact.compact());
+        assertFalse(compact.equals(CacheKey.of(url(1))));
+        assertFalse(compact.equals(CacheKey.of(url(2), true)));
+        assertEquals(34, compact.canonical().length());
+        assertTrue(compact.canonical().startsWith("d:"));
+    }
+
+    public void testCompactKeyCollision() {
+        assertFalse(CacheKey.of("Aa", true).equals(CacheKey.of("BB", true)));
+
+        Set<CacheKey> keys = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(keys.add(CacheKey.of("resource/" + i, true)));
+        }
+    }
+
+    public void testKeyWithoutCanonicalNotCompacted() {
+        Object id = new Object();
+        CacheKey key = CacheKey.of(id, true);
+        assertFalse(key.isCompact());
+        assertNull(key.canonical());
+        assertEquals(CacheKey.of(id), key);
+    }
+
+    public void testCanonical() throws MalformedURLException {
+        assertEquals("s:abc", CacheKey.canonical("abc"));
+        assertEquals("u:" + url(1).toExternalForm(), CacheKey.canonical(url(1)));
+        assertEquals("java.lang.Integer:1", CacheKey.canonical(1));
+    }
+
+    public void testCollidingIdsKeptByCache() throws IOException {
+        for (boolean compact : new boolean[] { false, true }) {
+            CacheControl cache = CacheControl
+                    .memory(UUID.randomUUID())
+                    .compactKeys(compact);
+            try {
+                cache.add(new CacheData.Builder().id("Aa").text("aa").build());
+                cache.add(new CacheData.Builder().id("BB").text("bb").build());
+                assertEquals("aa", cache.get("Aa").text());
+                assertEquals("bb", cache.get("BB").text());
+            } finally {
+                cache.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.atomatus.util.cache;
+
+import com.atomatus.util.security.SensitiveBytes;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class CacheSegmentStoreTest extends TestCase {
+
+    private File directory;
+    private CacheSegmentStore store;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("~cache-test").toFile();
+        store = new CacheSegmentStore(directory, 1024);
+    }
+
+    @Override
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    protected void tearDown() {
+        File[] files = directory.listFiles();
+        if(files != null) for(File f : files) f.delete();
+        directory.delete();
+    }
+
+    private static CachePayload plain(String content) {
+        byte[] bytes = content.getBytes();
+        return new CachePayloadPlain(bytes, bytes.length);
+    }
+
+    private static String repeat(char c, int count) {
+        char[] arr = new char[count];
+        Arrays.fill(arr, c);
+        return new String(arr);
+    }
+
+    public void testWriteRead() throws IOException {
+        CachePayloadSegment payload = store.write(plain("segment content"));
+        assertTrue(payload.isStored());
+        assertEquals("segment content", new String(payload.bytes()));
+        assertTrue(payload.buffer().isReadOnly());
+        assertEquals(15, payload.buffer().remaining());
+        assertNull(store.write(payload));
+    }
+
+    public void testEncrypted() throws IOException {
+        CachePayloadSegment payload = store.write(new CachePayloadSensitive(
+                SensitiveBytes.of("secret")));
+        assertTrue(payload.isEncrypted());
+        assertEquals("secret", new String(payload.bytes()));
+    }
+
+    public void testCompaction() throws Exception {
+        CachePayloadSegment a = store.write(plain(repeat('a', 400)));
+        CachePayloadSegment b = store.write(plain(repeat('b', 400)));
+        CachePayloadSegment c = store.write(plain(repeat('c', 400)));//seals first segment.
+        assertEquals(2, store.segmentCount());
+
+        a.destroy();//half of first segment released, compacted on sweeper.
+        for(int i=0; i < 50 && store.segmentCount() > 1; i++) {
+            Thread.sleep(20L);
+        }
+
+        assertEquals(1, store.segmentCount());
+        assertEquals(repeat('b', 400), new String(b.bytes()));
+        assertEquals(repeat('c', 400), new String(c.bytes()));
+
+        b.destroy();
+        c.destroy();
+        try {
+            b.bytes();
+            fail();
+        } catch (IOException ignored) { }
+    }
+
+    public void testPersistent() throws IOException {
+        long expiresAt = System.currentTimeMillis() + 60_000L;
+        CacheSegmentStore persistent = CacheSegmentStore.open(directory, 1024);
+        persistent.write(plain("kept"), "s:kept", expiresAt);
+        persistent.write(plain("expired"), "s:expired", System.currentTimeMillis() - 1L);
+        persistent.write(plain("removed"), "s:removed", expiresAt).destroy();
+        persistent.write(new CachePayloadSensitive(SensitiveBytes.of("secret")), "s:secret", expiresAt);
+
+        CacheSegmentStore restarted = CacheSegmentStore.open(directory, 1024);
+        assertTrue(restarted.isRevivable(CacheKey.of("kept")));
+        assertFalse(restarted.isRevivable(CacheKey.of("expired")));
+        assertFalse(restarted.isRevivable(CacheKey.of("removed")));
+        assertFalse(restarted.isRevivable(CacheKey.of("secret")));
+
+        CachePayloadSegment kept = restarted.revive("s:kept");
+        assertNotNull(kept);
+        assertEquals(expiresAt, kept.expiresAt());
+        assertEquals("kept", new String(kept.bytes()));
+        assertNull(restarted.revive("s:kept"));
+    }
+}
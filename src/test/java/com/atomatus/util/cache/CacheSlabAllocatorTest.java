@@ -0,0 +1,42 @@
+package com.atomatus.util.cache;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class CacheSlabAllocatorTest extends TestCase {
+
+    public void testReadWrite() {
+        CacheSlabAllocator allocator = new CacheSlabAllocator(CacheSlabAllocator.SLAB_SIZE);
+        byte[] content = new byte[CacheSlabAllocator.BLOCK_SIZE * 3 + 17];
+        new Random(7).nextBytes(content);
+
+        int[] blocks = allocator.allocate(content.length);
+        assertNotNull(blocks);
+        assertEquals(4, blocks.length);
+        allocator.write(blocks, content, content.length);
+
+        byte[] read = new byte[content.length];
+        allocator.read(blocks, 0L, read, 0, read.length);
+        assertTrue(Arrays.equals(content, read));
+
+        byte[] part = new byte[100];
+        allocator.read(blocks, CacheSlabAllocator.BLOCK_SIZE - 50, part, 0, part.length);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(content,
+                CacheSlabAllocator.BLOCK_SIZE - 50, CacheSlabAllocator.BLOCK_SIZE + 50), part));
+    }
+
+    public void testBudget() {
+        CacheSlabAllocator allocator = new CacheSlabAllocator(CacheSlabAllocator.SLAB_SIZE);
+        int[] all = allocator.allocate(CacheSlabAllocator.SLAB_SIZE);
+        assertNotNull(all);
+        assertEquals(CacheSlabAllocator.SLAB_SIZE, allocator.used());
+        assertNull(allocator.allocate(1));
+
+        allocator.release(all);
+        assertEquals(0L, allocator.used());
+        assertNotNull(allocator.allocate(1));
+        assertEquals(CacheSlabAllocator.SLAB_SIZE, allocator.capacity());
+    }
+}